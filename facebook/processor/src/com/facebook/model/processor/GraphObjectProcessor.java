@@ -0,0 +1,390 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.model.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates an implementation of each GraphObject-derived interface in the sources being compiled, so that
+ * GraphObject.Factory can create objects of that type without a java.lang.reflect.Proxy.
+ * <p/>
+ * For an interface {@code com.example.MyGraphObject}, the class {@code com.example.MyGraphObject$$Impl} is
+ * generated. It extends com.facebook.model.BaseGraphObject and implements each getter and setter directly against
+ * the underlying JSONObject, honoring PropertyName and CreateGraphObject annotations the same way the proxy does.
+ * Interfaces that the proxy can't handle, or that use generic type variables, are skipped with a warning and keep
+ * using the proxy.
+ * <p/>
+ * To use it, put this processor on the annotation processor path of the compilation that contains the interfaces.
+ * The implementations of the SDK's own model interfaces are checked in; scripts/check_generated_graph_objects.sh
+ * regenerates them and fails if they are out of date.
+ */
+@SupportedAnnotationTypes("*")
+public class GraphObjectProcessor extends AbstractProcessor {
+    private static final String GRAPH_OBJECT = "com.facebook.model.GraphObject";
+    private static final String GRAPH_OBJECT_LIST = "com.facebook.model.GraphObjectList";
+    private static final String BASE_GRAPH_OBJECT = "com.facebook.model.BaseGraphObject";
+    private static final String PROPERTY_NAME = "com.facebook.model.PropertyName";
+    private static final String CREATE_GRAPH_OBJECT = "com.facebook.model.CreateGraphObject";
+    private static final String JSON_OBJECT = "org.json.JSONObject";
+    private static final String GENERATED_IMPLEMENTATION_SUFFIX = "$$Impl";
+    private static final List<String> COLLECTION_TYPES = Arrays.asList("java.lang.Iterable", "java.util.Collection",
+            "java.util.List", GRAPH_OBJECT_LIST);
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement graphObject = processingEnv.getElementUtils().getTypeElement(GRAPH_OBJECT);
+        if (graphObject == null) {
+            return false;
+        }
+
+        List<TypeElement> interfaces = new ArrayList<TypeElement>();
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            findGraphObjectInterfaces(type, graphObject, interfaces);
+        }
+        for (TypeElement type : interfaces) {
+            String source = generateImplementation(type);
+            if (source != null) {
+                writeImplementation(type, source);
+            }
+        }
+
+        // Nothing is claimed, since any annotation may also be of interest to other processors.
+        return false;
+    }
+
+    private void findGraphObjectInterfaces(TypeElement type, TypeElement graphObject, List<TypeElement> result) {
+        Types types = processingEnv.getTypeUtils();
+        if (type.getKind() == ElementKind.INTERFACE &&
+                types.isAssignable(types.erasure(type.asType()), types.erasure(graphObject.asType()))) {
+            result.add(type);
+        }
+        for (TypeElement nestedType : ElementFilter.typesIn(type.getEnclosedElements())) {
+            findGraphObjectInterfaces(nestedType, graphObject, result);
+        }
+    }
+
+    // Returns the source of the implementation of graphObjectType, or null if it has to be left to the proxy.
+    private String generateImplementation(TypeElement graphObjectType) {
+        if (!canImplement(graphObjectType)) {
+            return null;
+        }
+
+        Elements elements = processingEnv.getElementUtils();
+        String interfaceName = graphObjectType.getQualifiedName().toString();
+        String className = getImplementationSimpleName(graphObjectType);
+
+        StringBuilder methods = new StringBuilder();
+        Set<String> signatures = new HashSet<String>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(graphObjectType))) {
+            TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+            String declaringTypeName = declaringType.getQualifiedName().toString();
+            if (declaringType.getKind() != ElementKind.INTERFACE || declaringTypeName.equals(GRAPH_OBJECT)) {
+                // Object's methods and GraphObject's own methods are implemented by BaseGraphObject.
+                continue;
+            }
+
+            if (!signatures.add(getSignature(method))) {
+                skip(graphObjectType, method, "the method is inherited from more than one interface");
+                return null;
+            }
+
+            String error = generateAccessor(method, methods);
+            if (error != null) {
+                skip(graphObjectType, method, error);
+                return null;
+            }
+        }
+
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by ").append(GraphObjectProcessor.class.getName()).append(". Do not edit.\n");
+        String packageName = elements.getPackageOf(graphObjectType).getQualifiedName().toString();
+        if (packageName.length() > 0) {
+            source.append("package ").append(packageName).append(";\n");
+        }
+        source.append("\n");
+        source.append("public final class ").append(className).append(" extends ").append(BASE_GRAPH_OBJECT)
+                .append("\n        implements ").append(interfaceName).append(" {\n");
+        source.append("    public static final ").append(BASE_GRAPH_OBJECT).append(".Creator<").append(interfaceName)
+                .append("> CREATOR =\n            new ").append(BASE_GRAPH_OBJECT).append(".Creator<")
+                .append(interfaceName).append(">() {\n");
+        source.append("                @Override\n");
+        source.append("                public ").append(interfaceName).append(" createFromJSONObject(")
+                .append(JSON_OBJECT).append(" state) {\n");
+        source.append("                    return new ").append(className).append("(state);\n");
+        source.append("                }\n");
+        source.append("            };\n");
+        source.append("\n");
+        source.append("    private ").append(className).append("(").append(JSON_OBJECT).append(" state) {\n");
+        source.append("        super(state, ").append(interfaceName).append(".class);\n");
+        source.append("    }\n");
+        source.append(methods);
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private boolean canImplement(TypeElement graphObjectType) {
+        if (!graphObjectType.getTypeParameters().isEmpty()) {
+            skip(graphObjectType, null, "the interface has type parameters");
+            return false;
+        }
+        for (Element element = graphObjectType; element instanceof TypeElement;
+                element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                skip(graphObjectType, null, "the interface is not visible to its package");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Appends the implementation of a getter or setter, or returns why it can't be implemented.
+    private String generateAccessor(ExecutableElement method, StringBuilder result) {
+        if (!method.getTypeParameters().isEmpty()) {
+            return "the method has type parameters";
+        }
+
+        String methodName = method.getSimpleName().toString();
+        String propertyName = getAnnotationValue(method, PROPERTY_NAME);
+        List<? extends VariableElement> parameters = method.getParameters();
+        TypeMirror returnType = method.getReturnType();
+        boolean isVoid = returnType.getKind() == TypeKind.VOID;
+
+        // The same rules as GraphObject.Factory.verifyCanProxyClass.
+        String prefix;
+        if (parameters.size() == 1 && isVoid) {
+            prefix = "set";
+        } else if (parameters.size() == 0 && !isVoid) {
+            prefix = "get";
+        } else {
+            return "it is neither a getter nor a setter";
+        }
+        String key;
+        if (propertyName != null) {
+            if (propertyName.length() == 0) {
+                return "its PropertyName is empty";
+            }
+            key = propertyName;
+        } else if (methodName.startsWith(prefix) && methodName.length() > 3) {
+            key = convertCamelCaseToLowercaseWithUnderscores(methodName.substring(3));
+        } else {
+            return "it is neither a getter nor a setter";
+        }
+
+        result.append("\n");
+        result.append("    @Override\n");
+        if (parameters.isEmpty()) {
+            if (hasTypeVariables(returnType)) {
+                return "its return type uses a type variable";
+            }
+            String body = generateGetterBody(returnType, quote(key));
+            if (body.startsWith("(")) {
+                result.append("    @SuppressWarnings(\"unchecked\")\n");
+            }
+            result.append("    public ").append(returnType).append(" ").append(methodName).append("() {\n");
+            result.append("        return ").append(body).append(";\n");
+        } else {
+            TypeMirror parameterType = parameters.get(0).asType();
+            if (hasTypeVariables(parameterType)) {
+                return "its parameter type uses a type variable";
+            }
+            String createGraphObjectKey = getAnnotationValue(method, CREATE_GRAPH_OBJECT);
+            result.append("    public void ").append(methodName).append("(").append(parameterType)
+                    .append(" value) {\n");
+            result.append("        setTypedProperty(").append(quote(key)).append(", value, ")
+                    .append(createGraphObjectKey != null ? quote(createGraphObjectKey) : "null").append(");\n");
+        }
+        result.append("    }\n");
+        return null;
+    }
+
+    private String generateGetterBody(TypeMirror returnType, String key) {
+        Types types = processingEnv.getTypeUtils();
+        switch (returnType.getKind()) {
+            case BOOLEAN:
+            case CHAR:
+                return "getTypedProperty(" + key + ", " + returnType + ".class)";
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return "getNumberProperty(" + key + ")." + returnType + "Value()";
+            default:
+                break;
+        }
+
+        String erasedType = types.erasure(returnType).toString();
+        if (returnType.getKind() != TypeKind.DECLARED || ((DeclaredType) returnType).getTypeArguments().isEmpty()) {
+            return "getTypedProperty(" + key + ", " + erasedType + ".class)";
+        }
+
+        if (COLLECTION_TYPES.contains(erasedType)) {
+            // The proxy only supports collections of a plain class; for anything else, passing no item type makes
+            // the conversion fail with the same error.
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) returnType).getTypeArguments();
+            TypeMirror itemType = typeArguments.get(0);
+            String itemClass = (typeArguments.size() == 1 && itemType.getKind() == TypeKind.DECLARED &&
+                    ((DeclaredType) itemType).getTypeArguments().isEmpty()) ? itemType + ".class" : "null";
+            return "(" + returnType + ") getCollectionProperty(" + key + ",\n                " + erasedType +
+                    ".class, " + itemClass + ")";
+        }
+        return "(" + returnType + ") getTypedProperty(" + key + ", " + erasedType + ".class)";
+    }
+
+    private void writeImplementation(TypeElement graphObjectType, String source) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(graphObjectType).getQualifiedName()
+                .toString();
+        String className = getImplementationSimpleName(graphObjectType);
+        String qualifiedName = (packageName.length() > 0) ? packageName + "." + className : className;
+        Writer writer = null;
+        try {
+            writer = processingEnv.getFiler().createSourceFile(qualifiedName, graphObjectType).openWriter();
+            writer.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + qualifiedName + ": " + e.getMessage(), graphObjectType);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Reported when the compiler reads the file.
+                }
+            }
+        }
+    }
+
+    // The binary name of the interface, less its package, so that implementations of nested interfaces can be found
+    // with Class.forName.
+    private String getImplementationSimpleName(TypeElement graphObjectType) {
+        Elements elements = processingEnv.getElementUtils();
+        String binaryName = elements.getBinaryName(graphObjectType).toString();
+        String packageName = elements.getPackageOf(graphObjectType).getQualifiedName().toString();
+        String simpleName = (packageName.length() > 0) ? binaryName.substring(packageName.length() + 1) : binaryName;
+        return simpleName + GENERATED_IMPLEMENTATION_SUFFIX;
+    }
+
+    private String getSignature(ExecutableElement method) {
+        Types types = processingEnv.getTypeUtils();
+        StringBuilder signature = new StringBuilder(method.getSimpleName());
+        for (VariableElement parameter : method.getParameters()) {
+            signature.append(",").append(types.erasure(parameter.asType()));
+        }
+        return signature.toString();
+    }
+
+    private void skip(TypeElement graphObjectType, ExecutableElement method, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "Not generating an implementation of " + graphObjectType.getQualifiedName() + ", which will use a " +
+                        "proxy, because " + (method != null ? method.getSimpleName() + " can't be implemented: " : "") +
+                        reason,
+                graphObjectType);
+    }
+
+    private static boolean hasTypeVariables(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return hasTypeVariables(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                return (wildcard.getExtendsBound() != null && hasTypeVariables(wildcard.getExtendsBound())) ||
+                        (wildcard.getSuperBound() != null && hasTypeVariables(wildcard.getSuperBound()));
+            case DECLARED:
+                for (TypeMirror typeArgument : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasTypeVariables(typeArgument)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static String getAnnotationValue(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                        annotation.getElementValues().entrySet()) {
+                    if (entry.getKey().getSimpleName().contentEquals("value")) {
+                        return String.valueOf(entry.getValue().getValue());
+                    }
+                }
+                return "";
+            }
+        }
+        return null;
+    }
+
+    // Must match GraphObject.Factory.convertCamelCaseToLowercaseWithUnderscores.
+    private static String convertCamelCaseToLowercaseWithUnderscores(String string) {
+        string = string.replaceAll("([a-z])([A-Z])", "$1_$2");
+        return string.toLowerCase(Locale.US);
+    }
+
+    private static String quote(String string) {
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append("\"").toString();
+    }
+}
@@ -702,7 +702,7 @@ public class AppEventsLogger {
     private static void logEvent(final Context context,
                                  final AppEvent event,
                                  final AccessTokenAppIdPair accessTokenAppId) {
-        Settings.getExecutor().execute(new Runnable() {
+        Settings.getExecutor(ExecutionPriority.BACKGROUND).execute(new Runnable() {
             @Override
             public void run() {
                 SessionEventsState state = getSessionEventsState(context, accessTokenAppId);
@@ -770,7 +770,7 @@ public class AppEventsLogger {
 
     private static void flush(final FlushReason reason) {
 
-        Settings.getExecutor().execute(new Runnable() {
+        Settings.getExecutor(ExecutionPriority.BACKGROUND).execute(new Runnable() {
             @Override
             public void run() {
                 flushAndWait(reason);
@@ -0,0 +1,228 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.Bundle;
+
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
+// Splits batches that are larger than the service allows into sub-batches that are sent concurrently. Requests
+// that are connected by names, either through depends_on or through a JSONPath reference to another request's
+// result, are kept in the same sub-batch.
+final class BatchSplitter {
+    private static final String RESULT_REFERENCE_PREFIX = "{result=";
+
+    private BatchSplitter() {
+    }
+
+    // Returns the indices of the requests in each sub-batch.
+    static List<List<Integer>> split(RequestBatch requests, int maxBatchSize) {
+        int size = requests.size();
+
+        // Union-find over request indices.
+        int[] parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            parents[i] = i;
+        }
+
+        Map<String, Integer> indicesByName = new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            String name = requests.get(i).getBatchEntryName();
+            if (name != null) {
+                indicesByName.put(name, i);
+            }
+        }
+        if (!indicesByName.isEmpty()) {
+            for (int i = 0; i < size; i++) {
+                Request request = requests.get(i);
+                String dependsOn = request.getBatchEntryDependsOn();
+                if (dependsOn != null && indicesByName.containsKey(dependsOn)) {
+                    union(parents, i, indicesByName.get(dependsOn));
+                }
+                for (Map.Entry<String, Integer> entry : indicesByName.entrySet()) {
+                    if (referencesResult(request, entry.getKey())) {
+                        union(parents, i, entry.getValue());
+                    }
+                }
+            }
+        }
+
+        // Group the requests, keeping each group in its original order.
+        Map<Integer, List<Integer>> groupsByRoot = new LinkedHashMap<Integer, List<Integer>>();
+        for (int i = 0; i < size; i++) {
+            int root = find(parents, i);
+            List<Integer> group = groupsByRoot.get(root);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groupsByRoot.put(root, group);
+            }
+            group.add(i);
+        }
+
+        // Fill sub-batches in order. A group that is larger than the limit on its own is sent as it is and left
+        // for the service to reject.
+        List<List<Integer>> subBatches = new ArrayList<List<Integer>>();
+        List<Integer> current = null;
+        for (List<Integer> group : groupsByRoot.values()) {
+            if (current == null || current.size() + group.size() > maxBatchSize) {
+                current = new ArrayList<Integer>();
+                subBatches.add(current);
+            }
+            current.addAll(group);
+        }
+        for (List<Integer> subBatch : subBatches) {
+            // Groups are interleaved in the original batch, so restore the original order within each sub-batch.
+            Collections.sort(subBatch);
+        }
+        return subBatches;
+    }
+
+    static List<Response> executeAndWait(final RequestBatch requests) {
+        final List<List<Integer>> subBatches = split(requests, Request.MAXIMUM_BATCH_SIZE);
+        final Response[] responses = new Response[requests.size()];
+        final int[] nextSubBatch = new int[1];
+        final int[] completedCount = new int[1];
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    List<Integer> indices;
+                    synchronized (responses) {
+                        if (nextSubBatch[0] >= subBatches.size()) {
+                            return;
+                        }
+                        indices = subBatches.get(nextSubBatch[0]++);
+                    }
+
+                    RequestBatch subBatch = createSubBatch(requests, indices);
+                    List<Response> subBatchResponses = executeSubBatch(requests, subBatch);
+                    synchronized (responses) {
+                        for (int i = 0; i < indices.size(); i++) {
+                            responses[indices.get(i)] = subBatchResponses.get(i);
+                        }
+                        completedCount[0] += indices.size();
+                        responses.notifyAll();
+                    }
+                }
+            }
+        };
+
+        // The calling thread works through the sub-batches as well, so they all get sent even if the executor is
+        // too busy to start any helpers; a helper that starts late finds nothing left to do.
+        int helpers = Math.min(Settings.getMaxConcurrentSubBatches(), subBatches.size()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                Settings.getExecutor(requests.getPriority()).execute(worker);
+            } catch (RejectedExecutionException e) {
+                // The executor is saturated, so leave the remaining sub-batches to the calling thread.
+                break;
+            }
+        }
+        worker.run();
+
+        synchronized (responses) {
+            while (completedCount[0] < responses.length) {
+                try {
+                    responses.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        List<Response> result = new ArrayList<Response>(responses.length);
+        for (int i = 0; i < responses.length; i++) {
+            Response response = responses[i];
+            if (response == null) {
+                response = new Response(requests.get(i), null, new FacebookRequestError(null,
+                        new FacebookOperationCanceledException("Interrupted while waiting for sub-batch")));
+            }
+            result.add(response);
+        }
+        return result;
+    }
+
+    private static List<Response> executeSubBatch(RequestBatch requests, RequestBatch subBatch) {
+        if (requests.isCancelled()) {
+            return Response.constructErrorResponses(subBatch.getRequests(), null,
+                    new FacebookOperationCanceledException("Request batch was cancelled"));
+        }
+
+        // Cancelling the batch cancels the sub-batch too, which closes its connection if it is being sent.
+        requests.addLinkedBatch(subBatch);
+        try {
+            List<Response> responses = Request.executeBatchWithoutCallbacks(subBatch);
+            RetryPolicy retryPolicy = requests.getRetryPolicy();
+            if (retryPolicy != null) {
+                responses = retryPolicy.executeRetries(subBatch, responses);
+            }
+            return responses;
+        } catch (RuntimeException e) {
+            // Every sub-batch must produce responses, or the threads waiting on it would never finish.
+            FacebookException exception = (e instanceof FacebookException) ? (FacebookException) e :
+                    new FacebookException(e);
+            return Response.constructErrorResponses(subBatch.getRequests(), null, exception);
+        } finally {
+            requests.removeLinkedBatch(subBatch);
+            // Sub-batches have no callbacks of their own, so their network timings are reported as they finish.
+            Request.reportMetrics(subBatch);
+        }
+    }
+
+    private static RequestBatch createSubBatch(RequestBatch requests, List<Integer> indices) {
+        RequestBatch subBatch = new RequestBatch();
+        for (Integer index : indices) {
+            subBatch.add(requests.get(index));
+        }
+        subBatch.setTimeout(requests.getTimeout());
+        subBatch.setBatchApplicationId(requests.getBatchApplicationId());
+        subBatch.setPriority(requests.getPriority());
+        return subBatch;
+    }
+
+    private static boolean referencesResult(Request request, String name) {
+        String reference = RESULT_REFERENCE_PREFIX + name + ":";
+        String graphPath = request.getGraphPath();
+        if (graphPath != null && graphPath.contains(reference)) {
+            return true;
+        }
+
+        Bundle parameters = request.getParameters();
+        for (String key : parameters.keySet()) {
+            Object value = parameters.get(key);
+            if (value instanceof String && ((String) value).contains(reference)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        parents[find(parents, a)] = find(parents, b);
+    }
+}
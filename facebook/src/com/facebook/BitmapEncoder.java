@@ -0,0 +1,153 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.graphics.Bitmap;
+import android.os.Bundle;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+// Encodes the Bitmap parameters of a batch as a pipelined stage ahead of the serializer. Every bitmap is queued on
+// the batch's Executor lane before the body is written, so that encoding overlaps with connecting and with sending
+// the parameters that come first. When the serializer reaches a bitmap that has not been picked up yet, it encodes
+// it on its own thread rather than waiting for the Executor.
+final class BitmapEncoder {
+    private final Map<Key, EncodingTask> tasks = new HashMap<Key, EncodingTask>();
+
+    void startEncoding(RequestBatch requests) {
+        for (Request request : requests) {
+            Bundle parameters = request.getParameters();
+            for (String key : parameters.keySet()) {
+                Object value = parameters.get(key);
+                if (value instanceof Bitmap) {
+                    startEncoding((Bitmap) value, request.getEffectiveBitmapEncodingPolicy(),
+                            requests.getPriority());
+                }
+            }
+        }
+    }
+
+    private void startEncoding(Bitmap bitmap, BitmapEncodingPolicy policy, ExecutionPriority priority) {
+        EncodingTask task;
+        Key key = new Key(bitmap, policy);
+        synchronized (tasks) {
+            if (tasks.containsKey(key)) {
+                return;
+            }
+            task = new EncodingTask(bitmap, policy);
+            tasks.put(key, task);
+        }
+        Settings.getExecutor(priority).execute(task);
+    }
+
+    // A bitmap shared by several requests is encoded once for each policy they use.
+    EncodedBitmap getEncodedBitmap(Bitmap bitmap, BitmapEncodingPolicy policy) {
+        EncodingTask task;
+        Key key = new Key(bitmap, policy);
+        synchronized (tasks) {
+            task = tasks.get(key);
+            if (task == null) {
+                task = new EncodingTask(bitmap, policy);
+                tasks.put(key, task);
+            }
+        }
+
+        // Running a task that has already started or finished does nothing.
+        task.run();
+        try {
+            return new EncodedBitmap(task.get(), task.policy.getMimeType());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FacebookOperationCanceledException("Interrupted while encoding a bitmap");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new FacebookException(cause);
+        }
+    }
+
+    void cancel() {
+        synchronized (tasks) {
+            for (EncodingTask task : tasks.values()) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    static final class EncodedBitmap {
+        private final byte[] bytes;
+        private final String mimeType;
+
+        EncodedBitmap(byte[] bytes, String mimeType) {
+            this.bytes = bytes;
+            this.mimeType = mimeType;
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    // Policies are mutable, so both the bitmap and the policy are compared by identity.
+    private static final class Key {
+        private final Bitmap bitmap;
+        private final BitmapEncodingPolicy policy;
+
+        Key(Bitmap bitmap, BitmapEncodingPolicy policy) {
+            this.bitmap = bitmap;
+            this.policy = policy;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return bitmap == key.bitmap && policy == key.policy;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(bitmap) + System.identityHashCode(policy);
+        }
+    }
+
+    private static final class EncodingTask extends FutureTask<byte[]> {
+        private final BitmapEncodingPolicy policy;
+
+        EncodingTask(final Bitmap bitmap, final BitmapEncodingPolicy policy) {
+            super(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return policy.encode(bitmap);
+                }
+            });
+            this.policy = policy;
+        }
+    }
+}
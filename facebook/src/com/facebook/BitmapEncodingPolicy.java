@@ -0,0 +1,147 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.graphics.Bitmap;
+import com.facebook.internal.Validate;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Describes how {@link Bitmap} parameters are encoded when they are uploaded, for instance by
+ * {@link Request#newUploadPhotoRequest(Session, Bitmap, Request.Callback)} or
+ * {@link Request#newUploadStagingResourceWithImageRequest(Session, Bitmap, Request.Callback)}. A policy can be set
+ * for all requests with {@link Settings#setBitmapEncodingPolicy(BitmapEncodingPolicy)}, or for a single request with
+ * {@link Request#setBitmapEncodingPolicy(BitmapEncodingPolicy)}.
+ * <p/>
+ * The default policy encodes bitmaps losslessly as PNG at their full size. Photos taken with a camera are usually
+ * several times smaller, and quicker to upload, when encoded as JPEG.
+ * <p/>
+ * Bitmaps are encoded on the SDK's Executor ahead of the point where they are written to the connection, so that
+ * encoding overlaps with connecting and sending the rest of the request.
+ */
+public class BitmapEncodingPolicy {
+    private static final int DEFAULT_QUALITY = 100;
+    private static final String WEBP_FORMAT_NAME = "WEBP";
+
+    private Bitmap.CompressFormat format = Bitmap.CompressFormat.PNG;
+    private int quality = DEFAULT_QUALITY;
+    private int maxDimension;
+
+    /**
+     * Gets the format bitmaps are encoded in. The default is PNG.
+     *
+     * @return the format
+     */
+    public Bitmap.CompressFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the format bitmaps are encoded in. WEBP is only available on API level 14 and above.
+     *
+     * @param format the format
+     */
+    public void setFormat(Bitmap.CompressFormat format) {
+        Validate.notNull(format, "format");
+        this.format = format;
+    }
+
+    /**
+     * Gets the quality bitmaps are encoded with, from 0 to 100. The default is 100.
+     *
+     * @return the quality
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * Sets the quality bitmaps are encoded with, from 0 to 100. The quality is ignored by lossless formats such as
+     * PNG.
+     *
+     * @param quality the quality
+     */
+    public void setQuality(int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("Argument quality must be between 0 and 100.");
+        }
+        this.quality = quality;
+    }
+
+    /**
+     * Gets the largest width or height, in pixels, that bitmaps are uploaded at. The default is 0, which means
+     * bitmaps are uploaded at their full size.
+     *
+     * @return the maximum dimension
+     */
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    /**
+     * Sets the largest width or height, in pixels, that bitmaps are uploaded at. Larger bitmaps are scaled down,
+     * keeping their aspect ratio, before they are encoded. The bitmap passed to the request is not modified.
+     *
+     * @param maxDimension the maximum dimension, or 0 to upload bitmaps at their full size
+     */
+    public void setMaxDimension(int maxDimension) {
+        if (maxDimension < 0) {
+            throw new IllegalArgumentException("Argument maxDimension must be >= 0.");
+        }
+        this.maxDimension = maxDimension;
+    }
+
+    String getMimeType() {
+        switch (format) {
+            case JPEG:
+                return "image/jpeg";
+            case PNG:
+                return "image/png";
+            default:
+                // Referring to WEBP directly would fail to link on API levels before 14.
+                return WEBP_FORMAT_NAME.equals(format.name()) ? "image/webp" : "image/png";
+        }
+    }
+
+    byte[] encode(Bitmap bitmap) {
+        Bitmap scaled = scale(bitmap);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            scaled.compress(format, quality, outputStream);
+            return outputStream.toByteArray();
+        } finally {
+            if (scaled != bitmap) {
+                scaled.recycle();
+            }
+        }
+    }
+
+    private Bitmap scale(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int largest = Math.max(width, height);
+        if (maxDimension == 0 || largest <= maxDimension) {
+            return bitmap;
+        }
+
+        double scale = (double) maxDimension / largest;
+        int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+        return Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
+    }
+}
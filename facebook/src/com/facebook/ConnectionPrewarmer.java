@@ -0,0 +1,117 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.SystemClock;
+import com.facebook.internal.Logger;
+import com.facebook.internal.ServerProtocol;
+import com.facebook.internal.Utility;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+// Opens a connection to the Graph API host ahead of the first request, so that DNS resolution and the TCP and TLS
+// handshakes are done off the critical path. The connection is left in the platform's keep-alive pool, where the
+// first real request picks it up.
+final class ConnectionPrewarmer {
+    private static final String TAG = ConnectionPrewarmer.class.getSimpleName();
+    private static final String HEAD_METHOD = "HEAD";
+    private static final int PREWARM_TIMEOUT_MILLISECONDS = 10000;
+
+    // Idle connections stay in the keep-alive pool for a few minutes; pre-warming again before then gains nothing.
+    private static final long MIN_PREWARM_INTERVAL_MILLISECONDS = 60000;
+
+    private static final Object lock = new Object();
+    private static boolean isPrewarming;
+    private static long lastPrewarmTime;
+    private static volatile long lastPrewarmDuration = -1;
+
+    private ConnectionPrewarmer() {
+    }
+
+    static void prewarmAsync() {
+        synchronized (lock) {
+            long now = SystemClock.elapsedRealtime();
+            if (isPrewarming || (lastPrewarmTime != 0 && now - lastPrewarmTime < MIN_PREWARM_INTERVAL_MILLISECONDS)) {
+                return;
+            }
+            isPrewarming = true;
+            lastPrewarmTime = now;
+        }
+
+        Settings.getExecutor(ExecutionPriority.BACKGROUND).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prewarm();
+                } finally {
+                    synchronized (lock) {
+                        isPrewarming = false;
+                    }
+                }
+            }
+        });
+    }
+
+    // The time taken by the last pre-warm, which is roughly what the first request would otherwise have spent
+    // setting up its connection, or -1 if it failed or has not run.
+    static long getLastPrewarmDuration() {
+        return lastPrewarmDuration;
+    }
+
+    static void resetForTest() {
+        synchronized (lock) {
+            lastPrewarmTime = 0;
+            lastPrewarmDuration = -1;
+        }
+    }
+
+    private static void prewarm() {
+        long start = SystemClock.elapsedRealtime();
+        HttpURLConnection connection = null;
+        InputStream stream = null;
+        boolean success = false;
+        try {
+            connection = Request.createConnection(new URL(ServerProtocol.getGraphUrlBase()));
+            connection.setRequestMethod(HEAD_METHOD);
+            connection.setConnectTimeout(PREWARM_TIMEOUT_MILLISECONDS);
+            connection.setReadTimeout(PREWARM_TIMEOUT_MILLISECONDS);
+
+            // Any status will do. The stream is closed rather than the connection disconnected, which returns the
+            // socket to the keep-alive pool.
+            int responseCode = connection.getResponseCode();
+            stream = (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) ? connection.getErrorStream() :
+                    connection.getInputStream();
+            success = true;
+
+            lastPrewarmDuration = SystemClock.elapsedRealtime() - start;
+            Logger.log(LoggingBehavior.REQUESTS, TAG, "Pre-warmed connection to %s in %d ms", connection.getURL(),
+                    lastPrewarmDuration);
+        } catch (Exception e) {
+            // Pre-warming is only an optimization, so any failure, such as a missing INTERNET permission, is
+            // left for the first real request to report.
+            lastPrewarmDuration = -1;
+            Logger.log(LoggingBehavior.REQUESTS, TAG, "Failed to pre-warm connection: %s", e);
+        } finally {
+            Utility.closeQuietly(stream);
+            if (!success) {
+                Utility.disconnectQuietly(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+/**
+ * Specifies how urgently background work done by the SDK should run. Each priority has its own lane, returned by
+ * {@link Settings#getExecutor(ExecutionPriority)}, and lower priority lanes can only occupy a few threads of the
+ * shared Executor at a time, so that they never hold up work the user is waiting on.
+ */
+public enum ExecutionPriority {
+    /**
+     * Indicates work the user is waiting on, such as Graph API requests made by the application. This is the
+     * default for a {@link RequestBatch}.
+     */
+    INTERACTIVE,
+
+    /**
+     * Indicates work that should happen soon but that the user is not waiting on, such as logging app events.
+     */
+    BACKGROUND,
+
+    /**
+     * Indicates housekeeping that can wait, such as trimming caches.
+     */
+    MAINTENANCE
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Opens the HTTP connections used by the SDK for Graph API requests, image downloads and the deprecated
+ * {@link com.facebook.android.Facebook} API. A transport is set with {@link Settings#setHttpTransport(HttpTransport)};
+ * the default opens connections with {@link URL#openConnection()}.
+ * <p/>
+ * The connection returned is used for the whole exchange: the SDK sets the method and request headers, writes the
+ * body to {@link HttpURLConnection#getOutputStream()}, reads the status, headers and body, and finally calls
+ * {@link HttpURLConnection#disconnect()}. A transport can therefore hand out connections from another HTTP client
+ * that provides an HttpURLConnection implementation, such as one with connection pooling or HTTP/2 support, or
+ * connections that never touch the network, such as canned responses for tests.
+ */
+public interface HttpTransport {
+    /**
+     * Opens a connection to the given URL. The connection should not be connected yet, so that the caller can
+     * configure it.
+     *
+     * @param url the URL to connect to
+     * @return the connection
+     * @throws IOException if the connection could not be opened
+     */
+    HttpURLConnection openConnection(URL url) throws IOException;
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.Process;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// Runs work on the Executor returned by Settings.getExecutor() at the time each task starts, so that
+// Settings.setExecutor is honored, but never occupies more than maxConcurrent of its threads. Tasks run with a
+// lowered thread priority.
+final class PriorityLaneExecutor implements Executor {
+    private static final String FALLBACK_THREAD_NAME = "FacebookSdkLaneFallback";
+
+    private final Object lock = new Object();
+    private final LinkedList<Runnable> pendingTasks = new LinkedList<Runnable>();
+    private final int maxConcurrent;
+    private final int threadPriority;
+    private int runningCount;
+
+    PriorityLaneExecutor(int maxConcurrent, int threadPriority) {
+        this.maxConcurrent = maxConcurrent;
+        this.threadPriority = threadPriority;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        synchronized (lock) {
+            pendingTasks.add(command);
+        }
+        startNext();
+    }
+
+    int getPendingCount() {
+        synchronized (lock) {
+            return pendingTasks.size();
+        }
+    }
+
+    private void startNext() {
+        Runnable task;
+        synchronized (lock) {
+            if (runningCount >= maxConcurrent || pendingTasks.isEmpty()) {
+                return;
+            }
+            task = pendingTasks.removeFirst();
+            runningCount++;
+        }
+
+        try {
+            Settings.getExecutor().execute(wrap(task));
+        } catch (RejectedExecutionException e) {
+            // The shared Executor is saturated. Put the task back; if other tasks from this lane are running, it is
+            // started when one of them finishes. Otherwise nothing would start it again, so start it on a thread
+            // of the lane's own. It never runs on the caller's thread, which may be the main thread.
+            boolean startFallbackThread;
+            synchronized (lock) {
+                pendingTasks.addFirst(task);
+                startFallbackThread = runningCount == 1;
+                if (!startFallbackThread) {
+                    runningCount--;
+                }
+            }
+            if (startFallbackThread) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Runnable next;
+                        synchronized (lock) {
+                            next = pendingTasks.poll();
+                        }
+                        if (next != null) {
+                            wrap(next).run();
+                        } else {
+                            finishTask();
+                        }
+                    }
+                }, FALLBACK_THREAD_NAME).start();
+            }
+        }
+    }
+
+    private Runnable wrap(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                int originalPriority = Process.getThreadPriority(Process.myTid());
+                try {
+                    Process.setThreadPriority(threadPriority);
+                    task.run();
+                } finally {
+                    Process.setThreadPriority(originalPriority);
+                    finishTask();
+                }
+            }
+        };
+    }
+
+    private void finishTask() {
+        synchronized (lock) {
+            runningCount--;
+        }
+        startNext();
+    }
+}
@@ -28,7 +28,8 @@ class ProgressNoopOutputStream extends OutputStream implements RequestOutputStre
 
     private Request currentRequest;
     private RequestProgress currentRequestProgress;
-    private int batchMax;
+    private long batchMax;
+    private boolean lengthKnown = true;
 
     ProgressNoopOutputStream(Handler callbackHandler) {
         this.callbackHandler = callbackHandler;
@@ -39,10 +40,18 @@ class ProgressNoopOutputStream extends OutputStream implements RequestOutputStre
         this.currentRequestProgress = currentRequest != null? progressMap.get(currentRequest) : null;
     }
 
-    int getMaxProgress() {
+    long getMaxProgress() {
         return batchMax;
     }
 
+    boolean isLengthKnown() {
+        return lengthKnown;
+    }
+
+    void setLengthUnknown() {
+        lengthKnown = false;
+    }
+
     Map<Request,RequestProgress> getProgressMap() {
         return progressMap;
     }
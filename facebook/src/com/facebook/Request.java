@@ -16,6 +16,7 @@
 
 package com.facebook;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.location.Location;
@@ -35,11 +36,14 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * A single request to be sent to the Facebook Platform through the <a
@@ -83,6 +87,12 @@ public class Request {
     private static final String USER_AGENT_HEADER = "User-Agent";
     private static final String CONTENT_TYPE_HEADER = "Content-Type";
     private static final String ACCEPT_LANGUAGE_HEADER = "Accept-Language";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String ACCEPT_ENCODING_GZIP_DEFLATE = "gzip, deflate";
+    private static final String CONTENT_ENCODING_GZIP = "gzip";
+    private static final int GZIP_BUFFER_SIZE = 8192;
+    private static final int KITKAT = 19;
 
     // Parameter names/values
     private static final String PICTURE_PARAM = "picture";
@@ -105,7 +115,7 @@ public class Request {
     private static final String STAGING_PARAM = "file";
     private static final String OBJECT_PARAM = "object";
 
-    private static final String MIME_BOUNDARY = "3i2ndDfv2rTHiSisAbouNdArYfORhtTPEefj3q2f";
+    static final String MIME_BOUNDARY = "3i2ndDfv2rTHiSisAbouNdArYfORhtTPEefj3q2f";
 
     private static String defaultBatchApplicationId;
 
@@ -125,6 +135,10 @@ public class Request {
     private Object tag;
     private String version;
     private boolean skipClientToken = false;
+    private BitmapEncodingPolicy bitmapEncodingPolicy;
+    // The batch this request was started with asynchronously, which may be cancelled even if the request ends up
+    // executing as part of another batch.
+    private volatile RequestBatch startingBatch;
 
     /**
      * Constructs a request without a session, graph path, or any other parameters.
@@ -307,7 +321,8 @@ public class Request {
     }
 
     /**
-     * Creates a new Request configured to upload a photo to the user's default photo album.
+     * Creates a new Request configured to upload a photo to the user's default photo album. The photo is encoded
+     * as described by {@link #setBitmapEncodingPolicy(BitmapEncodingPolicy)}.
      *
      * @param session
      *            the Session to use, or null; if non-null, the session must be in an opened state
@@ -625,7 +640,8 @@ public class Request {
      * Creates a new Request configured to upload an image to create a staging resource. Staging resources
      * allow you to post binary data such as images, in preparation for a post of an Open Graph object or action
      * which references the image. The URI returned when uploading a staging resource may be passed as the image
-     * property for an Open Graph object or action.
+     * property for an Open Graph object or action. The image is encoded as described by
+     * {@link #setBitmapEncodingPolicy(BitmapEncodingPolicy)}.
      *
      * @param session
      *            the Session to use, or null; if non-null, the session must be in an opened state
@@ -660,7 +676,8 @@ public class Request {
     public static Request newUploadStagingResourceWithImageRequest(Session session,
             File file, Callback callback) throws FileNotFoundException {
         ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
-        ParcelFileDescriptorWithMimeType descriptorWithMimeType = new ParcelFileDescriptorWithMimeType(descriptor, "image/png");
+        ParcelFileDescriptorWithMimeType descriptorWithMimeType = new ParcelFileDescriptorWithMimeType(descriptor,
+                getImageMimeType(file));
         Bundle parameters = new Bundle(1);
         parameters.putParcelable(STAGING_PARAM, descriptorWithMimeType);
 
@@ -906,6 +923,32 @@ public class Request {
         this.version = version;
     }
 
+    /**
+     * Returns the policy used to encode Bitmap parameters of this request, or null if the policy returned by
+     * {@link Settings#getBitmapEncodingPolicy()} is used.
+     *
+     * @return the policy, or null
+     */
+    public final BitmapEncodingPolicy getBitmapEncodingPolicy() {
+        return this.bitmapEncodingPolicy;
+    }
+
+    /**
+     * Sets the policy used to encode Bitmap parameters of this request, such as the image uploaded by
+     * {@link #newUploadPhotoRequest(Session, Bitmap, Callback)}.
+     *
+     * @param bitmapEncodingPolicy the policy, or null to use the one returned by
+     *                             {@link Settings#getBitmapEncodingPolicy()}
+     */
+    public final void setBitmapEncodingPolicy(BitmapEncodingPolicy bitmapEncodingPolicy) {
+        this.bitmapEncodingPolicy = bitmapEncodingPolicy;
+    }
+
+    final BitmapEncodingPolicy getEffectiveBitmapEncodingPolicy() {
+        BitmapEncodingPolicy policy = this.bitmapEncodingPolicy;
+        return (policy != null) ? policy : Settings.getBitmapEncodingPolicy();
+    }
+
     /**
      * This is an internal function that is not meant to be used by developers.
      */
@@ -1354,9 +1397,17 @@ public class Request {
 
         HttpURLConnection connection;
         try {
+            requests.startMetrics();
             connection = createConnection(url);
+            requests.setActiveConnection(connection);
+            if (requests.isCancelled()) {
+                Utility.disconnectQuietly(connection);
+                throw new FacebookOperationCanceledException("Request batch was cancelled");
+            }
 
             serializeToUrlConnection(requests, connection);
+            // Time to first byte counts from here, so that it doesn't include building and uploading the body.
+            requests.setRequestSentTime(SystemClock.elapsedRealtime());
         } catch (IOException e) {
             throw new FacebookException("could not construct request body", e);
         } catch (JSONException e) {
@@ -1432,6 +1483,10 @@ public class Request {
     /**
      * Executes requests on the current thread as a single batch and returns the responses.
      * <p/>
+     * A batch with more than {@link #MAXIMUM_BATCH_SIZE} requests is split into sub-batches that are sent
+     * concurrently (see {@link Settings#setMaxConcurrentSubBatches(int)}). Requests that depend on each other by
+     * name stay in the same sub-batch.
+     * <p/>
      * This should only be used if you have transitioned off the UI thread.
      *
      * @param requests
@@ -1447,6 +1502,27 @@ public class Request {
      */
     public static List<Response> executeBatchAndWait(RequestBatch requests) {
         Validate.notEmptyAndContainsNoNulls(requests, "requests");
+        requests.startMetrics();
+
+        if (areAllCancelled(requests)) {
+            List<Response> responses = Response.constructErrorResponses(requests.getRequests(), null,
+                    new FacebookOperationCanceledException("Request batch was cancelled"));
+            runCallbacks(requests, responses);
+            return responses;
+        }
+
+        if (requests.size() > MAXIMUM_BATCH_SIZE) {
+            List<Response> responses = BatchSplitter.executeAndWait(requests);
+            completeExecution(requests, responses);
+            return responses;
+        }
+
+        RetryPolicy retryPolicy = requests.getRetryPolicy();
+        if (retryPolicy != null) {
+            List<Response> responses = retryPolicy.executeRetries(requests, executeBatchWithoutCallbacks(requests));
+            completeExecution(requests, responses);
+            return responses;
+        }
 
         HttpURLConnection connection = null;
         try {
@@ -1516,8 +1592,33 @@ public class Request {
     public static RequestAsyncTask executeBatchAsync(RequestBatch requests) {
         Validate.notEmptyAndContainsNoNulls(requests, "requests");
 
-        RequestAsyncTask asyncTask = new RequestAsyncTask(requests);
-        asyncTask.executeOnSettingsExecutor();
+        for (Request request : requests) {
+            request.startingBatch = requests;
+        }
+
+        String deduplicationKey = RequestDeduplicator.getKey(requests);
+        if (deduplicationKey != null) {
+            RequestAsyncTask inFlightTask = RequestDeduplicator.attach(deduplicationKey, requests);
+            if (inFlightTask != null) {
+                return inFlightTask;
+            }
+        }
+
+        RequestAsyncTask asyncTask;
+        boolean coalesced = RequestCoalescer.canCoalesce(requests);
+        if (coalesced) {
+            asyncTask = RequestCoalescer.enqueue(requests);
+        } else {
+            asyncTask = new RequestAsyncTask(requests);
+        }
+
+        if (deduplicationKey != null) {
+            RequestDeduplicator.register(deduplicationKey, requests.get(0), asyncTask);
+        }
+
+        if (!coalesced) {
+            asyncTask.executeOnSettingsExecutor();
+        }
         return asyncTask;
     }
 
@@ -1558,9 +1659,27 @@ public class Request {
      *            If there was an error in the protocol used to communicate with the service
      */
     public static List<Response> executeConnectionAndWait(HttpURLConnection connection, RequestBatch requests) {
+        List<Response> responses = readResponses(connection, requests);
+        completeExecution(requests, responses);
+        return responses;
+    }
+
+    static List<Response> executeBatchWithoutCallbacks(RequestBatch requests) {
+        HttpURLConnection connection;
+        try {
+            connection = toHttpConnection(requests);
+        } catch (Exception ex) {
+            return Response.constructErrorResponses(requests.getRequests(), null, new FacebookException(ex));
+        }
+
+        return readResponses(connection, requests);
+    }
+
+    private static List<Response> readResponses(HttpURLConnection connection, RequestBatch requests) {
         List<Response> responses = Response.fromHttpConnection(connection, requests);
 
         Utility.disconnectQuietly(connection);
+        requests.setActiveConnection(null);
 
         int numRequests = requests.size();
         if (numRequests != responses.size()) {
@@ -1568,6 +1687,10 @@ public class Request {
                     numRequests));
         }
 
+        return responses;
+    }
+
+    private static void completeExecution(RequestBatch requests, List<Response> responses) {
         runCallbacks(requests, responses);
 
         // See if any of these sessions needs its token to be extended. We do this after issuing the request so as to
@@ -1581,8 +1704,6 @@ public class Request {
         for (Session session : sessions) {
             session.extendAccessTokenIfNeeded();
         }
-
-        return responses;
     }
 
     /**
@@ -1652,24 +1773,42 @@ public class Request {
 
         // Compile the list of callbacks to call and then run them either on this thread or via the Handler we received
         final ArrayList<Pair<Callback, Response>> callbacks = new ArrayList<Pair<Callback, Response>>();
+        // Identical requests that shared this round-trip get copies of the responses, taken before any callback can
+        // change them.
+        final Runnable followerCompletion = RequestDeduplicator.prepareCompletion(requests, responses, null);
         for (int i = 0; i < numRequests; ++i) {
             Request request = requests.get(i);
-            if (request.callback != null) {
+            if (request.isCancelled(requests)) {
+                // Callers that cancelled don't get callbacks, but the responses returned to them show the cancellation.
+                responses.set(i, createCancelledResponse(request));
+            } else if (request.callback != null) {
                 callbacks.add(new Pair<Callback, Response>(request.callback, responses.get(i)));
             }
+            request.startingBatch = null;
         }
 
-        if (callbacks.size() > 0) {
+        if (callbacks.size() > 0 || followerCompletion != null) {
             Runnable runnable = new Runnable() {
                 public void run() {
+                    long callbackStartTime = SystemClock.elapsedRealtime();
+                    if (followerCompletion != null) {
+                        followerCompletion.run();
+                    }
                     for (Pair<Callback, Response> pair : callbacks) {
                         pair.first.onCompleted(pair.second);
                     }
 
-                    List<RequestBatch.Callback> batchCallbacks = requests.getCallbacks();
+                    List<RequestBatch.Callback> batchCallbacks = requests.isCancelled() ?
+                            Collections.<RequestBatch.Callback>emptyList() : requests.getCallbacks();
                     for (RequestBatch.Callback batchCallback : batchCallbacks) {
                         batchCallback.onBatchCompleted(requests);
                     }
+
+                    RequestMetrics metrics = requests.getMetrics();
+                    if (metrics != null) {
+                        metrics.setCallbackTime(SystemClock.elapsedRealtime() - callbackStartTime);
+                    }
+                    reportMetrics(requests);
                 }
             };
 
@@ -1681,18 +1820,31 @@ public class Request {
                 // Post to the handler.
                 callbackHandler.post(runnable);
             }
+        } else {
+            reportMetrics(requests);
+        }
+    }
+
+    static void reportMetrics(RequestBatch requests) {
+        RequestMetrics metrics = requests.finishMetrics();
+        RequestMetricsListener listener = Settings.getRequestMetricsListener();
+        if (metrics != null && listener != null) {
+            listener.onRequestMetrics(metrics);
         }
     }
 
     static HttpURLConnection createConnection(URL url) throws IOException {
         HttpURLConnection connection;
-        connection = (HttpURLConnection) url.openConnection();
+        connection = Settings.getHttpTransport().openConnection(url);
 
         connection.setRequestProperty(USER_AGENT_HEADER, getUserAgent());
         connection.setRequestProperty(CONTENT_TYPE_HEADER, getMimeContentType());
         connection.setRequestProperty(ACCEPT_LANGUAGE_HEADER, Locale.getDefault().toString());
+        if (Settings.isResponseCompressionEnabled()) {
+            // Asking explicitly turns off the platform's transparent decoding, and Response decodes the body itself.
+            connection.setRequestProperty(ACCEPT_ENCODING_HEADER, ACCEPT_ENCODING_GZIP_DEFLATE);
+        }
 
-        connection.setChunkedStreamingMode(0);
         return connection;
     }
 
@@ -1764,7 +1916,7 @@ public class Request {
         }
 
         String graphBaseUrlBase;
-        if (this.getHttpMethod() == HttpMethod.POST && graphPath != null && graphPath.endsWith(VIDEOS_SUFFIX)) {
+        if (isVideoUpload()) {
             graphBaseUrlBase = ServerProtocol.getGraphVideoUrlBase();
         } else {
             graphBaseUrlBase = ServerProtocol.getGraphUrlBase();
@@ -1775,6 +1927,41 @@ public class Request {
         return appendParametersToBaseUrl(baseUrl);
     }
 
+    final boolean isUrlOverridden() {
+        return overriddenURL != null;
+    }
+
+    final boolean isCancelled() {
+        RequestBatch batch = startingBatch;
+        return batch != null && batch.isCancelled();
+    }
+
+    final boolean isCancelled(RequestBatch executingBatch) {
+        return executingBatch.isCancelled() || isCancelled();
+    }
+
+    final void clearStartingBatch() {
+        startingBatch = null;
+    }
+
+    static Response createCancelledResponse(Request request) {
+        return new Response(request, null, new FacebookRequestError(null,
+                new FacebookOperationCanceledException("Request was cancelled")));
+    }
+
+    private static boolean areAllCancelled(RequestBatch requests) {
+        for (Request request : requests) {
+            if (!request.isCancelled(requests)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    final boolean isVideoUpload() {
+        return this.getHttpMethod() == HttpMethod.POST && graphPath != null && graphPath.endsWith(VIDEOS_SUFFIX);
+    }
+
     private String getGraphPathWithVersion() {
         Matcher matcher = versionPattern.matcher(this.graphPath);
         if (matcher.matches()) {
@@ -1801,7 +1988,7 @@ public class Request {
         }
     }
 
-    private void serializeToBatch(JSONArray batch, Map<String, Attachment> attachments) throws JSONException, IOException {
+    private JSONObject serializeToBatch(Map<String, Attachment> attachments) throws JSONException, IOException {
         JSONObject batchEntry = new JSONObject();
 
         if (this.batchEntryName != null) {
@@ -1851,7 +2038,18 @@ public class Request {
             batchEntry.put(BATCH_BODY_PARAM, bodyValue);
         }
 
-        batch.put(batchEntry);
+        return batchEntry;
+    }
+
+    // Image files were always described as PNG; JPEG and WebP files are recognized by their extension.
+    private static String getImageMimeType(File file) {
+        String name = file.getName().toLowerCase(Locale.US);
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        } else if (name.endsWith(".webp")) {
+            return "image/webp";
+        }
+        return "image/png";
     }
 
     private static boolean hasOnProgressCallbacks(RequestBatch requests) {
@@ -1900,38 +2098,95 @@ public class Request {
 
         connection.setDoOutput(true);
 
+        RequestMetrics metrics = requests.getMetrics();
+        long serializeStartTime = SystemClock.elapsedRealtime();
+        long connectTime = 0;
+        CountingOutputStream wireStream = null;
         OutputStream outputStream = null;
+        // Bitmaps are encoded once, ahead of the serializer, and the bytes are shared by the counting pass and the
+        // one that sends them.
+        BitmapEncoder bitmapEncoder = new BitmapEncoder();
         try {
-            if (hasOnProgressCallbacks(requests)) {
-                ProgressNoopOutputStream countingStream = null;
+            bitmapEncoder.startEncoding(requests);
+
+            boolean hasOnProgressCallbacks = hasOnProgressCallbacks(requests);
+            boolean useFixedLength = Settings.isFixedLengthStreamingModeEnabled();
+            boolean mayCompress = Settings.isRequestCompressionEnabled();
+            ProgressNoopOutputStream countingStream = null;
+            if (hasOnProgressCallbacks || useFixedLength || mayCompress) {
                 countingStream = new ProgressNoopOutputStream(requests.getCallbackHandler());
-                processRequest(requests, null, numRequests, url, countingStream);
+                processRequest(requests, null, numRequests, url, countingStream, bitmapEncoder);
+            }
 
-                int max = countingStream.getMaxProgress();
-                Map<Request, RequestProgress> progressMap = countingStream.getProgressMap();
+            // Bodies of unknown length, such as those streaming from a pipe, are assumed to be large.
+            boolean compress = mayCompress && (!countingStream.isLengthKnown() ||
+                    countingStream.getMaxProgress() >= Settings.getRequestCompressionThreshold());
+            if (compress) {
+                connection.setRequestProperty(CONTENT_ENCODING_HEADER, CONTENT_ENCODING_GZIP);
+                logger.appendKeyValue("Content-Encoding", CONTENT_ENCODING_GZIP);
+                connection.setChunkedStreamingMode(0);
+            } else if (useFixedLength && countingStream.isLengthKnown() &&
+                    setFixedLengthStreamingMode(connection, countingStream.getMaxProgress())) {
+                logger.appendKeyValue("Content-Length", countingStream.getMaxProgress());
+            } else {
+                connection.setChunkedStreamingMode(0);
+            }
 
-                BufferedOutputStream buffered = new BufferedOutputStream(connection.getOutputStream());
-                outputStream = new ProgressOutputStream(buffered, requests, progressMap, max);
+            // Asking for the output stream is what connects.
+            long connectStartTime = SystemClock.elapsedRealtime();
+            outputStream = connection.getOutputStream();
+            connectTime = SystemClock.elapsedRealtime() - connectStartTime;
+            if (metrics != null) {
+                wireStream = new CountingOutputStream(outputStream);
+                outputStream = wireStream;
             }
-            else {
-                outputStream = new BufferedOutputStream(connection.getOutputStream());
+            outputStream = new BufferedOutputStream(outputStream);
+            if (compress) {
+                outputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+            }
+            if (hasOnProgressCallbacks) {
+                // Progress is reported in uncompressed bytes, which is what the counting pass measured.
+                long max = countingStream.getMaxProgress();
+                Map<Request, RequestProgress> progressMap = countingStream.getProgressMap();
+                outputStream = new ProgressOutputStream(outputStream, requests, progressMap, max);
             }
 
-            processRequest(requests, logger, numRequests, url, outputStream);
+            processRequest(requests, logger, numRequests, url, outputStream, bitmapEncoder);
         }
         finally {
+            bitmapEncoder.cancel();
             if (outputStream != null) {
                 outputStream.close();
             }
         }
 
+        if (metrics != null) {
+            metrics.setConnectTime(connectTime);
+            metrics.setSerialized(SystemClock.elapsedRealtime() - serializeStartTime - connectTime,
+                    wireStream.getCount());
+        }
+
         logger.log();
     }
 
-    private static void processRequest(RequestBatch requests, Logger logger, int numRequests, URL url, OutputStream outputStream)
+    // HttpURLConnection only takes a length over 2 GB from KitKat on; before that, such bodies are sent chunked.
+    @TargetApi(KITKAT)
+    private static boolean setFixedLengthStreamingMode(HttpURLConnection connection, long contentLength) {
+        if (Build.VERSION.SDK_INT >= KITKAT) {
+            connection.setFixedLengthStreamingMode(contentLength);
+            return true;
+        } else if (contentLength <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int) contentLength);
+            return true;
+        }
+        return false;
+    }
+
+    private static void processRequest(RequestBatch requests, Logger logger, int numRequests, URL url,
+            OutputStream outputStream, BitmapEncoder bitmapEncoder)
             throws IOException, JSONException
     {
-        Serializer serializer = new Serializer(outputStream, logger);
+        Serializer serializer = new Serializer(outputStream, logger, bitmapEncoder);
 
         if (numRequests == 1) {
             Request request = requests.get(0);
@@ -2092,12 +2347,7 @@ public class Request {
 
     private static void serializeRequestsAsJSON(Serializer serializer, Collection<Request> requests, Map<String, Attachment> attachments)
             throws JSONException, IOException {
-        JSONArray batch = new JSONArray();
-        for (Request request : requests) {
-            request.serializeToBatch(batch, attachments);
-        }
-
-        serializer.writeRequestsAsJson(BATCH_PARAM, batch, requests);
+        serializer.writeRequestsAsJson(BATCH_PARAM, requests, attachments);
     }
 
     private static String getMimeContentType() {
@@ -2142,17 +2392,17 @@ public class Request {
         return data.castToListOf(clazz);
     }
 
-    private static boolean isSupportedAttachmentType(Object value) {
+    static boolean isSupportedAttachmentType(Object value) {
         return value instanceof Bitmap || value instanceof byte[] || value instanceof ParcelFileDescriptor ||
                 value instanceof ParcelFileDescriptorWithMimeType;
     }
 
-    private static boolean isSupportedParameterType(Object value) {
+    static boolean isSupportedParameterType(Object value) {
         return value instanceof String || value instanceof Boolean || value instanceof Number ||
                 value instanceof Date;
     }
 
-    private static String parameterToString(Object value) {
+    static String parameterToString(Object value) {
         if (value instanceof String) {
             return (String) value;
         } else if (value instanceof Boolean || value instanceof Number) {
@@ -2168,14 +2418,35 @@ public class Request {
         void writeString(String key, String value) throws IOException;
     }
 
-    private static class Serializer implements KeyValueSerializer {
+    static class Serializer implements KeyValueSerializer {
+        private static final int ENCODE_BUFFER_SIZE = 2048;
+        private static final int FILE_BUFFER_SIZE = 64 * 1024;
+        private static final int MAX_POOLED_FILE_BUFFERS = 4;
+        // File buffers are reused across uploads rather than allocated for each attachment.
+        private static final LinkedList<ByteBuffer> fileBufferPool = new LinkedList<ByteBuffer>();
+        // Every record shares the same framing, so it is encoded once rather than for each parameter.
+        private static final byte[] RECORD_BOUNDARY_BYTES = getAsciiBytes("--" + MIME_BOUNDARY + "\r\n");
+        private static final byte[] CRLF_BYTES = getAsciiBytes("\r\n");
+        private static final byte[] CONTENT_DISPOSITION_PREFIX_BYTES =
+                getAsciiBytes("Content-Disposition: form-data; name=\"");
+        private static final byte[] FILENAME_PREFIX_BYTES = getAsciiBytes("; filename=\"");
+        private static final byte[] QUOTE_BYTES = getAsciiBytes("\"");
+        private static final byte[] CONTENT_TYPE_PREFIX_BYTES = getAsciiBytes(CONTENT_TYPE_HEADER + ": ");
+
         private final OutputStream outputStream;
         private final Logger logger;
+        private final BitmapEncoder bitmapEncoder;
+        private final byte[] encodeBuffer = new byte[ENCODE_BUFFER_SIZE];
         private boolean firstWrite = true;
 
         public Serializer(OutputStream outputStream, Logger logger) {
+            this(outputStream, logger, null);
+        }
+
+        public Serializer(OutputStream outputStream, Logger logger, BitmapEncoder bitmapEncoder) {
             this.outputStream = outputStream;
             this.logger = logger;
+            this.bitmapEncoder = (bitmapEncoder != null) ? bitmapEncoder : new BitmapEncoder();
         }
 
         public void writeObject(String key, Object value, Request request) throws IOException {
@@ -2186,7 +2457,7 @@ public class Request {
             if (isSupportedParameterType(value)) {
                 writeString(key, parameterToString(value));
             } else if (value instanceof Bitmap) {
-                writeBitmap(key, (Bitmap) value);
+                writeBitmap(key, (Bitmap) value, request.getEffectiveBitmapEncodingPolicy());
             } else if (value instanceof byte[]) {
                 writeBytes(key, (byte[]) value);
             } else if (value instanceof ParcelFileDescriptor) {
@@ -2198,36 +2469,48 @@ public class Request {
             }
         }
 
-        public void writeRequestsAsJson(String key, JSONArray requestJsonArray, Collection<Request> requests)
+        // Streams the batch entry by entry, so that only one entry is held in memory at a time rather than the
+        // whole array and its string form. The output is the same as writeString(key, array.toString()).
+        public void writeRequestsAsJson(String key, Collection<Request> requests, Map<String, Attachment> attachments)
                 throws IOException, JSONException {
-            if (! (outputStream instanceof RequestOutputStream)) {
-                writeString(key, requestJsonArray.toString());
-                return;
-            }
+            RequestOutputStream requestOutputStream = (outputStream instanceof RequestOutputStream) ?
+                    (RequestOutputStream) outputStream : null;
+            StringBuilder loggedValue = (logger != null && Settings.isLoggingBehaviorEnabled(LoggingBehavior.REQUESTS)) ?
+                    new StringBuilder("[") : null;
 
-            RequestOutputStream requestOutputStream = (RequestOutputStream) outputStream;
             writeContentDisposition(key, null, null);
             write("[");
-            int i = 0;
+            boolean isFirst = true;
             for (Request request : requests) {
-                JSONObject requestJson = requestJsonArray.getJSONObject(i);
-                requestOutputStream.setCurrentRequest(request);
-                if (i > 0) {
-                    write(",%s", requestJson.toString());
-                } else {
-                    write("%s", requestJson.toString());
+                if (requestOutputStream != null) {
+                    requestOutputStream.setCurrentRequest(request);
+                }
+                String entry = request.serializeToBatch(attachments).toString();
+                if (!isFirst) {
+                    write(",");
+                    if (loggedValue != null) {
+                        loggedValue.append(',');
+                    }
                 }
-                i++;
+                write(entry);
+                if (loggedValue != null) {
+                    loggedValue.append(entry);
+                }
+                isFirst = false;
             }
             write("]");
-            if (logger != null) {
-                logger.appendKeyValue("    " + key, requestJsonArray.toString());
+            writeLine();
+            writeRecordBoundary();
+
+            if (loggedValue != null) {
+                logger.appendKeyValue("    " + key, loggedValue.append(']'));
             }
         }
 
         public void writeString(String key, String value) throws IOException {
             writeContentDisposition(key, null, null);
-            writeLine("%s", value);
+            write(value);
+            writeLine();
             writeRecordBoundary();
             if (logger != null) {
                 logger.appendKeyValue("    " + key, value);
@@ -2235,10 +2518,14 @@ public class Request {
         }
 
         public void writeBitmap(String key, Bitmap bitmap) throws IOException {
-            writeContentDisposition(key, key, "image/png");
-            // Note: quality parameter is ignored for PNG
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
-            writeLine("");
+            writeBitmap(key, bitmap, Settings.getBitmapEncodingPolicy());
+        }
+
+        public void writeBitmap(String key, Bitmap bitmap, BitmapEncodingPolicy policy) throws IOException {
+            BitmapEncoder.EncodedBitmap encodedBitmap = bitmapEncoder.getEncodedBitmap(bitmap, policy);
+            writeContentDisposition(key, key, encodedBitmap.getMimeType());
+            this.outputStream.write(encodedBitmap.getBytes());
+            writeLine();
             writeRecordBoundary();
             if (logger != null) {
                 logger.appendKeyValue("    " + key, "<Image>");
@@ -2248,7 +2535,7 @@ public class Request {
         public void writeBytes(String key, byte[] bytes) throws IOException {
             writeContentDisposition(key, key, "content/unknown");
             this.outputStream.write(bytes);
-            writeLine("");
+            writeLine();
             writeRecordBoundary();
             if (logger != null) {
                 logger.appendKeyValue("    " + key, String.format("<Data: %d>", bytes.length));
@@ -2269,31 +2556,38 @@ public class Request {
 
             if (outputStream instanceof ProgressNoopOutputStream) {
                 // If we are only counting bytes then skip reading the file
-                ((ProgressNoopOutputStream) outputStream).addProgress(descriptor.getStatSize());
+                long statSize = descriptor.getStatSize();
+                if (statSize >= 0) {
+                    ((ProgressNoopOutputStream) outputStream).addProgress(statSize);
+                } else {
+                    // Pipes and sockets have no size, so the body length can't be known in advance.
+                    ((ProgressNoopOutputStream) outputStream).setLengthUnknown();
+                }
             }
             else {
                 ParcelFileDescriptor.AutoCloseInputStream inputStream = null;
-                BufferedInputStream bufferedInputStream = null;
+                ByteBuffer buffer = obtainFileBuffer();
                 try {
                     inputStream = new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
-                    bufferedInputStream = new BufferedInputStream(inputStream);
+                    FileChannel channel = inputStream.getChannel();
 
-                    byte[] buffer = new byte[8192];
+                    // The buffer is larger than the BufferedOutputStream wrapping the connection, so each read is
+                    // written straight through to the socket rather than being copied again.
+                    byte[] bytes = buffer.array();
                     int bytesRead;
-                    while ((bytesRead = bufferedInputStream.read(buffer)) != -1) {
-                        this.outputStream.write(buffer, 0, bytesRead);
+                    while ((bytesRead = channel.read(buffer)) != -1) {
+                        this.outputStream.write(bytes, buffer.arrayOffset(), bytesRead);
                         totalBytes += bytesRead;
+                        buffer.clear();
                     }
                 } finally {
-                    if (bufferedInputStream != null) {
-                        bufferedInputStream.close();
-                    }
+                    recycleFileBuffer(buffer);
                     if (inputStream != null) {
                         inputStream.close();
                     }
                 }
             }
-            writeLine("");
+            writeLine();
             writeRecordBoundary();
             if (logger != null) {
                 logger.appendKeyValue("    " + key, String.format("<Data: %d>", totalBytes));
@@ -2301,35 +2595,110 @@ public class Request {
         }
 
         public void writeRecordBoundary() throws IOException {
-            writeLine("--%s", MIME_BOUNDARY);
+            write(RECORD_BOUNDARY_BYTES);
         }
 
         public void writeContentDisposition(String name, String filename, String contentType) throws IOException {
-            write("Content-Disposition: form-data; name=\"%s\"", name);
+            write(CONTENT_DISPOSITION_PREFIX_BYTES);
+            write(name);
+            write(QUOTE_BYTES);
             if (filename != null) {
-                write("; filename=\"%s\"", filename);
+                write(FILENAME_PREFIX_BYTES);
+                write(filename);
+                write(QUOTE_BYTES);
             }
-            writeLine(""); // newline after Content-Disposition
+            writeLine(); // newline after Content-Disposition
             if (contentType != null) {
-                writeLine("%s: %s", CONTENT_TYPE_HEADER, contentType);
+                write(CONTENT_TYPE_PREFIX_BYTES);
+                write(contentType);
+                writeLine();
             }
-            writeLine(""); // blank line before content
+            writeLine(); // blank line before content
+        }
+
+        public void write(byte[] bytes) throws IOException {
+            writeFirstBoundaryIfNeeded();
+            this.outputStream.write(bytes);
         }
 
-        public void write(String format, Object... args) throws IOException {
+        // Encodes as UTF-8 (the platform default charset on Android) through a reusable buffer, producing the same
+        // bytes as String.getBytes() without allocating a byte[] per fragment.
+        public void write(String string) throws IOException {
+            writeFirstBoundaryIfNeeded();
+
+            byte[] buffer = encodeBuffer;
+            int position = 0;
+            int length = string.length();
+            for (int i = 0; i < length; i++) {
+                if (position > ENCODE_BUFFER_SIZE - 4) {
+                    this.outputStream.write(buffer, 0, position);
+                    position = 0;
+                }
+
+                char c = string.charAt(i);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                        Character.isLowSurrogate(string.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    // Unpaired surrogates are replaced, as String.getBytes() does.
+                    buffer[position++] = (byte) '?';
+                } else {
+                    buffer[position++] = (byte) (0xE0 | (c >> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+
+            if (position > 0) {
+                this.outputStream.write(buffer, 0, position);
+            }
+        }
+
+        public void writeLine() throws IOException {
+            write(CRLF_BYTES);
+        }
+
+        private void writeFirstBoundaryIfNeeded() throws IOException {
             if (firstWrite) {
                 // Prepend all of our output with a boundary string.
-                this.outputStream.write("--".getBytes());
-                this.outputStream.write(MIME_BOUNDARY.getBytes());
-                this.outputStream.write("\r\n".getBytes());
                 firstWrite = false;
+                this.outputStream.write(RECORD_BOUNDARY_BYTES);
             }
-            this.outputStream.write(String.format(format, args).getBytes());
         }
 
-        public void writeLine(String format, Object... args) throws IOException {
-            write(format, args);
-            write("\r\n");
+        private static ByteBuffer obtainFileBuffer() {
+            synchronized (fileBufferPool) {
+                if (!fileBufferPool.isEmpty()) {
+                    return fileBufferPool.removeFirst();
+                }
+            }
+            return ByteBuffer.allocate(FILE_BUFFER_SIZE);
+        }
+
+        private static void recycleFileBuffer(ByteBuffer buffer) {
+            buffer.clear();
+            synchronized (fileBufferPool) {
+                if (fileBufferPool.size() < MAX_POOLED_FILE_BUFFERS) {
+                    fileBufferPool.addFirst(buffer);
+                }
+            }
+        }
+
+        private static byte[] getAsciiBytes(String string) {
+            try {
+                return string.getBytes("US-ASCII");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
         }
 
     }
@@ -2410,7 +2779,7 @@ public class Request {
         void onCompleted(List<GraphPlace> places, Response response);
     }
 
-    private static class ParcelFileDescriptorWithMimeType implements Parcelable {
+    static class ParcelFileDescriptorWithMimeType implements Parcelable {
         private final String mimeType;
         private final ParcelFileDescriptor fileDescriptor;
 
@@ -2453,4 +2822,28 @@ public class Request {
             fileDescriptor = in.readFileDescriptor();
         }
     }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int oneByte) throws IOException {
+            out.write(oneByte);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+    }
 }
@@ -24,6 +24,7 @@ import android.util.Log;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Executor;
@@ -37,11 +38,26 @@ public class RequestAsyncTask extends AsyncTask<Void, Void, List<Response>> {
     private static final String TAG = RequestAsyncTask.class.getCanonicalName();
     private static Method executeOnExecutorMethod;
 
+    // Runs a handle's doInBackground on the thread that executes it, since there is nothing left to wait for.
+    private static final Executor HANDLE_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
     private final HttpURLConnection connection;
     private final RequestBatch requests;
 
     private Exception exception;
 
+    // A handle is returned in place of a task whose round-trip is shared with other callers, so that each caller can
+    // cancel and wait on its own requests. It sends nothing; it is executed once the shared task has finished, and
+    // returns the responses it was handed.
+    private boolean isHandle;
+    private List<Response> handleResponses;
+    private List<RequestAsyncTask> handles;
+
     static {
         for (Method method : AsyncTask.class.getMethods()) {
             if ("executeOnExecutor".equals(method.getName())) {
@@ -132,6 +148,20 @@ public class RequestAsyncTask extends AsyncTask<Void, Void, List<Response>> {
         return requests;
     }
 
+    /**
+     * Cancels the requests being executed by this task, closing the connection if they are in flight, and cancels
+     * the task itself. No callbacks are called for the cancelled requests. If this task was returned for a request
+     * that shares a round-trip with other requests, as when it was merged into a batch by {@link RequestCoalescer} or
+     * joined an identical request already in flight, only this task's requests are cancelled and the shared
+     * connection is left open.
+     *
+     * @see RequestBatch#cancel()
+     */
+    public final void cancelRequests() {
+        requests.cancel();
+        cancel(false);
+    }
+
     @Override
     public String toString() {
         return new StringBuilder().append("{RequestAsyncTask: ").append(" connection: ").append(connection)
@@ -142,7 +172,7 @@ public class RequestAsyncTask extends AsyncTask<Void, Void, List<Response>> {
     protected void onPreExecute() {
         super.onPreExecute();
 
-        if (requests.getCallbackHandler() == null) {
+        if (!isHandle && requests.getCallbackHandler() == null) {
             // We want any callbacks to go to a handler on this thread unless a handler has already been specified.
             requests.setCallbackHandler(new Handler());
         }
@@ -152,13 +182,38 @@ public class RequestAsyncTask extends AsyncTask<Void, Void, List<Response>> {
     protected void onPostExecute(List<Response> result) {
         super.onPostExecute(result);
 
+        if (!isHandle) {
+            RequestDeduplicator.complete(requests, result, exception);
+            completeHandles(result, exception);
+        }
+
         if (exception != null) {
             Log.d(TAG, String.format("onPostExecute: exception encountered during request: %s", exception.getMessage()));
         }
     }
 
+    @Override
+    protected void onCancelled() {
+        super.onCancelled();
+
+        if (!isHandle) {
+            // onPostExecute won't be called, so complete any requests waiting on this one here.
+            FacebookOperationCanceledException exception = new FacebookOperationCanceledException();
+            RequestDeduplicator.complete(requests, null, exception);
+            completeHandles(null, exception);
+        }
+    }
+
     @Override
     protected List<Response> doInBackground(Void... params) {
+        if (isHandle) {
+            return handleResponses;
+        }
+
+        RequestMetrics metrics = requests.getMetrics();
+        if (metrics != null) {
+            metrics.markStarted();
+        }
         try {
             if (connection == null) {
                 return requests.executeAndWait();
@@ -172,9 +227,13 @@ public class RequestAsyncTask extends AsyncTask<Void, Void, List<Response>> {
     }
 
     RequestAsyncTask executeOnSettingsExecutor() {
+        RequestMetrics metrics = requests.startMetrics();
+        if (metrics != null) {
+            metrics.markEnqueued();
+        }
         try {
             if (executeOnExecutorMethod != null) {
-                executeOnExecutorMethod.invoke(this, Settings.getExecutor(), null);
+                executeOnExecutorMethod.invoke(this, Settings.getExecutor(requests.getPriority()), null);
                 return this;
             }
         } catch (InvocationTargetException e) {
@@ -186,4 +245,57 @@ public class RequestAsyncTask extends AsyncTask<Void, Void, List<Response>> {
         this.execute();
         return this;
     }
+
+    static RequestAsyncTask createHandle(RequestBatch requests) {
+        RequestAsyncTask handle = new RequestAsyncTask(requests);
+        handle.isHandle = true;
+        return handle;
+    }
+
+    // Called on the main thread, before this task has finished. The handle completes with this task's responses to
+    // the handle's requests.
+    void addHandle(RequestAsyncTask handle) {
+        if (handles == null) {
+            handles = new ArrayList<RequestAsyncTask>();
+        }
+        handles.add(handle);
+    }
+
+    // Called on the main thread once the shared round-trip has finished.
+    void completeHandle(List<Response> responses, Exception exception) {
+        if (isCancelled()) {
+            return;
+        }
+        this.handleResponses = responses;
+        this.exception = exception;
+        try {
+            if (executeOnExecutorMethod != null) {
+                executeOnExecutorMethod.invoke(this, HANDLE_EXECUTOR, null);
+                return;
+            }
+        } catch (InvocationTargetException e) {
+            // fall-through
+        } catch (IllegalAccessException e) {
+            // fall-through
+        }
+
+        this.execute();
+    }
+
+    private void completeHandles(List<Response> result, Exception exception) {
+        if (handles == null) {
+            return;
+        }
+        for (RequestAsyncTask handle : handles) {
+            List<Response> handleResponses = null;
+            if (result != null) {
+                handleResponses = new ArrayList<Response>(handle.requests.size());
+                for (Request request : handle.requests) {
+                    handleResponses.add(result.get(requests.indexOf(request)));
+                }
+            }
+            handle.completeHandle(handleResponses, exception);
+        }
+        handles = null;
+    }
 }
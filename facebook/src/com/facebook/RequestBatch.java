@@ -17,7 +17,11 @@
 package com.facebook;
 
 import android.os.Handler;
+import android.os.SystemClock;
+import com.facebook.internal.Utility;
+import com.facebook.internal.Validate;
 
+import java.net.HttpURLConnection;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -33,6 +37,16 @@ public class RequestBatch extends AbstractList<Request> {
     private final String id = Integer.valueOf(idGenerator.incrementAndGet()).toString();
     private List<Callback> callbacks = new ArrayList<Callback>();
     private String batchApplicationId;
+    private RetryPolicy retryPolicy;
+    private ExecutionPriority priority = ExecutionPriority.INTERACTIVE;
+    private volatile boolean cancelled;
+    private volatile HttpURLConnection activeConnection;
+    // Batches that send some of these requests on this batch's behalf, such as sub-batches and retries. They are
+    // cancelled along with it. Also the monitor that is notified when the batch is cancelled.
+    private final List<RequestBatch> linkedBatches = new ArrayList<RequestBatch>();
+    private volatile long requestSentTime;
+    // Timings of the current execution, which are only collected while a RequestMetricsListener is registered.
+    private volatile RequestMetrics metrics;
 
     /**
      * Constructor. Creates an empty batch.
@@ -66,6 +80,8 @@ public class RequestBatch extends AbstractList<Request> {
         this.callbackHandler = requests.callbackHandler;
         this.timeoutInMilliseconds = requests.timeoutInMilliseconds;
         this.callbacks = new ArrayList<Callback>(requests.callbacks);
+        this.retryPolicy = requests.retryPolicy;
+        this.priority = requests.priority;
     }
 
     /**
@@ -107,6 +123,46 @@ public class RequestBatch extends AbstractList<Request> {
         callbacks.remove(callback);
     }
 
+    /**
+     * Gets the policy used to retry requests in this batch that fail with a transient error.
+     *
+     * @return the retry policy, or null if requests are not retried
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the policy used to retry requests in this batch that fail with a transient error. By default, requests
+     * are not retried.
+     *
+     * @param retryPolicy the retry policy, or null to disable retries
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Gets the priority with which this batch is executed asynchronously.
+     *
+     * @return the priority
+     */
+    public ExecutionPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority with which this batch is executed asynchronously. The default is
+     * {@link ExecutionPriority#INTERACTIVE}; batches that the user is not waiting on should use a lower priority so
+     * that they don't delay those that the user is.
+     *
+     * @param priority the priority
+     */
+    public void setPriority(ExecutionPriority priority) {
+        Validate.notNull(priority, "priority");
+        this.priority = priority;
+    }
+
     @Override
     public final boolean add(Request request) {
         return requests.add(request);
@@ -162,6 +218,68 @@ public class RequestBatch extends AbstractList<Request> {
         return callbacks;
     }
 
+    final void setActiveConnection(HttpURLConnection activeConnection) {
+        this.activeConnection = activeConnection;
+    }
+
+    final void addLinkedBatch(RequestBatch batch) {
+        boolean isCancelled;
+        synchronized (linkedBatches) {
+            linkedBatches.add(batch);
+            isCancelled = cancelled;
+        }
+        if (isCancelled) {
+            batch.cancel();
+        }
+    }
+
+    final void removeLinkedBatch(RequestBatch batch) {
+        synchronized (linkedBatches) {
+            linkedBatches.remove(batch);
+        }
+    }
+
+    // Waits until the batch is cancelled or the timeout elapses, and returns whether it was cancelled.
+    final boolean waitForCancel(long timeoutInMilliseconds) throws InterruptedException {
+        long deadline = SystemClock.elapsedRealtime() + timeoutInMilliseconds;
+        synchronized (linkedBatches) {
+            long remaining;
+            while (!cancelled && (remaining = deadline - SystemClock.elapsedRealtime()) > 0) {
+                linkedBatches.wait(remaining);
+            }
+            return cancelled;
+        }
+    }
+
+    final long getRequestSentTime() {
+        return requestSentTime;
+    }
+
+    final void setRequestSentTime(long requestSentTime) {
+        this.requestSentTime = requestSentTime;
+    }
+
+    final RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    final RequestMetrics startMetrics() {
+        if (metrics == null && Settings.getRequestMetricsListener() != null) {
+            metrics = new RequestMetrics(getId(), size());
+        }
+        return metrics;
+    }
+
+    final void setMetrics(RequestMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    final RequestMetrics finishMetrics() {
+        RequestMetrics finished = metrics;
+        metrics = null;
+        return finished;
+    }
+
     final String getBatchApplicationId() {
         return batchApplicationId;
     }
@@ -187,6 +305,48 @@ public class RequestBatch extends AbstractList<Request> {
         return executeAndWaitImpl();
     }
 
+    /**
+     * Cancels the execution of this batch. If its requests are being sent or their responses read, the connection
+     * is closed, which stops the transfer at the next chunk. Requests in a cancelled batch do not have their
+     * callbacks called, and neither are the callbacks of the batch; the responses returned by
+     * {@link #executeAndWait()} contain an error whose exception is a {@link FacebookOperationCanceledException}.
+     * <p/>
+     * If the requests in this batch were merged with other requests by {@link RequestCoalescer} or share a
+     * connection through request de-duplication, only their callbacks are skipped; the shared connection is not
+     * closed. A cancelled batch can't be executed again.
+     */
+    public void cancel() {
+        List<RequestBatch> batchesToCancel;
+        synchronized (linkedBatches) {
+            cancelled = true;
+            batchesToCancel = new ArrayList<RequestBatch>(linkedBatches);
+            linkedBatches.notifyAll();
+        }
+        for (RequestBatch batch : batchesToCancel) {
+            batch.cancel();
+        }
+
+        final HttpURLConnection connection = activeConnection;
+        if (connection != null) {
+            // Closing a secure connection writes to the socket, which isn't allowed on the main thread.
+            Settings.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    Utility.disconnectQuietly(connection);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets whether {@link #cancel()} has been called on this batch.
+     *
+     * @return true if the batch was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     /**
      * Executes this batch asynchronously. This function will return immediately, and the batch will
      * be processed on a separate thread. In order to process results of a request, or determine
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.facebook.internal.Utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges single requests that are started asynchronously within a short window of each other into one
+ * RequestBatch, so that they share a single round-trip to the service. Coalescing is disabled by default; it is
+ * enabled by setting a window with {@link Settings#setRequestCoalescingWindow(int)}.
+ * <p/>
+ * Each request still receives its own Response through its own Callback, and the RequestAsyncTask returned for it
+ * cancels and waits on that request alone. This class exposes counters that report how effective coalescing has
+ * been.
+ */
+public final class RequestCoalescer {
+    private static final Object LOCK = new Object();
+    private static final AtomicLong coalescedRequestCount = new AtomicLong();
+    private static final AtomicLong batchCount = new AtomicLong();
+
+    private static Handler handler;
+    private static RequestBatch pendingBatch;
+    private static RequestAsyncTask pendingTask;
+
+    private static final Runnable FLUSH_RUNNABLE = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private RequestCoalescer() {
+    }
+
+    /**
+     * Gets the number of requests that have been sent as part of a coalesced batch.
+     *
+     * @return the number of requests
+     */
+    public static long getCoalescedRequestCount() {
+        return coalescedRequestCount.get();
+    }
+
+    /**
+     * Gets the number of batches that have been sent on behalf of coalesced requests.
+     *
+     * @return the number of batches
+     */
+    public static long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Gets the number of round-trips that coalescing has saved, i.e., the number of requests that would have been
+     * sent separately minus the number of batches actually sent.
+     *
+     * @return the number of round-trips saved
+     */
+    public static long getRoundTripsSaved() {
+        return coalescedRequestCount.get() - batchCount.get();
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public static void resetCounters() {
+        coalescedRequestCount.set(0);
+        batchCount.set(0);
+    }
+
+    static boolean canCoalesce(RequestBatch requests) {
+        if (Settings.getRequestCoalescingWindow() <= 0 || requests.size() != 1) {
+            return false;
+        }
+
+        // Anything configured at the batch level would be lost when merged with other requests.
+        if (requests.getClass() != RequestBatch.class || !requests.getCallbacks().isEmpty() ||
+                requests.getCallbackHandler() != null || requests.getTimeout() != 0 ||
+                requests.getBatchApplicationId() != null || requests.getRetryPolicy() != null ||
+                requests.getPriority() != ExecutionPriority.INTERACTIVE) {
+            return false;
+        }
+
+        // Callbacks are delivered on the main thread once the merged batch completes.
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            return false;
+        }
+
+        return canCoalesce(requests.get(0));
+    }
+
+    static boolean canCoalesce(Request request) {
+        if (request.isUrlOverridden() || request.isVideoUpload()) {
+            // Neither can be expressed as a relative_url in a batch.
+            return false;
+        }
+        if (request.getBatchEntryName() != null || request.getBatchEntryDependsOn() != null) {
+            // Names are only unique within the batch the caller built.
+            return false;
+        }
+        // A batch needs an app ID, which comes from a Session or from the default batch app ID.
+        return request.getSession() != null || !Utility.isNullOrEmpty(Request.getDefaultBatchApplicationId());
+    }
+
+    static RequestAsyncTask enqueue(RequestBatch requests) {
+        synchronized (LOCK) {
+            if (handler == null) {
+                handler = new Handler(Looper.getMainLooper());
+            }
+
+            if (pendingBatch == null) {
+                pendingBatch = new RequestBatch();
+                pendingTask = new RequestAsyncTask(pendingBatch);
+                handler.postDelayed(FLUSH_RUNNABLE, Settings.getRequestCoalescingWindow());
+            }
+
+            RequestAsyncTask handle = RequestAsyncTask.createHandle(requests);
+            pendingTask.addHandle(handle);
+            pendingBatch.add(requests.get(0));
+
+            if (pendingBatch.size() >= Settings.getRequestCoalescingMaxBatchSize()) {
+                handler.removeCallbacks(FLUSH_RUNNABLE);
+                flush();
+            }
+
+            return handle;
+        }
+    }
+
+    static void flush() {
+        RequestBatch batch;
+        RequestAsyncTask task;
+        synchronized (LOCK) {
+            batch = pendingBatch;
+            task = pendingTask;
+            pendingBatch = null;
+            pendingTask = null;
+        }
+
+        if (batch == null) {
+            return;
+        }
+
+        coalescedRequestCount.addAndGet(batch.size());
+        batchCount.incrementAndGet();
+        task.executeOnSettingsExecutor();
+    }
+}
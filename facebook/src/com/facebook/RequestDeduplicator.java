@@ -0,0 +1,202 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.Looper;
+import android.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lets identical GET requests share a single in-flight round-trip. Requests are registered from executeBatchAsync on
+// the main thread. Each follower gets its own RequestAsyncTask handle, so that cancelling it leaves the leader alone,
+// and its own copy of the leader's response, taken in Request.runCallbacks before any callback can change it. If the
+// leader's task fails or is cancelled before then, RequestAsyncTask completes the followers instead.
+final class RequestDeduplicator {
+    private static final Object LOCK = new Object();
+    private static final Map<String, InFlightRequest> inFlightRequestsByKey = new HashMap<String, InFlightRequest>();
+    private static final Map<Request, InFlightRequest> inFlightRequestsByLeader =
+            new HashMap<Request, InFlightRequest>();
+    private static final AtomicLong deduplicatedRequestCount = new AtomicLong();
+
+    private RequestDeduplicator() {
+    }
+
+    static long getDeduplicatedRequestCount() {
+        return deduplicatedRequestCount.get();
+    }
+
+    static String getKey(RequestBatch requests) {
+        if (!Settings.isRequestDeduplicationEnabled() || requests.size() != 1) {
+            return null;
+        }
+        if (requests.getClass() != RequestBatch.class || !requests.getCallbacks().isEmpty() ||
+                requests.getCallbackHandler() != null || requests.getTimeout() != 0 ||
+                requests.getRetryPolicy() != null) {
+            return null;
+        }
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            return null;
+        }
+
+        Request request = requests.get(0);
+        if (request.getHttpMethod() != HttpMethod.GET) {
+            return null;
+        }
+
+        String url;
+        try {
+            url = request.getUrlForSingleRequest();
+        } catch (FacebookException e) {
+            // Let the request fail through the normal path.
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        Session session = request.getSession();
+        String accessToken = (session != null) ? session.getAccessToken() : null;
+        return url + "|" + accessToken;
+    }
+
+    static RequestAsyncTask attach(String key, RequestBatch requests) {
+        synchronized (LOCK) {
+            InFlightRequest inFlightRequest = inFlightRequestsByKey.get(key);
+            if (inFlightRequest == null) {
+                return null;
+            }
+            if (inFlightRequest.isCancelled()) {
+                // A cancelled leader may never be sent, so don't wait on it. Its followers are still completed with
+                // it, whether or not it is sent.
+                inFlightRequestsByKey.remove(key);
+                return null;
+            }
+
+            RequestAsyncTask handle = RequestAsyncTask.createHandle(requests);
+            inFlightRequest.followers.add(new Follower(requests.get(0), handle));
+            deduplicatedRequestCount.incrementAndGet();
+            return handle;
+        }
+    }
+
+    static void register(String key, Request request, RequestAsyncTask task) {
+        synchronized (LOCK) {
+            InFlightRequest inFlightRequest = new InFlightRequest(key, request, task);
+            inFlightRequestsByKey.put(key, inFlightRequest);
+            inFlightRequestsByLeader.put(request, inFlightRequest);
+        }
+    }
+
+    static void complete(RequestBatch requests, List<Response> responses, Exception exception) {
+        Runnable completion = prepareCompletion(requests, responses, exception);
+        if (completion != null) {
+            completion.run();
+        }
+    }
+
+    // Takes the followers of any leaders in requests out of flight, and copies the leaders' responses for them.
+    // Returns what delivers the copies, which must run on the main thread, or null if there are no followers.
+    static Runnable prepareCompletion(RequestBatch requests, List<Response> responses, final Exception exception) {
+        final List<Pair<Follower, Response>> completions = new ArrayList<Pair<Follower, Response>>();
+        for (int i = 0; i < requests.size(); i++) {
+            InFlightRequest inFlightRequest;
+            synchronized (LOCK) {
+                inFlightRequest = inFlightRequestsByLeader.remove(requests.get(i));
+                if (inFlightRequest == null) {
+                    continue;
+                }
+                if (inFlightRequestsByKey.get(inFlightRequest.key) == inFlightRequest) {
+                    inFlightRequestsByKey.remove(inFlightRequest.key);
+                }
+            }
+
+            Response leaderResponse = (responses != null && i < responses.size()) ? responses.get(i) : null;
+            for (Follower follower : inFlightRequest.followers) {
+                Response response = null;
+                if (follower.isCancelled()) {
+                    // No callback will be called, so there's no need for a copy.
+                } else if (leaderResponse != null) {
+                    response = leaderResponse.copyForRequest(follower.request);
+                } else {
+                    FacebookException error = (exception != null) ? new FacebookException(exception) :
+                            new FacebookException("Request failed without a response");
+                    response = new Response(follower.request, null, new FacebookRequestError(null, error));
+                }
+                completions.add(new Pair<Follower, Response>(follower, response));
+            }
+        }
+
+        if (completions.isEmpty()) {
+            return null;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                for (Pair<Follower, Response> completion : completions) {
+                    Follower follower = completion.first;
+                    Response response = completion.second;
+                    if (response == null || follower.isCancelled()) {
+                        // Callers that cancelled don't get callbacks, but their tasks still complete.
+                        response = Request.createCancelledResponse(follower.request);
+                    } else {
+                        Request.Callback callback = follower.request.getCallback();
+                        if (callback != null) {
+                            callback.onCompleted(response);
+                        }
+                    }
+                    follower.request.clearStartingBatch();
+                    follower.handle.completeHandle(Collections.singletonList(response), exception);
+                }
+            }
+        };
+    }
+
+    private static class InFlightRequest {
+        private final String key;
+        private final Request leader;
+        private final RequestAsyncTask task;
+        private final List<Follower> followers = new ArrayList<Follower>();
+
+        InFlightRequest(String key, Request leader, RequestAsyncTask task) {
+            this.key = key;
+            this.leader = leader;
+            this.task = task;
+        }
+
+        boolean isCancelled() {
+            return leader.isCancelled() || task.isCancelled();
+        }
+    }
+
+    private static class Follower {
+        private final Request request;
+        private final RequestAsyncTask handle;
+
+        Follower(Request request, RequestAsyncTask handle) {
+            this.request = request;
+            this.handle = handle;
+        }
+
+        boolean isCancelled() {
+            return request.isCancelled() || handle.isCancelled();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.SystemClock;
+
+/**
+ * Describes where the time went while executing a {@link RequestBatch}, as reported to a
+ * {@link RequestMetricsListener}. Times are in milliseconds. A phase that did not happen, for instance connecting
+ * and downloading when the response came from the cache, is reported as -1.
+ * <p/>
+ * Entries of a batch response are parsed when they are first used, so the parse time only includes the parsing done
+ * before the callbacks are called. If requests in the batch were retried under a {@link RetryPolicy}, the times and
+ * byte counts of the exchange with the server describe the last attempt.
+ */
+public final class RequestMetrics {
+    /**
+     * Indicates whether the response to a batch came from the SDK's response cache.
+     */
+    public enum CacheResult {
+        /**
+         * Indicates that the batch could not be served from the cache.
+         */
+        NOT_CACHEABLE,
+
+        /**
+         * Indicates that the response was read from the cache.
+         */
+        HIT,
+
+        /**
+         * Indicates that the response was not in the cache and was loaded from the network.
+         */
+        MISS
+    }
+
+    private final String batchId;
+    private final int requestCount;
+    private long enqueueTime = -1;
+    private long queueWaitTime = -1;
+    private long connectTime = -1;
+    private long serializeTime = -1;
+    private long serializedByteCount = -1;
+    private long timeToFirstByte = -1;
+    private long downloadTime = -1;
+    private long wireByteCount = -1;
+    private long decodedByteCount = -1;
+    private long parseTime = -1;
+    private long callbackTime = -1;
+    private CacheResult cacheResult = CacheResult.NOT_CACHEABLE;
+
+    RequestMetrics(String batchId, int requestCount) {
+        this.batchId = batchId;
+        this.requestCount = requestCount;
+    }
+
+    /**
+     * Returns the id of the batch, as returned by {@link RequestBatch#getId()}.
+     *
+     * @return the batch id
+     */
+    public String getBatchId() {
+        return batchId;
+    }
+
+    /**
+     * Returns the number of requests in the batch.
+     *
+     * @return the number of requests
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns how long an asynchronous batch waited for a thread of the SDK's Executor.
+     *
+     * @return the queue wait time, or -1 if the batch was executed synchronously
+     */
+    public long getQueueWaitTime() {
+        return queueWaitTime;
+    }
+
+    /**
+     * Returns how long it took to connect to the server, including DNS resolution and the TCP and TLS handshakes.
+     * This is close to 0 when a kept-alive connection is reused. Requests without a body connect when the status of
+     * the response is requested, so for them connecting is part of the time to first byte instead.
+     *
+     * @return the connect time, or -1 if the requests have no body
+     */
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    /**
+     * Returns how long it took to serialize the request body and write it to the connection.
+     *
+     * @return the serialize time, or -1 if the requests have no body
+     */
+    public long getSerializeTime() {
+        return serializeTime;
+    }
+
+    /**
+     * Returns the number of bytes of request body written to the connection, after any compression.
+     *
+     * @return the number of bytes sent, or -1 if the requests have no body
+     */
+    public long getSerializedByteCount() {
+        return serializedByteCount;
+    }
+
+    /**
+     * Returns the time from when the request was sent until the status of the response was received. This is the
+     * same value as {@link Response#getTimeToFirstByte()}.
+     *
+     * @return the time to first byte
+     */
+    public long getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    /**
+     * Returns how long was spent waiting for the body of the response to arrive from the network.
+     *
+     * @return the download time
+     */
+    public long getDownloadTime() {
+        return downloadTime;
+    }
+
+    /**
+     * Returns the number of bytes of the response body received from the network. This is the same value as
+     * {@link Response#getWireByteCount()}.
+     *
+     * @return the number of bytes received
+     */
+    public long getWireByteCount() {
+        return wireByteCount;
+    }
+
+    /**
+     * Returns the number of bytes of the response body after any content encoding was decoded. This is the same
+     * value as {@link Response#getDecodedByteCount()}.
+     *
+     * @return the number of bytes decoded
+     */
+    public long getDecodedByteCount() {
+        return decodedByteCount;
+    }
+
+    /**
+     * Returns how long it took to decode and parse the response, not counting the time spent waiting for the
+     * network.
+     *
+     * @return the parse time
+     */
+    public long getParseTime() {
+        return parseTime;
+    }
+
+    /**
+     * Returns how long the callbacks of the requests and the batch took to run.
+     *
+     * @return the callback time
+     */
+    public long getCallbackTime() {
+        return callbackTime;
+    }
+
+    /**
+     * Returns whether the response came from the SDK's response cache.
+     *
+     * @return the cache result
+     */
+    public CacheResult getCacheResult() {
+        return cacheResult;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("{RequestMetrics: batchId: ").append(batchId)
+                .append(", requestCount: ").append(requestCount)
+                .append(", queueWaitTime: ").append(queueWaitTime)
+                .append(", connectTime: ").append(connectTime)
+                .append(", serializeTime: ").append(serializeTime)
+                .append(", serializedByteCount: ").append(serializedByteCount)
+                .append(", timeToFirstByte: ").append(timeToFirstByte)
+                .append(", downloadTime: ").append(downloadTime)
+                .append(", wireByteCount: ").append(wireByteCount)
+                .append(", decodedByteCount: ").append(decodedByteCount)
+                .append(", parseTime: ").append(parseTime)
+                .append(", callbackTime: ").append(callbackTime)
+                .append(", cacheResult: ").append(cacheResult)
+                .append("}").toString();
+    }
+
+    void markEnqueued() {
+        enqueueTime = SystemClock.elapsedRealtime();
+    }
+
+    void markStarted() {
+        if (enqueueTime >= 0) {
+            queueWaitTime = SystemClock.elapsedRealtime() - enqueueTime;
+        }
+    }
+
+    // Called before a retry, so that values from the failed attempt are not mixed with those of the next one.
+    void resetAttempt() {
+        connectTime = -1;
+        serializeTime = -1;
+        serializedByteCount = -1;
+        timeToFirstByte = -1;
+        downloadTime = -1;
+        wireByteCount = -1;
+        decodedByteCount = -1;
+        parseTime = -1;
+    }
+
+    void setConnectTime(long connectTime) {
+        this.connectTime = connectTime;
+    }
+
+    void setSerialized(long serializeTime, long serializedByteCount) {
+        this.serializeTime = serializeTime;
+        this.serializedByteCount = serializedByteCount;
+    }
+
+    void setDownloaded(long timeToFirstByte, long downloadTime, long wireByteCount, long decodedByteCount) {
+        this.timeToFirstByte = timeToFirstByte;
+        this.downloadTime = downloadTime;
+        this.wireByteCount = wireByteCount;
+        this.decodedByteCount = decodedByteCount;
+    }
+
+    void setParseTime(long parseTime) {
+        this.parseTime = parseTime;
+    }
+
+    void setCallbackTime(long callbackTime) {
+        this.callbackTime = callbackTime;
+    }
+
+    void setCacheResult(CacheResult cacheResult) {
+        this.cacheResult = cacheResult;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+/**
+ * Receives timings for each {@link RequestBatch} the SDK executes, for instance to forward them to an application
+ * performance monitoring service. A listener is registered with
+ * {@link Settings#setRequestMetricsListener(RequestMetricsListener)}.
+ * <p/>
+ * A batch larger than the Graph API allows is sent as several smaller batches, each of which is reported with its
+ * own id as soon as it finishes, before the original batch is reported with the time taken by its callbacks.
+ */
+public interface RequestMetricsListener {
+    /**
+     * Called once a batch has completed and its callbacks have been called. This is called on the thread that ran
+     * the callbacks, which is usually the UI thread, so it should return quickly.
+     *
+     * @param metrics the timings of the batch
+     */
+    void onRequestMetrics(RequestMetrics metrics);
+}
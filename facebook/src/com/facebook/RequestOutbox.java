@@ -0,0 +1,802 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.net.ConnectivityManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import com.facebook.internal.Logger;
+import com.facebook.internal.Utility;
+import com.facebook.internal.Validate;
+import com.facebook.model.GraphObject;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/**
+ * A durable queue of write requests that are sent when the device is online. Requests that are enqueued are written
+ * to the application's private storage along with their attachments, so that they survive the process being killed.
+ * They are sent in the order they were enqueued, in small batches, whenever connectivity returns; requests that fail
+ * with a transient error, such as a network failure or throttling, are retried with exponential backoff, while
+ * requests that fail for any other reason are dropped and reported as failed.
+ * <p/>
+ * Only {@link HttpMethod#POST} and {@link HttpMethod#DELETE} requests can be enqueued, such as those created by
+ * {@link Request#newStatusUpdateRequest(Session, String, Request.Callback)} or
+ * {@link Request#newPostOpenGraphActionRequest(Session, com.facebook.model.OpenGraphAction, Request.Callback)}.
+ * Callbacks set on a Request are not kept; the result of each request is reported to the {@link Listener} instead.
+ * Requests are sent with the active Session when they are replayed, unless they carry an explicit access_token
+ * parameter, and are held until a Session is open. A request enqueued while a Session was open is only sent with a
+ * Session for the same application and access token. Extending or reauthorizing the Session's token carries the
+ * queued requests over to the new token; if the token has otherwise changed by then, as when another user has logged
+ * in, the request is dropped and reported as failed. {@link Session#closeAndClearTokenInformation()} discards every
+ * queued request.
+ * <p/>
+ * Each request is identified by an idempotency tag, either supplied by the application or generated. Enqueuing a
+ * tag that is already queued, or that was recently delivered, does nothing, so an application can safely enqueue
+ * the same action again after a crash or a retry in its UI. A request that fails after it has been sent, without a
+ * response, may still have been applied by the server and is sent again; the Graph API has no way to detect this.
+ */
+public final class RequestOutbox {
+    private static final String TAG = RequestOutbox.class.getSimpleName();
+    private static final String DIRECTORY_NAME = "com.facebook.RequestOutbox";
+    private static final String STORE_FILENAME = "outbox.json";
+    private static final int MAX_REPLAY_BATCH_SIZE = 10;
+    private static final int MAX_DELIVERED_TAGS = 200;
+    private static final String ACCESS_TOKEN_PARAM = "access_token";
+    // Connectivity changes also trigger a retry, so polling can be infrequent once backoff builds up.
+    private static final long MAX_RETRY_DELAY_MILLISECONDS = 15 * 60 * 1000;
+
+    private static final String ENTRIES_KEY = "entries";
+    private static final String DELIVERED_TAGS_KEY = "delivered_tags";
+    private static final String TAG_KEY = "tag";
+    private static final String GRAPH_PATH_KEY = "graph_path";
+    private static final String METHOD_KEY = "method";
+    private static final String VERSION_KEY = "version";
+    private static final String PARAMETERS_KEY = "parameters";
+    private static final String ATTACHMENTS_KEY = "attachments";
+    private static final String GRAPH_OBJECT_KEY = "graph_object";
+    private static final String FILE_KEY = "file";
+    private static final String MIME_TYPE_KEY = "mime_type";
+    private static final String APPLICATION_ID_KEY = "application_id";
+    private static final String TOKEN_FINGERPRINT_KEY = "token_fingerprint";
+
+    private static volatile RequestOutbox instance;
+    // Maps the fingerprint of each access token that was replaced in this process to that of the token that replaced
+    // it, so that requests still being written, or read from an older store, are sent with the new token.
+    private static final Map<String, String> replacedFingerprints = new HashMap<String, String>();
+
+    private final Object lock = new Object();
+    private final File directory;
+    private final Handler handler;
+    private final RetryPolicy retryPolicy;
+    // Attachments and the store are written off the caller's thread, one enqueued request at a time, so that requests
+    // join the queue in the order they were enqueued.
+    private final Executor writeExecutor = new PriorityLaneExecutor(1, Process.THREAD_PRIORITY_BACKGROUND);
+    private final LinkedList<JSONObject> entries = new LinkedList<JSONObject>();
+    private final LinkedList<String> deliveredTags = new LinkedList<String>();
+    private final Set<String> writingTags = new HashSet<String>();
+    private Listener listener;
+    private boolean isFlushing;
+    private boolean isRetryScheduled;
+    private int failedAttempts;
+    // Incremented when the outbox is cleared, so that requests still being written are discarded.
+    private int generation;
+
+    /**
+     * Receives the results of requests sent from the outbox. Methods are called on the main thread.
+     */
+    public interface Listener {
+        /**
+         * Called when a request has been sent and will not be retried, either because it succeeded or because it
+         * failed with an error that retrying would not fix.
+         *
+         * @param tag      the idempotency tag of the request
+         * @param response the response, which includes error information if the request failed
+         */
+        void onCompleted(String tag, Response response);
+    }
+
+    /**
+     * Gets the outbox for an application, loading any requests that were queued by an earlier process. They are sent
+     * as soon as possible.
+     *
+     * @param context a Context
+     * @return the outbox
+     */
+    public static RequestOutbox getInstance(Context context) {
+        Validate.notNull(context, "context");
+        if (instance == null) {
+            synchronized (RequestOutbox.class) {
+                if (instance == null) {
+                    RequestOutbox outbox = new RequestOutbox(context.getApplicationContext());
+                    outbox.registerConnectivityReceiver(context.getApplicationContext());
+                    instance = outbox;
+                    outbox.flush();
+                }
+            }
+        }
+        return instance;
+    }
+
+    RequestOutbox(Context context) {
+        this.directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+        this.handler = new Handler(Looper.getMainLooper());
+
+        this.retryPolicy = new RetryPolicy();
+        this.retryPolicy.setRetryPostRequests(true);
+        this.retryPolicy.setMaxDelay(MAX_RETRY_DELAY_MILLISECONDS);
+
+        read();
+    }
+
+    /**
+     * Sets the listener that is told the result of each request.
+     *
+     * @param listener the listener, or null
+     */
+    public void setListener(Listener listener) {
+        synchronized (lock) {
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Adds a request to the outbox with a generated idempotency tag.
+     *
+     * @param request the request, which must be a POST or a DELETE
+     * @return the idempotency tag of the request
+     */
+    public String enqueue(Request request) {
+        return enqueue(request, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Adds a request to the outbox, unless a request with the same idempotency tag is already queued or was
+     * recently delivered. Attachments are copied into the outbox on a background thread; ParcelFileDescriptors are
+     * read to the end and closed, and a Bitmap must not be recycled or changed once its request has been enqueued.
+     * If the request can't be written to storage, it is reported as failed to the {@link Listener}.
+     *
+     * @param request the request, which must be a POST or a DELETE
+     * @param tag     the idempotency tag of the request
+     * @return the idempotency tag of the request
+     */
+    public String enqueue(Request request, String tag) {
+        Validate.notNull(request, "request");
+        Validate.notNullOrEmpty(tag, "tag");
+        HttpMethod httpMethod = (request.getHttpMethod() != null) ? request.getHttpMethod() : HttpMethod.GET;
+        if (httpMethod != HttpMethod.POST && httpMethod != HttpMethod.DELETE) {
+            throw new IllegalArgumentException("Only POST and DELETE requests can be added to the outbox.");
+        }
+
+        final JSONObject entry;
+        final Map<String, Object> attachmentValues = new HashMap<String, Object>();
+        try {
+            entry = serialize(request, httpMethod, tag, attachmentValues);
+        } catch (JSONException e) {
+            throw new FacebookException(e);
+        }
+        final BitmapEncodingPolicy bitmapEncodingPolicy = request.getEffectiveBitmapEncodingPolicy();
+
+        final int entryGeneration;
+        synchronized (lock) {
+            if (deliveredTags.contains(tag) || writingTags.contains(tag) || findEntry(tag) != null) {
+                Logger.log(LoggingBehavior.REQUESTS, TAG, "Ignoring duplicate request with tag %s", tag);
+                return tag;
+            }
+            writingTags.add(tag);
+            entryGeneration = generation;
+        }
+
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeEntry(entry, attachmentValues, bitmapEncodingPolicy, entryGeneration);
+            }
+        });
+        return tag;
+    }
+
+    /**
+     * Gets the number of requests that have not been delivered yet.
+     *
+     * @return the number of requests
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return entries.size() + writingTags.size();
+        }
+    }
+
+    boolean isWriting() {
+        synchronized (lock) {
+            return !writingTags.isEmpty();
+        }
+    }
+
+    /**
+     * Sends queued requests now, on a background thread, rather than waiting for connectivity to change or for the
+     * next retry.
+     */
+    public void flush() {
+        synchronized (lock) {
+            if (isFlushing || entries.isEmpty()) {
+                return;
+            }
+            isFlushing = true;
+        }
+
+        Settings.getExecutor(ExecutionPriority.BACKGROUND).execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean shouldRetry = false;
+                try {
+                    shouldRetry = sendQueuedRequests();
+                } finally {
+                    synchronized (lock) {
+                        isFlushing = false;
+                    }
+                }
+                if (shouldRetry) {
+                    scheduleRetry();
+                }
+            }
+        });
+    }
+
+    static void onSessionOpened() {
+        // Requests that were held for lack of a Session can go out now.
+        RequestOutbox outbox = instance;
+        if (outbox != null) {
+            outbox.flush();
+        }
+    }
+
+    static void onTokenInformationCleared(Context context) {
+        RequestOutbox outbox = instance;
+        if (outbox != null) {
+            outbox.clear();
+        } else if (context != null) {
+            // The outbox has not been loaded by this process, so only the store left by an earlier one remains.
+            Utility.deleteDirectory(new File(context.getFilesDir(), DIRECTORY_NAME));
+        }
+    }
+
+    static void onAccessTokenUpdated(final Context context, String oldAccessToken, String newAccessToken) {
+        if (Utility.isNullOrEmpty(oldAccessToken) || Utility.isNullOrEmpty(newAccessToken) ||
+                oldAccessToken.equals(newAccessToken)) {
+            return;
+        }
+        String oldFingerprint = Utility.sha1hash(oldAccessToken);
+        String newFingerprint = Utility.sha1hash(newAccessToken);
+        synchronized (replacedFingerprints) {
+            for (Map.Entry<String, String> replaced : replacedFingerprints.entrySet()) {
+                if (replaced.getValue().equals(oldFingerprint)) {
+                    replaced.setValue(newFingerprint);
+                }
+            }
+            replacedFingerprints.remove(newFingerprint);
+            replacedFingerprints.put(oldFingerprint, newFingerprint);
+        }
+
+        RequestOutbox outbox = instance;
+        if (outbox != null) {
+            outbox.replaceFingerprints();
+        } else if (context != null) {
+            // The outbox has not been loaded by this process, so only the store left by an earlier one remains.
+            Settings.getExecutor(ExecutionPriority.BACKGROUND).execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (new File(new File(context.getFilesDir(), DIRECTORY_NAME), STORE_FILENAME).exists()) {
+                        new RequestOutbox(context).replaceFingerprints();
+                    }
+                }
+            });
+        }
+    }
+
+    private static String getCurrentFingerprint(String fingerprint) {
+        synchronized (replacedFingerprints) {
+            String replacement = replacedFingerprints.get(fingerprint);
+            return (replacement != null) ? replacement : fingerprint;
+        }
+    }
+
+    // Moves queued requests over to the tokens that replaced the ones they were queued for, and stores them.
+    private void replaceFingerprints() {
+        synchronized (lock) {
+            boolean isChanged = false;
+            for (JSONObject entry : entries) {
+                isChanged |= replaceFingerprint(entry);
+            }
+            if (!isChanged) {
+                return;
+            }
+        }
+
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    write();
+                }
+            }
+        });
+    }
+
+    private static boolean replaceFingerprint(JSONObject entry) {
+        String fingerprint = entry.optString(TOKEN_FINGERPRINT_KEY, null);
+        if (fingerprint == null) {
+            return false;
+        }
+        String currentFingerprint = getCurrentFingerprint(fingerprint);
+        if (currentFingerprint.equals(fingerprint)) {
+            return false;
+        }
+        try {
+            entry.put(TOKEN_FINGERPRINT_KEY, currentFingerprint);
+        } catch (JSONException e) {
+            // Can't happen with a non-null value.
+            return false;
+        }
+        return true;
+    }
+
+    // Discards every queued request without reporting it, such as when the user logs out.
+    private void clear() {
+        final List<JSONObject> clearedEntries;
+        synchronized (lock) {
+            clearedEntries = new ArrayList<JSONObject>(entries);
+            entries.clear();
+            generation++;
+        }
+
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    write();
+                }
+                for (JSONObject entry : clearedEntries) {
+                    deleteAttachments(entry);
+                }
+            }
+        });
+    }
+
+    private void writeEntry(JSONObject entry, Map<String, Object> attachmentValues,
+            BitmapEncodingPolicy bitmapEncodingPolicy, int entryGeneration) {
+        String tag = entry.optString(TAG_KEY);
+        try {
+            // Attachments are kept in their own files, and the entry refers to them by name.
+            JSONObject attachments = entry.getJSONObject(ATTACHMENTS_KEY);
+            for (Map.Entry<String, Object> attachment : attachmentValues.entrySet()) {
+                attachments.put(attachment.getKey(), writeAttachment(attachment.getValue(), bitmapEncodingPolicy));
+            }
+        } catch (Exception e) {
+            Logger.log(LoggingBehavior.REQUESTS, TAG, "Dropping request that could not be written: %s", e);
+            synchronized (lock) {
+                writingTags.remove(tag);
+            }
+            deleteAttachments(entry);
+            notifyListener(tag, new Response(null, null, new FacebookRequestError(null, e)));
+            return;
+        }
+
+        boolean isCleared;
+        synchronized (lock) {
+            writingTags.remove(tag);
+            isCleared = entryGeneration != generation;
+            if (!isCleared) {
+                // The token may have been extended while the request was being written.
+                replaceFingerprint(entry);
+                entries.add(entry);
+                write();
+            }
+        }
+        if (isCleared) {
+            deleteAttachments(entry);
+            return;
+        }
+        flush();
+    }
+
+    // Returns whether there are requests left that should be retried later.
+    private boolean sendQueuedRequests() {
+        while (true) {
+            List<JSONObject> batchEntries;
+            List<Response> responses;
+            synchronized (lock) {
+                batchEntries = new ArrayList<JSONObject>(
+                        entries.subList(0, Math.min(entries.size(), MAX_REPLAY_BATCH_SIZE)));
+            }
+            if (batchEntries.isEmpty()) {
+                return false;
+            }
+
+            Session session = Session.getActiveSession();
+            if (session != null && !session.isOpened()) {
+                session = null;
+            }
+
+            RequestBatch batch = new RequestBatch();
+            List<JSONObject> sentEntries = new ArrayList<JSONObject>();
+            List<ParcelFileDescriptor> descriptors = new ArrayList<ParcelFileDescriptor>();
+            boolean isHeld = false;
+            try {
+                for (JSONObject entry : batchEntries) {
+                    if (session != null && !isQueuedFor(entry, session)) {
+                        Logger.log(LoggingBehavior.REQUESTS, TAG, "Dropping request queued by another user");
+                        complete(entry, new Response(null, null, new FacebookRequestError(null,
+                                new FacebookException("Request was queued for a different access token"))));
+                        continue;
+                    }
+                    try {
+                        Request request = deserialize(entry, session, descriptors);
+                        if (request == null) {
+                            // Needs a Session, and none is open. Wait for one rather than send it without a token,
+                            // and hold the requests after it too, so that they are not sent ahead of it.
+                            isHeld = true;
+                            break;
+                        }
+                        batch.add(request);
+                        sentEntries.add(entry);
+                    } catch (Exception e) {
+                        Logger.log(LoggingBehavior.REQUESTS, TAG, "Dropping request that could not be read: %s", e);
+                        complete(entry, new Response(null, null, new FacebookRequestError(null, e)));
+                    }
+                }
+                if (batch.isEmpty()) {
+                    if (isHeld) {
+                        return false;
+                    }
+                    // Every entry read was dropped; go on to the next ones.
+                    continue;
+                }
+
+                responses = Request.executeBatchAndWait(batch);
+            } finally {
+                // Sending closes the attachments it reads, but not if it fails before reaching them.
+                closeQuietly(descriptors);
+            }
+
+            boolean hasTransientFailure = false;
+            for (int i = 0; i < sentEntries.size(); i++) {
+                Response response = responses.get(i);
+                if (retryPolicy.shouldRetry(batch.get(i), response)) {
+                    hasTransientFailure = true;
+                } else {
+                    complete(sentEntries.get(i), response);
+                }
+            }
+
+            synchronized (lock) {
+                failedAttempts = hasTransientFailure ? failedAttempts + 1 : 0;
+            }
+            if (hasTransientFailure) {
+                // Stop here so that later requests are not sent ahead of the ones that failed.
+                return true;
+            }
+        }
+    }
+
+    private void scheduleRetry() {
+        long delay;
+        synchronized (lock) {
+            if (isRetryScheduled) {
+                return;
+            }
+            isRetryScheduled = true;
+            delay = retryPolicy.getDelay(failedAttempts - 1, false);
+        }
+
+        Logger.log(LoggingBehavior.REQUESTS, TAG, "Retrying outbox in %d ms", delay);
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    isRetryScheduled = false;
+                }
+                flush();
+            }
+        }, delay);
+    }
+
+    private void complete(JSONObject entry, Response response) {
+        String tag = entry.optString(TAG_KEY);
+        synchronized (lock) {
+            entries.remove(entry);
+            deliveredTags.add(tag);
+            while (deliveredTags.size() > MAX_DELIVERED_TAGS) {
+                deliveredTags.removeFirst();
+            }
+            write();
+        }
+        deleteAttachments(entry);
+        notifyListener(tag, response);
+    }
+
+    private void notifyListener(final String tag, final Response response) {
+        final Listener listener;
+        synchronized (lock) {
+            listener = this.listener;
+        }
+        if (listener != null) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onCompleted(tag, response);
+                }
+            });
+        }
+    }
+
+    private JSONObject findEntry(String tag) {
+        for (JSONObject entry : entries) {
+            if (tag.equals(entry.optString(TAG_KEY))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // Attachments are not written here, but collected into attachmentValues.
+    private static JSONObject serialize(Request request, HttpMethod httpMethod, String tag,
+            Map<String, Object> attachmentValues) throws JSONException {
+        JSONObject entry = new JSONObject();
+        entry.put(TAG_KEY, tag);
+        entry.put(GRAPH_PATH_KEY, request.getGraphPath());
+        entry.put(METHOD_KEY, httpMethod.name());
+        entry.put(VERSION_KEY, request.getVersion());
+        if (request.getGraphObject() != null) {
+            entry.put(GRAPH_OBJECT_KEY, request.getGraphObject().getInnerJSONObject().toString());
+        }
+
+        JSONObject parameters = new JSONObject();
+        JSONObject attachments = new JSONObject();
+        Bundle bundle = request.getParameters();
+        for (String key : bundle.keySet()) {
+            Object value = bundle.get(key);
+            if (Request.isSupportedParameterType(value)) {
+                parameters.put(key, Request.parameterToString(value));
+            } else if (Request.isSupportedAttachmentType(value)) {
+                attachmentValues.put(key, value);
+            } else if (value != null) {
+                throw new IllegalArgumentException("Unsupported parameter type: " + value.getClass().getSimpleName());
+            }
+        }
+        entry.put(PARAMETERS_KEY, parameters);
+        entry.put(ATTACHMENTS_KEY, attachments);
+
+        if (!parameters.has(ACCESS_TOKEN_PARAM)) {
+            Session session = request.getSession();
+            if (session == null || !session.isOpened()) {
+                session = Session.getActiveSession();
+            }
+            if (session != null && session.isOpened()) {
+                entry.put(APPLICATION_ID_KEY, session.getApplicationId());
+                entry.put(TOKEN_FINGERPRINT_KEY, Utility.sha1hash(session.getAccessToken()));
+            }
+        }
+        return entry;
+    }
+
+    // Requests queued without an open Session, or with their own access token, can be sent with any Session. The
+    // Session's token may be replaced while this runs, so both fingerprints are compared after any replacement.
+    private static boolean isQueuedFor(JSONObject entry, Session session) {
+        if (!entry.has(APPLICATION_ID_KEY)) {
+            return true;
+        }
+        return entry.optString(APPLICATION_ID_KEY).equals(session.getApplicationId()) &&
+                getCurrentFingerprint(entry.optString(TOKEN_FINGERPRINT_KEY)).equals(
+                        getCurrentFingerprint(Utility.sha1hash(session.getAccessToken())));
+    }
+
+    private JSONObject writeAttachment(Object value, BitmapEncodingPolicy bitmapEncodingPolicy)
+            throws IOException, JSONException {
+        ensureDirectory();
+        File file = File.createTempFile("attachment", null, directory);
+        String mimeType = null;
+
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+        boolean success = false;
+        try {
+            if (value instanceof Bitmap) {
+                outputStream.write(bitmapEncodingPolicy.encode((Bitmap) value));
+                mimeType = bitmapEncodingPolicy.getMimeType();
+            } else if (value instanceof byte[]) {
+                outputStream.write((byte[]) value);
+            } else if (value instanceof ParcelFileDescriptor) {
+                copy(new ParcelFileDescriptor.AutoCloseInputStream((ParcelFileDescriptor) value), outputStream);
+            } else if (value instanceof Request.ParcelFileDescriptorWithMimeType) {
+                Request.ParcelFileDescriptorWithMimeType descriptor = (Request.ParcelFileDescriptorWithMimeType) value;
+                copy(new ParcelFileDescriptor.AutoCloseInputStream(descriptor.getFileDescriptor()), outputStream);
+                mimeType = descriptor.getMimeType();
+            }
+            success = true;
+        } finally {
+            outputStream.close();
+            if (!success) {
+                file.delete();
+            }
+        }
+
+        JSONObject attachment = new JSONObject();
+        attachment.put(FILE_KEY, file.getName());
+        if (mimeType != null) {
+            attachment.put(MIME_TYPE_KEY, mimeType);
+        }
+        return attachment;
+    }
+
+    // Descriptors opened for attachments are added to descriptors, so that the caller can close them.
+    private Request deserialize(JSONObject entry, Session session, List<ParcelFileDescriptor> descriptors)
+            throws IOException, JSONException {
+        Bundle parameters = new Bundle();
+        JSONObject storedParameters = entry.getJSONObject(PARAMETERS_KEY);
+        Iterator<?> keys = storedParameters.keys();
+        while (keys.hasNext()) {
+            String key = (String) keys.next();
+            parameters.putString(key, storedParameters.getString(key));
+        }
+        if (session == null && !parameters.containsKey(ACCESS_TOKEN_PARAM)) {
+            return null;
+        }
+
+        JSONObject attachments = entry.getJSONObject(ATTACHMENTS_KEY);
+        keys = attachments.keys();
+        while (keys.hasNext()) {
+            String key = (String) keys.next();
+            JSONObject attachment = attachments.getJSONObject(key);
+            File file = new File(directory, attachment.getString(FILE_KEY));
+            ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+            descriptors.add(descriptor);
+            String mimeType = attachment.optString(MIME_TYPE_KEY, null);
+            if (mimeType != null) {
+                parameters.putParcelable(key, new Request.ParcelFileDescriptorWithMimeType(descriptor, mimeType));
+            } else {
+                parameters.putParcelable(key, descriptor);
+            }
+        }
+
+        HttpMethod httpMethod = HttpMethod.valueOf(entry.getString(METHOD_KEY));
+        String version = entry.isNull(VERSION_KEY) ? null : entry.getString(VERSION_KEY);
+        Request request = new Request(session, entry.getString(GRAPH_PATH_KEY), parameters, httpMethod, null,
+                version);
+        if (entry.has(GRAPH_OBJECT_KEY)) {
+            request.setGraphObject(GraphObject.Factory.create(new JSONObject(entry.getString(GRAPH_OBJECT_KEY))));
+        }
+        return request;
+    }
+
+    private void deleteAttachments(JSONObject entry) {
+        JSONObject attachments = entry.optJSONObject(ATTACHMENTS_KEY);
+        if (attachments == null) {
+            return;
+        }
+        Iterator<?> keys = attachments.keys();
+        while (keys.hasNext()) {
+            JSONObject attachment = attachments.optJSONObject((String) keys.next());
+            if (attachment != null) {
+                new File(directory, attachment.optString(FILE_KEY)).delete();
+            }
+        }
+    }
+
+    private void read() {
+        File file = new File(directory, STORE_FILENAME);
+        if (!file.exists()) {
+            return;
+        }
+
+        InputStream inputStream = null;
+        try {
+            inputStream = new BufferedInputStream(new FileInputStream(file));
+            JSONObject store = new JSONObject(Utility.readStreamToString(inputStream));
+
+            JSONArray storedEntries = store.getJSONArray(ENTRIES_KEY);
+            for (int i = 0; i < storedEntries.length(); i++) {
+                entries.add(storedEntries.getJSONObject(i));
+            }
+            JSONArray storedTags = store.getJSONArray(DELIVERED_TAGS_KEY);
+            for (int i = 0; i < storedTags.length(); i++) {
+                deliveredTags.add(storedTags.getString(i));
+            }
+        } catch (Exception e) {
+            Logger.log(LoggingBehavior.REQUESTS, TAG, "Could not read outbox: %s", e);
+        } finally {
+            Utility.closeQuietly(inputStream);
+        }
+    }
+
+    // Must be called with the lock held.
+    private void write() {
+        // Write to a temporary file and rename it over the store, so that a crash never leaves a partial store.
+        File temporaryFile = new File(directory, STORE_FILENAME + ".tmp");
+        OutputStream outputStream = null;
+        try {
+            ensureDirectory();
+            JSONObject store = new JSONObject();
+            store.put(ENTRIES_KEY, new JSONArray(entries));
+            store.put(DELIVERED_TAGS_KEY, new JSONArray(deliveredTags));
+
+            outputStream = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+            outputStream.write(store.toString().getBytes("UTF-8"));
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporaryFile.renameTo(new File(directory, STORE_FILENAME))) {
+                throw new IOException("Could not replace outbox store");
+            }
+        } catch (Exception e) {
+            Logger.log(LoggingBehavior.REQUESTS, TAG, "Could not write outbox: %s", e);
+        } finally {
+            Utility.closeQuietly(outputStream);
+        }
+    }
+
+    private void ensureDirectory() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory.getAbsolutePath());
+        }
+    }
+
+    private void registerConnectivityReceiver(Context applicationContext) {
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (!intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, false)) {
+                    flush();
+                }
+            }
+        };
+        applicationContext.registerReceiver(receiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    private static void closeQuietly(List<ParcelFileDescriptor> descriptors) {
+        for (ParcelFileDescriptor descriptor : descriptors) {
+            try {
+                descriptor.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        try {
+            byte[] buffer = new byte[Utility.DEFAULT_STREAM_BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
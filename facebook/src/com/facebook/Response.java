@@ -17,9 +17,13 @@
 package com.facebook;
 
 import android.content.Context;
+import android.os.SystemClock;
 import com.facebook.internal.CacheableRequestBatch;
+import com.facebook.internal.CompactJSONObject;
 import com.facebook.internal.FileLruCache;
 import com.facebook.internal.Logger;
+import com.facebook.internal.StreamingJsonParser;
+import com.facebook.internal.StringPool;
 import com.facebook.internal.Utility;
 import com.facebook.model.GraphObject;
 import com.facebook.model.GraphObjectList;
@@ -28,6 +32,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -35,18 +40,25 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Encapsulates the response, successful or otherwise, of a call to the Facebook platform.
  */
 public class Response {
     private final HttpURLConnection connection;
-    private final GraphObject graphObject;
-    private final GraphObjectList<GraphObject> graphObjectList;
+    private GraphObject graphObject;
+    private GraphObjectList<GraphObject> graphObjectList;
+    private String deferredBody;
     private final boolean isFromCache;
     private final FacebookRequestError error;
-    private final String rawResponse;
     private final Request request;
+    private String rawResponse;
+    private boolean isRawResponseDeferred;
+    private long wireByteCount = -1;
+    private long decodedByteCount = -1;
+    private long timeToFirstByte = -1;
 
     /**
      * Property name of non-JSON results in the GraphObject. Certain calls to Facebook result in a non-JSON response
@@ -66,6 +78,8 @@ public class Response {
     private static final String RESPONSE_LOG_TAG = "Response";
 
     private static final String RESPONSE_CACHE_TAG = "ResponseCache";
+    private static final String CONTENT_ENCODING_GZIP = "gzip";
+    private static final String CONTENT_ENCODING_DEFLATE = "deflate";
     private static FileLruCache responseCache;
 
     Response(Request request, HttpURLConnection connection, String rawResponse, GraphObject graphObject, boolean isFromCache) {
@@ -106,6 +120,7 @@ public class Response {
      * @return the graph object returned, or null if none was returned (or if the result was a list)
      */
     public final GraphObject getGraphObject() {
+        parseDeferredBody();
         return graphObject;
     }
 
@@ -117,6 +132,7 @@ public class Response {
      * @throws FacebookException If the passed in Class is not a valid GraphObject interface
      */
     public final <T extends GraphObject> T getGraphObjectAs(Class<T> graphObjectClass) {
+        GraphObject graphObject = getGraphObject();
         if (graphObject == null) {
             return null;
         }
@@ -132,6 +148,7 @@ public class Response {
      * @return the list of graph objects returned, or null if none was returned (or if the result was not a list)
      */
     public final GraphObjectList<GraphObject> getGraphObjectList() {
+        parseDeferredBody();
         return graphObjectList;
     }
 
@@ -143,6 +160,7 @@ public class Response {
      * @throws FacebookException If the passed in Class is not a valid GraphObject interface
      */
     public final <T extends GraphObject> GraphObjectList<T> getGraphObjectListAs(Class<T> graphObjectClass) {
+        GraphObjectList<GraphObject> graphObjectList = getGraphObjectList();
         if (graphObjectList == null) {
             return null;
         }
@@ -174,9 +192,76 @@ public class Response {
      * @return A String representation of the actual response from the server
      */
     public String getRawResponse() {
+        if (rawResponse == null && isRawResponseDeferred) {
+            // Responses parsed from the stream only produce their text when somebody asks for it.
+            if (graphObject != null) {
+                rawResponse = graphObject.getInnerJSONObject().toString();
+            } else if (graphObjectList != null) {
+                rawResponse = graphObjectList.getInnerJSONArray().toString();
+            }
+        }
         return rawResponse;
     }
 
+    // The copy gets its own graph objects, parsed from the JSON of this response's, so that a change made through one
+    // response doesn't show up in the other.
+    final Response copyForRequest(Request request) {
+        synchronized (this) {
+            GraphObject graphObjectCopy = null;
+            GraphObjectList<GraphObject> graphObjectListCopy = null;
+            try {
+                if (graphObject != null) {
+                    graphObjectCopy = GraphObject.Factory.create(
+                            (JSONObject) copyJSON(graphObject.getInnerJSONObject()));
+                }
+                if (graphObjectList != null) {
+                    graphObjectListCopy = GraphObject.Factory.createList(
+                            (JSONArray) copyJSON(graphObjectList.getInnerJSONArray()), GraphObject.class);
+                }
+            } catch (JSONException e) {
+                // The JSON was produced by JSONObject or JSONArray, so it is always valid.
+                throw new FacebookException(e);
+            }
+
+            Response copy = new Response(request, connection, rawResponse, graphObjectCopy, graphObjectListCopy,
+                    isFromCache, error);
+            copy.isRawResponseDeferred = isRawResponseDeferred;
+            copy.deferredBody = deferredBody;
+            return copy;
+        }
+    }
+
+    private static Object copyJSON(Object value) throws JSONException {
+        return createTokener(value.toString(), Settings.isCompactResponseObjectsEnabled()).nextValue();
+    }
+
+    // Batch entries carry their bodies as JSON text. Parsing that text is put off until a graph object is first asked
+    // for, so that a caller which only checks errors, or only uses a few entries of a large batch, does not pay for
+    // the rest.
+    private synchronized void parseDeferredBody() {
+        if (deferredBody == null) {
+            return;
+        }
+
+        String body = deferredBody;
+        deferredBody = null;
+        try {
+            JSONObject holder = new JSONObject();
+            holder.put(BODY_KEY, body);
+            Object value = Utility.getStringPropertyAsJSON(holder, BODY_KEY, NON_JSON_RESPONSE_PROPERTY,
+                    Settings.isCompactResponseObjectsEnabled());
+            if (value instanceof JSONObject) {
+                graphObject = GraphObject.Factory.create((JSONObject) value);
+            } else if (value instanceof JSONArray) {
+                graphObjectList = GraphObject.Factory.createList((JSONArray) value, GraphObject.class);
+            }
+        } catch (JSONException e) {
+            // The response has already been delivered as a success, so a malformed body can only be reported as an
+            // absent graph object.
+            Logger.log(LoggingBehavior.REQUESTS, RESPONSE_LOG_TAG, "Failed to parse response body: %s", e);
+        }
+    }
+
     /**
      * Indicates whether paging is being done forward or backward.
      */
@@ -202,6 +287,7 @@ public class Response {
      */
     public Request getRequestForPagedResults(PagingDirection direction) {
         String link = null;
+        GraphObject graphObject = getGraphObject();
         if (graphObject != null) {
             PagedResults pagedResults = graphObject.cast(PagedResults.class);
             PagingInfo pagingInfo = pagedResults.getPaging();
@@ -246,7 +332,7 @@ public class Response {
         }
 
         return new StringBuilder().append("{Response: ").append(" responseCode: ").append(responseCode)
-                .append(", graphObject: ").append(graphObject).append(", error: ").append(error)
+                .append(", graphObject: ").append(getGraphObject()).append(", error: ").append(error)
                 .append(", isFromCache:").append(isFromCache).append("}")
                 .toString();
     }
@@ -260,6 +346,40 @@ public class Response {
         return isFromCache;
     }
 
+    /**
+     * Returns the number of bytes of the response body that were received from the network, before any gzip or
+     * deflate content encoding was decoded. For a batch, this is the size of the response to the whole batch. The
+     * count only reflects compression if {@link Settings#setResponseCompressionEnabled(boolean)} is set, since
+     * otherwise the platform may decode the body before the SDK sees it.
+     *
+     * @return the number of bytes received, or -1 if the response did not come from the network
+     */
+    public final long getWireByteCount() {
+        return wireByteCount;
+    }
+
+    /**
+     * Returns the number of bytes of the response body after any content encoding was decoded. For a batch, this is
+     * the size of the response to the whole batch.
+     *
+     * @return the number of bytes parsed, or -1 if the response did not come from the network
+     */
+    public final long getDecodedByteCount() {
+        return decodedByteCount;
+    }
+
+    /**
+     * Returns the time, in milliseconds, from when the request was sent until the status of the response was
+     * received. For requests with a body, this starts once the body has been written, after the connection was set
+     * up. Requests without a body connect when the status is requested, so this includes any DNS resolution and
+     * connection setup, which {@link Settings#setConnectionPrewarmEnabled(boolean)} can take off the critical path.
+     *
+     * @return the time to first byte, or -1 if the response did not come from the network
+     */
+    public final long getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
     static FileLruCache getResponseCache() {
         if (responseCache == null) {
             Context applicationContext = Session.getStaticContext();
@@ -274,6 +394,7 @@ public class Response {
     @SuppressWarnings("resource")
     static List<Response> fromHttpConnection(HttpURLConnection connection, RequestBatch requests) {
         InputStream stream = null;
+        RequestMetrics metrics = requests.getMetrics();
 
         FileLruCache cache = null;
         String cacheKey = null;
@@ -294,9 +415,15 @@ public class Response {
             // Try loading from cache.  If that fails, load from the network.
             if (!cacheableRequestBatch.getForceRoundTrip() && cache != null && !Utility.isNullOrEmpty(cacheKey)) {
                 try {
-                    stream = cache.get(cacheKey);
+                    stream = getFromCache(cache, cacheKey);
                     if (stream != null) {
-                        return createResponsesFromStream(stream, null, requests, true);
+                        long parseStartTime = SystemClock.elapsedRealtime();
+                        List<Response> responses = createResponsesFromStream(stream, null, requests, true);
+                        if (metrics != null) {
+                            metrics.setCacheResult(RequestMetrics.CacheResult.HIT);
+                            metrics.setParseTime(SystemClock.elapsedRealtime() - parseStartTime);
+                        }
+                        return responses;
                     }
                 } catch (FacebookException exception) { // retry via roundtrip below
                 } catch (JSONException exception) {
@@ -309,19 +436,58 @@ public class Response {
 
         // Load from the network, and cache the result if not an error.
         try {
-            if (connection.getResponseCode() >= 400) {
-                stream = connection.getErrorStream();
-            } else {
-                stream = connection.getInputStream();
-                if ((cache != null) && (cacheKey != null) && (stream != null)) {
-                    InputStream interceptStream = cache.interceptAndPut(cacheKey, stream);
-                    if (interceptStream != null) {
-                        stream = interceptStream;
-                    }
+            if (metrics != null) {
+                if (cache != null && cacheKey != null) {
+                    metrics.setCacheResult(RequestMetrics.CacheResult.MISS);
+                }
+            }
+            boolean isError = connection.getResponseCode() >= 400;
+            long requestSentTime = requests.getRequestSentTime();
+            long timeToFirstByte = (requestSentTime > 0) ? SystemClock.elapsedRealtime() - requestSentTime : -1;
+            stream = isError ? connection.getErrorStream() : connection.getInputStream();
+
+            CountingInputStream wireStream = null;
+            CountingInputStream decodedStream = null;
+            if (stream != null) {
+                String contentEncoding = getContentEncoding(connection);
+                boolean shouldCache = !isError && (cache != null) && (cacheKey != null);
+
+                wireStream = new CountingInputStream(stream, metrics != null);
+                stream = wireStream;
+                if (shouldCache && contentEncoding != null && Settings.isCompressedResponseCachingEnabled()) {
+                    stream = intercept(cache, cacheKey, contentEncoding, stream);
+                    shouldCache = false;
                 }
+                if (contentEncoding != null) {
+                    stream = decode(stream, contentEncoding);
+                }
+                if (shouldCache) {
+                    stream = intercept(cache, cacheKey, null, stream);
+                }
+                decodedStream = new CountingInputStream(stream, false);
+                stream = decodedStream;
             }
 
-            return createResponsesFromStream(stream, connection, requests, false);
+            long bodyStartTime = SystemClock.elapsedRealtime();
+            List<Response> responses = createResponsesFromStream(stream, connection, requests, false);
+            long wireByteCount = (wireStream != null) ? wireStream.getCount() : 0;
+            long decodedByteCount = (decodedStream != null) ? decodedStream.getCount() : 0;
+            if (metrics != null) {
+                // Reading and parsing are interleaved, so parsing is whatever time was not spent waiting on the
+                // network.
+                long downloadTime = (wireStream != null) ? wireStream.getReadTime() : 0;
+                metrics.setDownloaded(timeToFirstByte, downloadTime, wireByteCount, decodedByteCount);
+                metrics.setParseTime(Math.max(0, SystemClock.elapsedRealtime() - bodyStartTime - downloadTime));
+            }
+            Logger.log(LoggingBehavior.REQUESTS, RESPONSE_LOG_TAG, "Response\n  Id: %s\n  Time to first byte: %d ms\n" +
+                    "  Wire bytes: %d\n  Decoded bytes: %d\n", requests.getId(), timeToFirstByte, wireByteCount,
+                    decodedByteCount);
+            for (Response response : responses) {
+                response.timeToFirstByte = timeToFirstByte;
+                response.wireByteCount = wireByteCount;
+                response.decodedByteCount = decodedByteCount;
+            }
+            return responses;
         } catch (FacebookException facebookException) {
             Logger.log(LoggingBehavior.REQUESTS, RESPONSE_LOG_TAG, "Response <Error>: %s", facebookException);
             return constructErrorResponses(requests, connection, facebookException);
@@ -339,8 +505,68 @@ public class Response {
         }
     }
 
+    private static InputStream getFromCache(FileLruCache cache, String cacheKey) throws IOException {
+        InputStream stream = cache.get(cacheKey);
+        if (stream != null) {
+            return stream;
+        }
+
+        // Responses cached before they were decoded are tagged with their content encoding.
+        String[] encodings = { CONTENT_ENCODING_GZIP, CONTENT_ENCODING_DEFLATE };
+        for (String encoding : encodings) {
+            stream = cache.get(cacheKey, encoding);
+            if (stream != null) {
+                boolean success = false;
+                try {
+                    stream = decode(stream, encoding);
+                    success = true;
+                    return stream;
+                } finally {
+                    if (!success) {
+                        Utility.closeQuietly(stream);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static InputStream intercept(FileLruCache cache, String cacheKey, String contentTag, InputStream stream)
+            throws IOException {
+        InputStream interceptStream = cache.interceptAndPut(cacheKey, contentTag, stream);
+        return (interceptStream != null) ? interceptStream : stream;
+    }
+
+    private static String getContentEncoding(HttpURLConnection connection) {
+        String contentEncoding = connection.getContentEncoding();
+        if (CONTENT_ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+            return CONTENT_ENCODING_GZIP;
+        } else if (CONTENT_ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            return CONTENT_ENCODING_DEFLATE;
+        }
+        return null;
+    }
+
+    private static InputStream decode(InputStream stream, String contentEncoding) throws IOException {
+        if (CONTENT_ENCODING_GZIP.equals(contentEncoding)) {
+            return new GZIPInputStream(stream, Utility.DEFAULT_STREAM_BUFFER_SIZE);
+        }
+        // HTTP's deflate is zlib-wrapped, which is what InflaterInputStream expects by default.
+        return new InflaterInputStream(stream);
+    }
+
     static List<Response> createResponsesFromStream(InputStream stream, HttpURLConnection connection,
             RequestBatch requests, boolean isFromCache) throws FacebookException, JSONException, IOException {
+        if (shouldParseFromStream()) {
+            Object resultObject = StreamingJsonParser.parse(stream, Settings.isCompactResponseObjectsEnabled());
+
+            List<Response> responses = createResponsesFromObject(connection, requests, resultObject, isFromCache,
+                    true);
+            Logger.log(LoggingBehavior.REQUESTS, RESPONSE_LOG_TAG, "Response\n  Id: %s\n  Responses:\n%s\n",
+                    requests.getId(), responses);
+
+            return responses;
+        }
 
         String responseString = Utility.readStreamToString(stream);
         Logger.log(LoggingBehavior.INCLUDE_RAW_RESPONSES, RESPONSE_LOG_TAG,
@@ -352,18 +578,28 @@ public class Response {
 
     static List<Response> createResponsesFromString(String responseString, HttpURLConnection connection,
             RequestBatch requests, boolean isFromCache) throws FacebookException, JSONException, IOException {
-        JSONTokener tokener = new JSONTokener(responseString);
+        boolean compact = Settings.isCompactResponseObjectsEnabled();
+        JSONTokener tokener = createTokener(responseString, compact);
         Object resultObject = tokener.nextValue();
 
-        List<Response> responses = createResponsesFromObject(connection, requests, resultObject, isFromCache);
+        // Writing out compact objects would turn them back into ordinary ones, so their text is only produced when
+        // asked for.
+        List<Response> responses = createResponsesFromObject(connection, requests, resultObject, isFromCache,
+                compact);
         Logger.log(LoggingBehavior.REQUESTS, RESPONSE_LOG_TAG, "Response\n  Id: %s\n  Size: %d\n  Responses:\n%s\n",
                 requests.getId(), responseString.length(), responses);
 
         return responses;
     }
 
+    private static boolean shouldParseFromStream() {
+        // Raw response logging needs the full response text, so fall back to reading it into a String.
+        return Settings.isStreamingResponseParsingEnabled() && StreamingJsonParser.isSupported() &&
+                !Settings.isLoggingBehaviorEnabled(LoggingBehavior.INCLUDE_RAW_RESPONSES);
+    }
+
     private static List<Response> createResponsesFromObject(HttpURLConnection connection, List<Request> requests,
-            Object object, boolean isFromCache) throws FacebookException, JSONException {
+            Object object, boolean isFromCache, boolean deferRawResponse) throws FacebookException, JSONException {
         assert (connection != null) || isFromCache;
 
         int numRequests = requests.size();
@@ -404,7 +640,8 @@ public class Response {
             Request request = requests.get(i);
             try {
                 Object obj = jsonArray.get(i);
-                responses.add(createResponseFromObject(request, connection, obj, isFromCache, originalResult));
+                responses.add(createResponseFromObject(request, connection, obj, isFromCache, originalResult,
+                        deferRawResponse));
             } catch (JSONException e) {
                 responses.add(new Response(request, connection, new FacebookRequestError(connection, e)));
             } catch (FacebookException e) {
@@ -416,13 +653,23 @@ public class Response {
     }
 
     private static Response createResponseFromObject(Request request, HttpURLConnection connection, Object object,
-            boolean isFromCache, Object originalResult) throws JSONException {
+            boolean isFromCache, Object originalResult, boolean deferRawResponse) throws JSONException {
         if (object instanceof JSONObject) {
             JSONObject jsonObject = (JSONObject) object;
 
+            Object rawBody = jsonObject.opt(BODY_KEY);
+            if (rawBody instanceof String && canDeferBody(jsonObject, (String) rawBody)) {
+                String body = (String) rawBody;
+                Response response = new Response(request, connection, body, (GraphObject) null, isFromCache);
+                response.deferredBody = body;
+                return response;
+            }
+
             FacebookRequestError error =
                     FacebookRequestError.checkResponseAndCreateError(jsonObject, originalResult, connection);
             if (error != null) {
+                // The error holds on to the parsed result, which may be written out.
+                CompactJSONObject.materialize(originalResult);
                 if (error.getErrorCode() == INVALID_SESSION_FACEBOOK_ERROR_CODE) {
                     Session session = request.getSession();
                     if (session != null) {
@@ -432,15 +679,22 @@ public class Response {
                 return new Response(request, connection, error);
             }
 
-            Object body = Utility.getStringPropertyAsJSON(jsonObject, BODY_KEY, NON_JSON_RESPONSE_PROPERTY);
+            Object body = Utility.getStringPropertyAsJSON(jsonObject, BODY_KEY, NON_JSON_RESPONSE_PROPERTY,
+                    Settings.isCompactResponseObjectsEnabled());
 
             if (body instanceof JSONObject) {
+                String rawResponse = deferRawResponse ? null : body.toString();
                 GraphObject graphObject = GraphObject.Factory.create((JSONObject) body);
-                return new Response(request, connection, body.toString(), graphObject, isFromCache);
+                Response response = new Response(request, connection, rawResponse, graphObject, isFromCache);
+                response.isRawResponseDeferred = deferRawResponse;
+                return response;
             } else if (body instanceof JSONArray) {
+                String rawResponse = deferRawResponse ? null : body.toString();
                 GraphObjectList<GraphObject> graphObjectList = GraphObject.Factory.createList(
                         (JSONArray) body, GraphObject.class);
-                return new Response(request, connection, body.toString(), graphObjectList, isFromCache);
+                Response response = new Response(request, connection, rawResponse, graphObjectList, isFromCache);
+                response.isRawResponseDeferred = deferRawResponse;
+                return response;
             }
             // We didn't get a body we understand how to handle, so pretend we got nothing.
             object = JSONObject.NULL;
@@ -454,6 +708,24 @@ public class Response {
         }
     }
 
+    private static JSONTokener createTokener(String json, boolean compact) {
+        StringPool pool = new StringPool();
+        return compact ? CompactJSONObject.createTokener(json, pool) : pool.createTokener(json);
+    }
+
+    // A body that is still JSON text can be left unparsed if it cannot describe an error. That needs a success code
+    // and none of the "error" fields that FacebookRequestError.checkResponseAndCreateError looks for, all of which
+    // start with that word.
+    private static boolean canDeferBody(JSONObject jsonObject, String body) {
+        if (jsonObject.has(CODE_KEY)) {
+            int responseCode = jsonObject.optInt(CODE_KEY, 0);
+            if (responseCode < 200 || responseCode > 299) {
+                return false;
+            }
+        }
+        return body.indexOf("\"error") < 0;
+    }
+
     static List<Response> constructErrorResponses(List<Request> requests, HttpURLConnection connection,
             FacebookException error) {
         int count = requests.size();
@@ -477,4 +749,61 @@ public class Response {
         PagingInfo getPaging();
     }
 
+    private static final class CountingInputStream extends FilterInputStream {
+        private final boolean isTimed;
+        private long count;
+        private long readNanoseconds;
+
+        CountingInputStream(InputStream in, boolean isTimed) {
+            super(in);
+            this.isTimed = isTimed;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        // The time spent blocked in reads, which is only measured for timed streams.
+        long getReadTime() {
+            return readNanoseconds / 1000000;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = isTimed ? System.nanoTime() : 0;
+            int result = in.read();
+            if (isTimed) {
+                readNanoseconds += System.nanoTime() - start;
+            }
+            if (result != -1) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = isTimed ? System.nanoTime() : 0;
+            int result = in.read(buffer, offset, length);
+            if (isTimed) {
+                readNanoseconds += System.nanoTime() - start;
+            }
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long byteCount) throws IOException {
+            long result = in.skip(byteCount);
+            count += result;
+            return result;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,413 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import com.facebook.internal.Logger;
+import com.facebook.internal.Utility;
+import com.facebook.internal.Validate;
+import com.facebook.model.GraphObject;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Uploads a video in chunks using the Graph API's resumable upload protocol, as an alternative to
+ * {@link Request#newUploadVideoRequest(Session, java.io.File, Request.Callback)} for large files.
+ * <p/>
+ * The upload is started with a single request that reserves an upload session, after which each chunk is sent as
+ * its own request and retried independently if it fails. The offsets confirmed by the server are persisted, so an
+ * upload of the same file that is interrupted, even by the process being killed, resumes from the last confirmed
+ * chunk the next time it is executed for the same app and Graph path, even if the access token has been extended or
+ * reauthorized in the meantime.
+ * <p/>
+ * If the callback is a {@link Request.OnProgressCallback}, it receives progress for the upload as a whole, with
+ * the file size as the maximum value.
+ */
+public final class ResumableVideoUpload {
+    private static final String TAG = ResumableVideoUpload.class.getCanonicalName();
+
+    private static final String PREFERENCES_NAME = "com.facebook.ResumableVideoUpload";
+    private static final String DEFAULT_GRAPH_PATH = "me/videos";
+    private static final int DEFAULT_CHUNK_RETRY_COUNT = 3;
+    private static final long RETRY_BASE_DELAY_MILLISECONDS = 1000;
+
+    private static final String UPLOAD_PHASE_PARAM = "upload_phase";
+    private static final String UPLOAD_PHASE_START = "start";
+    private static final String UPLOAD_PHASE_TRANSFER = "transfer";
+    private static final String UPLOAD_PHASE_FINISH = "finish";
+    private static final String FILE_SIZE_PARAM = "file_size";
+    private static final String UPLOAD_SESSION_ID_PARAM = "upload_session_id";
+    private static final String VIDEO_ID_PARAM = "video_id";
+    private static final String START_OFFSET_PARAM = "start_offset";
+    private static final String END_OFFSET_PARAM = "end_offset";
+    private static final String VIDEO_FILE_CHUNK_PARAM = "video_file_chunk";
+
+    private final Context context;
+    private final Session session;
+    private final File file;
+    private final Request.Callback callback;
+    private String graphPath = DEFAULT_GRAPH_PATH;
+    private int chunkRetryCount = DEFAULT_CHUNK_RETRY_COUNT;
+    private RequestRunner requestRunner = DEFAULT_REQUEST_RUNNER;
+    private Handler callbackHandler;
+
+    private String uploadSessionId;
+    private String videoId;
+    private long startOffset;
+    private long endOffset;
+
+    private static final RequestRunner DEFAULT_REQUEST_RUNNER = new RequestRunner() {
+        @Override
+        public Response run(Request request) {
+            return Request.executeAndWait(request);
+        }
+    };
+
+    /**
+     * Constructs a ResumableVideoUpload.
+     *
+     * @param context  the Context used to persist the progress of the upload
+     * @param session  the Session to use, or null; if non-null, the session must be in an opened state
+     * @param file     the file containing the video to upload
+     * @param callback a callback that will be called when the upload has finished or failed, or null
+     */
+    public ResumableVideoUpload(Context context, Session session, File file, Request.Callback callback) {
+        Validate.notNull(context, "context");
+        Validate.notNull(file, "file");
+
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.session = session;
+        this.file = file;
+        this.callback = callback;
+    }
+
+    /**
+     * Sets the Graph path of the videos edge to upload to. The default is "me/videos".
+     *
+     * @param graphPath the Graph path, which must end with "/videos"
+     */
+    public void setGraphPath(String graphPath) {
+        Validate.notNullOrEmpty(graphPath, "graphPath");
+        this.graphPath = graphPath;
+    }
+
+    /**
+     * Sets the number of times a failed chunk is retried before the upload is abandoned. The default is 3.
+     *
+     * @param chunkRetryCount the number of retries for each chunk
+     */
+    public void setChunkRetryCount(int chunkRetryCount) {
+        if (chunkRetryCount < 0) {
+            throw new IllegalArgumentException("Argument chunkRetryCount must be >= 0.");
+        }
+        this.chunkRetryCount = chunkRetryCount;
+    }
+
+    /**
+     * Gets the ID of the uploaded video. This is available once the upload has been started.
+     *
+     * @return the video ID, or null
+     */
+    public String getVideoId() {
+        return videoId;
+    }
+
+    /**
+     * Discards any persisted progress for this upload, so that the next execution starts from the beginning.
+     */
+    public void clearSavedState() {
+        SharedPreferences.Editor editor = getPreferences().edit();
+        editor.remove(getStateKey());
+        editor.commit();
+    }
+
+    /**
+     * Executes the upload on the executor returned by {@link Settings#getExecutor()}. The callback is invoked on
+     * the thread that called this method, which must have a Looper.
+     */
+    public void executeAsync() {
+        callbackHandler = (Looper.myLooper() != null) ? new Handler() : null;
+        Settings.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                executeAndWait();
+            }
+        });
+    }
+
+    /**
+     * Executes the upload on the current thread and returns the response to the final request. This should only
+     * be used if you have transitioned off the UI thread.
+     *
+     * @return the Response to the request that finished the upload, or the error that stopped it
+     */
+    public Response executeAndWait() {
+        Response response;
+        try {
+            response = upload();
+        } catch (IOException e) {
+            response = new Response(null, null, new FacebookRequestError(null, e));
+        }
+
+        if (response.getError() != null) {
+            Logger.log(LoggingBehavior.REQUESTS, TAG, "Video upload of %s stopped at offset %d: %s",
+                    file.getName(), startOffset, response.getError());
+        }
+        deliverCompleted(response);
+        return response;
+    }
+
+    void setRequestRunner(RequestRunner requestRunner) {
+        this.requestRunner = requestRunner;
+    }
+
+    private Response upload() throws IOException {
+        long fileSize = file.length();
+
+        if (!restoreState()) {
+            Bundle parameters = new Bundle();
+            parameters.putString(UPLOAD_PHASE_PARAM, UPLOAD_PHASE_START);
+            parameters.putString(FILE_SIZE_PARAM, Long.toString(fileSize));
+            Response response = runWithRetries(newRequest(parameters, null));
+            GraphObject result = response.getGraphObject();
+            if (response.getError() != null || result == null) {
+                return response;
+            }
+
+            uploadSessionId = getString(result, UPLOAD_SESSION_ID_PARAM);
+            videoId = getString(result, VIDEO_ID_PARAM);
+            if (!updateOffsets(result)) {
+                return createError("Unexpected response when starting video upload");
+            }
+            saveState();
+        }
+
+        reportProgress(startOffset, fileSize);
+        while (startOffset < endOffset) {
+            final long chunkStart = startOffset;
+            final long chunkSize = endOffset - startOffset;
+
+            Bundle parameters = new Bundle();
+            parameters.putString(UPLOAD_PHASE_PARAM, UPLOAD_PHASE_TRANSFER);
+            parameters.putString(UPLOAD_SESSION_ID_PARAM, uploadSessionId);
+            parameters.putString(START_OFFSET_PARAM, Long.toString(chunkStart));
+            parameters.putByteArray(VIDEO_FILE_CHUNK_PARAM, readChunk(chunkStart, (int) chunkSize));
+
+            final long totalSize = fileSize;
+            Request.Callback chunkCallback = new Request.OnProgressCallback() {
+                @Override
+                public void onProgress(long current, long max) {
+                    // The request body includes multipart framing, so scale its progress to the chunk's size.
+                    reportProgress(chunkStart + (max > 0 ? current * chunkSize / max : 0), totalSize);
+                }
+
+                @Override
+                public void onCompleted(Response response) {
+                }
+            };
+
+            Response response = runWithRetries(newRequest(parameters, chunkCallback));
+            GraphObject result = response.getGraphObject();
+            if (response.getError() != null || result == null) {
+                if (response.getError() != null &&
+                        response.getError().getCategory() == FacebookRequestError.Category.BAD_REQUEST) {
+                    // The server no longer recognizes this upload session, so it can't be resumed.
+                    clearSavedState();
+                }
+                return response;
+            }
+            if (!updateOffsets(result)) {
+                return createError("Unexpected response when transferring video chunk");
+            }
+            saveState();
+            reportProgress(startOffset, fileSize);
+        }
+
+        Bundle parameters = new Bundle();
+        parameters.putString(UPLOAD_PHASE_PARAM, UPLOAD_PHASE_FINISH);
+        parameters.putString(UPLOAD_SESSION_ID_PARAM, uploadSessionId);
+        Response response = runWithRetries(newRequest(parameters, null));
+        if (response.getError() == null) {
+            clearSavedState();
+        }
+        return response;
+    }
+
+    private Response runWithRetries(Request request) {
+        Response response = requestRunner.run(request);
+        for (int attempt = 0; attempt < chunkRetryCount && shouldRetry(response); attempt++) {
+            try {
+                Thread.sleep(RETRY_BASE_DELAY_MILLISECONDS << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            response = requestRunner.run(request);
+        }
+        return response;
+    }
+
+    private static boolean shouldRetry(Response response) {
+        FacebookRequestError error = response.getError();
+        if (error == null) {
+            return false;
+        }
+
+        switch (error.getCategory()) {
+            case CLIENT:
+                // Local failures, such as a file that can't be read, would fail the same way again.
+                return RetryPolicy.isNetworkFailure(error);
+            case SERVER:
+            case THROTTLING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Request newRequest(Bundle parameters, Request.Callback callback) {
+        return new Request(session, graphPath, parameters, HttpMethod.POST, callback);
+    }
+
+    private byte[] readChunk(long offset, int length) throws IOException {
+        byte[] chunk = new byte[length];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            randomAccessFile.seek(offset);
+            randomAccessFile.readFully(chunk);
+        } finally {
+            Utility.closeQuietly(randomAccessFile);
+        }
+        return chunk;
+    }
+
+    private boolean updateOffsets(GraphObject result) {
+        try {
+            startOffset = Long.parseLong(getString(result, START_OFFSET_PARAM));
+            endOffset = Long.parseLong(getString(result, END_OFFSET_PARAM));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return startOffset >= 0 && endOffset >= startOffset && endOffset <= file.length();
+    }
+
+    private static String getString(GraphObject graphObject, String propertyName) {
+        // Offsets are documented as strings, but accept numbers as well.
+        Object value = graphObject.getProperty(propertyName);
+        return (value != null) ? value.toString() : null;
+    }
+
+    private boolean restoreState() {
+        String savedState = getPreferences().getString(getStateKey(), null);
+        if (savedState == null) {
+            return false;
+        }
+
+        try {
+            JSONObject state = new JSONObject(savedState);
+            uploadSessionId = state.getString(UPLOAD_SESSION_ID_PARAM);
+            videoId = state.optString(VIDEO_ID_PARAM, null);
+            startOffset = state.getLong(START_OFFSET_PARAM);
+            endOffset = state.getLong(END_OFFSET_PARAM);
+            return true;
+        } catch (JSONException e) {
+            clearSavedState();
+            return false;
+        }
+    }
+
+    private void saveState() {
+        try {
+            JSONObject state = new JSONObject();
+            state.put(UPLOAD_SESSION_ID_PARAM, uploadSessionId);
+            state.put(VIDEO_ID_PARAM, videoId);
+            state.put(START_OFFSET_PARAM, startOffset);
+            state.put(END_OFFSET_PARAM, endOffset);
+
+            SharedPreferences.Editor editor = getPreferences().edit();
+            editor.putString(getStateKey(), state.toString());
+            if (!editor.commit()) {
+                Utility.logd(TAG, "Could not persist video upload state.");
+            }
+        } catch (JSONException e) {
+            Utility.logd(TAG, e);
+        }
+    }
+
+    private SharedPreferences getPreferences() {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private String getStateKey() {
+        // Changing the file invalidates any saved progress. An upload session belongs to the app and the video's
+        // target rather than to one access token, so it survives the token being extended.
+        String applicationId = (session != null) ? session.getApplicationId() : "";
+        return graphPath + "|" + applicationId + "|" + file.getAbsolutePath() + "|" + file.length() + "|" +
+                file.lastModified();
+    }
+
+    private Response createError(String message) {
+        return new Response(null, null, new FacebookRequestError(null, new FacebookException(message)));
+    }
+
+    private void reportProgress(final long current, final long max) {
+        if (!(callback instanceof Request.OnProgressCallback)) {
+            return;
+        }
+
+        final Request.OnProgressCallback progressCallback = (Request.OnProgressCallback) callback;
+        if (callbackHandler == null) {
+            progressCallback.onProgress(current, max);
+        } else {
+            callbackHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    progressCallback.onProgress(current, max);
+                }
+            });
+        }
+    }
+
+    private void deliverCompleted(final Response response) {
+        if (callback == null) {
+            return;
+        }
+
+        if (callbackHandler == null) {
+            callback.onCompleted(response);
+        } else {
+            callbackHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onCompleted(response);
+                }
+            });
+        }
+    }
+
+    interface RequestRunner {
+        Response run(Request request);
+    }
+}
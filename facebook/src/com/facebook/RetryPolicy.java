@@ -0,0 +1,334 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.SystemClock;
+import com.facebook.internal.Logger;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Describes how requests in a {@link RequestBatch} that fail with a transient error are retried. A RetryPolicy is
+ * attached to a batch with {@link RequestBatch#setRetryPolicy(RetryPolicy)}; batches without one are not retried.
+ * <p/>
+ * Whether an error is transient is decided by its {@link FacebookRequestError.Category}. By default, SERVER and
+ * THROTTLING errors are retried, as are CLIENT errors caused by a network failure. Retries are delayed with
+ * exponential backoff and random jitter, and the delay is doubled for THROTTLING errors. Requests using
+ * {@link HttpMethod#POST} are not retried unless {@link #setRetryPostRequests(boolean)} is set, since they may not
+ * be idempotent. Requests that are named or depend on other requests within their batch are never retried.
+ * <p/>
+ * All batches share a global budget of retries per minute, so that a widespread outage or throttling does not
+ * multiply the load on the service. The number of retries made for each category is available from
+ * {@link #getRetryCount(FacebookRequestError.Category)}.
+ * <p/>
+ * Retries happen on the thread executing the batch, before any callbacks are called.
+ */
+public class RetryPolicy {
+    private static final String TAG = RetryPolicy.class.getCanonicalName();
+
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final long DEFAULT_INITIAL_DELAY_MILLISECONDS = 500;
+    private static final long DEFAULT_MAX_DELAY_MILLISECONDS = 30000;
+    private static final int DEFAULT_GLOBAL_RETRY_BUDGET = 60;
+    private static final long BUDGET_PERIOD_MILLISECONDS = 60000;
+
+    private static final Random random = new Random();
+    private static final Map<FacebookRequestError.Category, AtomicLong> retryCounts =
+            new EnumMap<FacebookRequestError.Category, AtomicLong>(FacebookRequestError.Category.class);
+    private static final Object budgetLock = new Object();
+    private static int globalRetryBudget = DEFAULT_GLOBAL_RETRY_BUDGET;
+    private static double availableRetries = DEFAULT_GLOBAL_RETRY_BUDGET;
+    private static long lastBudgetRefill = SystemClock.elapsedRealtime();
+
+    static {
+        for (FacebookRequestError.Category category : FacebookRequestError.Category.values()) {
+            retryCounts.put(category, new AtomicLong());
+        }
+    }
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long initialDelayInMilliseconds = DEFAULT_INITIAL_DELAY_MILLISECONDS;
+    private long maxDelayInMilliseconds = DEFAULT_MAX_DELAY_MILLISECONDS;
+    private boolean retryPostRequests;
+    private final EnumSet<FacebookRequestError.Category> retryableCategories = EnumSet.of(
+            FacebookRequestError.Category.SERVER, FacebookRequestError.Category.THROTTLING,
+            FacebookRequestError.Category.CLIENT);
+
+    /**
+     * Gets the maximum number of times a request is retried. The default is 3.
+     *
+     * @return the maximum number of retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the maximum number of times a request is retried.
+     *
+     * @param maxRetries the maximum number of retries
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Argument maxRetries must be >= 0.");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Gets the delay before the first retry, in milliseconds. The default is 500.
+     *
+     * @return the initial delay
+     */
+    public long getInitialDelay() {
+        return initialDelayInMilliseconds;
+    }
+
+    /**
+     * Sets the delay before the first retry, in milliseconds. The delay doubles with each subsequent retry.
+     *
+     * @param initialDelayInMilliseconds the initial delay
+     */
+    public void setInitialDelay(long initialDelayInMilliseconds) {
+        if (initialDelayInMilliseconds < 0) {
+            throw new IllegalArgumentException("Argument initialDelayInMilliseconds must be >= 0.");
+        }
+        this.initialDelayInMilliseconds = initialDelayInMilliseconds;
+    }
+
+    /**
+     * Gets the maximum delay between retries, in milliseconds. The default is 30000.
+     *
+     * @return the maximum delay
+     */
+    public long getMaxDelay() {
+        return maxDelayInMilliseconds;
+    }
+
+    /**
+     * Sets the maximum delay between retries, in milliseconds.
+     *
+     * @param maxDelayInMilliseconds the maximum delay
+     */
+    public void setMaxDelay(long maxDelayInMilliseconds) {
+        if (maxDelayInMilliseconds < 0) {
+            throw new IllegalArgumentException("Argument maxDelayInMilliseconds must be >= 0.");
+        }
+        this.maxDelayInMilliseconds = maxDelayInMilliseconds;
+    }
+
+    /**
+     * Gets whether POST requests are retried. The default is false.
+     *
+     * @return the value
+     */
+    public boolean getRetryPostRequests() {
+        return retryPostRequests;
+    }
+
+    /**
+     * Sets whether POST requests are retried. Only set this if the POSTs in the batch are safe to repeat, since a
+     * request that failed with a transient error may still have been applied by the service.
+     *
+     * @param retryPostRequests whether to retry POST requests
+     */
+    public void setRetryPostRequests(boolean retryPostRequests) {
+        this.retryPostRequests = retryPostRequests;
+    }
+
+    /**
+     * Sets whether errors of the given category are retried.
+     *
+     * @param category the category of error
+     * @param retry    whether to retry errors of that category
+     */
+    public void setRetryCategory(FacebookRequestError.Category category, boolean retry) {
+        if (retry) {
+            retryableCategories.add(category);
+        } else {
+            retryableCategories.remove(category);
+        }
+    }
+
+    /**
+     * Gets whether errors of the given category are retried.
+     *
+     * @param category the category of error
+     * @return the value
+     */
+    public boolean shouldRetryCategory(FacebookRequestError.Category category) {
+        return retryableCategories.contains(category);
+    }
+
+    /**
+     * Sets the number of retries per minute that all batches share. The default is 60.
+     *
+     * @param retriesPerMinute the number of retries per minute
+     */
+    public static void setGlobalRetryBudget(int retriesPerMinute) {
+        if (retriesPerMinute < 0) {
+            throw new IllegalArgumentException("Argument retriesPerMinute must be >= 0.");
+        }
+        synchronized (budgetLock) {
+            globalRetryBudget = retriesPerMinute;
+            availableRetries = Math.min(availableRetries, retriesPerMinute);
+        }
+    }
+
+    /**
+     * Gets the number of retries per minute that all batches share.
+     *
+     * @return the number of retries per minute
+     */
+    public static int getGlobalRetryBudget() {
+        synchronized (budgetLock) {
+            return globalRetryBudget;
+        }
+    }
+
+    /**
+     * Gets the number of retries that have been made for errors of the given category.
+     *
+     * @param category the category of error
+     * @return the number of retries
+     */
+    public static long getRetryCount(FacebookRequestError.Category category) {
+        return retryCounts.get(category).get();
+    }
+
+    /**
+     * Resets the retry counts for all categories to zero.
+     */
+    public static void resetRetryCounts() {
+        for (AtomicLong count : retryCounts.values()) {
+            count.set(0);
+        }
+    }
+
+    boolean shouldRetry(Request request, Response response) {
+        FacebookRequestError error = response.getError();
+        if (error == null || !retryableCategories.contains(error.getCategory())) {
+            return false;
+        }
+        if (error.getCategory() == FacebookRequestError.Category.CLIENT && !isNetworkFailure(error)) {
+            // Other local failures, such as a request that can't be serialized, will fail the same way again.
+            return false;
+        }
+        if (request.getHttpMethod() == HttpMethod.POST && !retryPostRequests) {
+            return false;
+        }
+        return request.getBatchEntryName() == null && request.getBatchEntryDependsOn() == null;
+    }
+
+    long getDelay(int attempt, boolean throttled) {
+        long delay = initialDelayInMilliseconds << Math.min(attempt, 30);
+        if (throttled) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelayInMilliseconds);
+
+        // Jitter between half and all of the delay, so that clients that failed together don't retry together.
+        long halfDelay = delay / 2;
+        return halfDelay + (long) (random.nextDouble() * (delay - halfDelay));
+    }
+
+    List<Response> executeRetries(RequestBatch requests, List<Response> responses) {
+        List<Response> result = new ArrayList<Response>(responses);
+        for (int attempt = 0; attempt < maxRetries && !requests.isCancelled(); attempt++) {
+            List<Integer> indices = new ArrayList<Integer>();
+            boolean throttled = false;
+            for (int i = 0; i < result.size(); i++) {
+                Response response = result.get(i);
+                if (shouldRetry(requests.get(i), response)) {
+                    indices.add(i);
+                    throttled |= response.getError().getCategory() == FacebookRequestError.Category.THROTTLING;
+                }
+            }
+            if (indices.isEmpty()) {
+                break;
+            }
+            if (!acquireFromBudget(indices.size())) {
+                Logger.log(LoggingBehavior.REQUESTS, TAG, "Retry budget exhausted; not retrying %d requests",
+                        indices.size());
+                break;
+            }
+
+            try {
+                // Cancelling the batch ends the wait, so that it isn't held up for the rest of the delay.
+                if (requests.waitForCancel(getDelay(attempt, throttled))) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            RequestBatch retryBatch = new RequestBatch();
+            retryBatch.setTimeout(requests.getTimeout());
+            retryBatch.setBatchApplicationId(requests.getBatchApplicationId());
+            for (Integer index : indices) {
+                retryBatch.add(requests.get(index));
+                retryCounts.get(result.get(index).getError().getCategory()).incrementAndGet();
+            }
+            RequestMetrics metrics = requests.getMetrics();
+            if (metrics != null) {
+                // The retry reports into the metrics of the original batch, which then describe the last attempt.
+                metrics.resetAttempt();
+                retryBatch.setMetrics(metrics);
+            }
+
+            // The retry is a batch of its own, so link it to the original to be cancelled along with it.
+            List<Response> retryResponses;
+            requests.addLinkedBatch(retryBatch);
+            try {
+                retryResponses = Request.executeBatchWithoutCallbacks(retryBatch);
+            } finally {
+                requests.removeLinkedBatch(retryBatch);
+            }
+            for (int i = 0; i < indices.size(); i++) {
+                result.set(indices.get(i), retryResponses.get(i));
+            }
+        }
+        return result;
+    }
+
+    static boolean isNetworkFailure(FacebookRequestError error) {
+        for (Throwable cause = error.getException(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acquireFromBudget(int retries) {
+        synchronized (budgetLock) {
+            long now = SystemClock.elapsedRealtime();
+            availableRetries = Math.min(globalRetryBudget,
+                    availableRetries + (double) (now - lastBudgetRefill) * globalRetryBudget / BUDGET_PERIOD_MILLISECONDS);
+            lastBudgetRefill = now;
+
+            if (availableRetries < retries) {
+                return false;
+            }
+            availableRetries -= retries;
+            return true;
+        }
+    }
+}
@@ -792,7 +792,7 @@ public class Session implements Serializable {
 
     /**
      * Closes the local in-memory Session object and clears any persisted token
-     * cache related to the Session.
+     * cache related to the Session, along with any requests queued in the {@link RequestOutbox}.
      */
     public final void closeAndClearTokenInformation() {
         if (this.tokenCachingStrategy != null) {
@@ -804,6 +804,7 @@ public class Session implements Serializable {
             Utility.clearFacebookCookies(staticContext);
             Utility.clearCaches(staticContext);
         }        
+        RequestOutbox.onTokenInformationCleared(staticContext);
         close();
     }
 
@@ -854,7 +855,9 @@ public class Session implements Serializable {
                     Log.d(TAG, "refreshToken ignored in state " + this.state);
                     return;
             }
-            this.tokenInfo = AccessToken.createFromRefresh(this.tokenInfo, bundle);
+            AccessToken newToken = AccessToken.createFromRefresh(this.tokenInfo, bundle);
+            RequestOutbox.onAccessTokenUpdated(staticContext, getAccessToken(), newToken.getToken());
+            this.tokenInfo = newToken;
             if (this.tokenCachingStrategy != null) {
                 this.tokenCachingStrategy.save(this.tokenInfo.toCacheBundle());
             }
@@ -1506,6 +1509,7 @@ public class Session implements Serializable {
         final SessionState oldState = state;
 
         if (newToken != null) {
+            RequestOutbox.onAccessTokenUpdated(staticContext, getAccessToken(), newToken.getToken());
             tokenInfo = newToken;
             saveTokenToCache(newToken);
 
@@ -1557,6 +1561,13 @@ public class Session implements Serializable {
         };
         runWithHandlerOrExecutor(handler, runCallbacks);
 
+        if (!oldState.isOpened() && newState.isOpened()) {
+            if (Settings.isConnectionPrewarmEnabled()) {
+                ConnectionPrewarmer.prewarmAsync();
+            }
+            RequestOutbox.onSessionOpened();
+        }
+
         if (this == Session.activeSession) {
             if (oldState.isOpened() != newState.isOpened()) {
                 if (newState.isOpened()) {
@@ -28,6 +28,7 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
 import android.util.Base64;
 import android.util.Log;
 import com.facebook.android.BuildConfig;
@@ -38,7 +39,10 @@ import com.facebook.model.GraphObject;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -57,6 +61,8 @@ public final class Settings {
     private static final HashSet<LoggingBehavior> loggingBehaviors =
             new HashSet<LoggingBehavior>(Arrays.asList(LoggingBehavior.DEVELOPER_ERRORS));
     private static volatile Executor executor;
+    private static volatile Executor backgroundLaneExecutor;
+    private static volatile Executor maintenanceLaneExecutor;
     private static volatile boolean shouldAutoPublishInstall;
     private static volatile String appVersion;
     private static volatile String applicationId;
@@ -66,11 +72,31 @@ public final class Settings {
     private static volatile String facebookDomain = FACEBOOK_COM;
     private static AtomicLong onProgressThreshold = new AtomicLong(65536);
     private static volatile boolean platformCompatibilityEnabled;
+    private static volatile boolean streamingResponseParsingEnabled;
+    private static volatile int requestCoalescingWindow;
+    private static volatile boolean requestDeduplicationEnabled;
+    private static volatile boolean fixedLengthStreamingModeEnabled;
+    private static volatile int requestCoalescingMaxBatchSize = Request.MAXIMUM_BATCH_SIZE;
+    private static final int DEFAULT_MAX_CONCURRENT_SUB_BATCHES = 3;
+    private static volatile int maxConcurrentSubBatches = DEFAULT_MAX_CONCURRENT_SUB_BATCHES;
+    private static volatile boolean requestCompressionEnabled;
+    private static final int DEFAULT_REQUEST_COMPRESSION_THRESHOLD = 8192;
+    private static volatile int requestCompressionThreshold = DEFAULT_REQUEST_COMPRESSION_THRESHOLD;
+    private static volatile boolean responseCompressionEnabled;
+    private static volatile boolean compressedResponseCachingEnabled;
+    private static volatile HttpTransport httpTransport;
+    private static volatile boolean connectionPrewarmEnabled;
+    private static volatile BitmapEncodingPolicy bitmapEncodingPolicy = new BitmapEncodingPolicy();
+    private static volatile RequestMetricsListener requestMetricsListener;
+    private static volatile boolean compactResponseObjectsEnabled;
     private static volatile boolean isDebugEnabled = BuildConfig.DEBUG;
 
     private static final int DEFAULT_CORE_POOL_SIZE = 5;
     private static final int DEFAULT_MAXIMUM_POOL_SIZE = 128;
     private static final int DEFAULT_KEEP_ALIVE = 1;
+    // Together the lanes stay below DEFAULT_CORE_POOL_SIZE, so that interactive work always has threads to run on.
+    private static final int BACKGROUND_LANE_MAX_CONCURRENT = 2;
+    private static final int MAINTENANCE_LANE_MAX_CONCURRENT = 1;
     private static final Object LOCK = new Object();
 
     private static final Uri ATTRIBUTION_ID_CONTENT_URI =
@@ -87,6 +113,13 @@ public final class Settings {
 
     private static final BlockingQueue<Runnable> DEFAULT_WORK_QUEUE = new LinkedBlockingQueue<Runnable>(10);
 
+    private static final HttpTransport DEFAULT_HTTP_TRANSPORT = new HttpTransport() {
+        @Override
+        public HttpURLConnection openConnection(URL url) throws IOException {
+            return (HttpURLConnection) url.openConnection();
+        }
+    };
+
     private static final ThreadFactory DEFAULT_THREAD_FACTORY = new ThreadFactory() {
         private final AtomicInteger counter = new AtomicInteger(0);
 
@@ -124,6 +157,10 @@ public final class Settings {
         Utility.loadAppSettingsAsync(context, Settings.getApplicationId());
 
         BoltsMeasurementEventListener.getInstance(context.getApplicationContext());
+
+        if (connectionPrewarmEnabled) {
+            ConnectionPrewarmer.prewarmAsync();
+        }
         sdkInitialized = true;
     }
 
@@ -253,7 +290,44 @@ public final class Settings {
     }
 
     /**
-     * Sets the Executor used by the SDK for non-AsyncTask background work.
+     * Returns the Executor used by the SDK for background work of the given priority.
+     *
+     * Work of {@link ExecutionPriority#INTERACTIVE} priority runs directly on the Executor returned by
+     * {@link #getExecutor()}. Lower priority work is queued in its own lane and runs on the same Executor with a
+     * lowered thread priority, but only a few tasks from each lane run at a time. With the default Executor, the lanes
+     * together occupy fewer threads than the pool keeps, so that bursts of analytics or cache maintenance can't crowd
+     * out requests the user is waiting on.
+     *
+     * @param priority the priority of the work
+     * @return an Executor for work of that priority.  This will never be null.
+     */
+    public static Executor getExecutor(ExecutionPriority priority) {
+        Validate.notNull(priority, "priority");
+        switch (priority) {
+            case BACKGROUND:
+                synchronized (LOCK) {
+                    if (backgroundLaneExecutor == null) {
+                        backgroundLaneExecutor = new PriorityLaneExecutor(BACKGROUND_LANE_MAX_CONCURRENT,
+                                Process.THREAD_PRIORITY_BACKGROUND);
+                    }
+                    return backgroundLaneExecutor;
+                }
+            case MAINTENANCE:
+                synchronized (LOCK) {
+                    if (maintenanceLaneExecutor == null) {
+                        maintenanceLaneExecutor = new PriorityLaneExecutor(MAINTENANCE_LANE_MAX_CONCURRENT,
+                                Process.THREAD_PRIORITY_LOWEST);
+                    }
+                    return maintenanceLaneExecutor;
+                }
+            default:
+                return getExecutor();
+        }
+    }
+
+    /**
+     * Sets the Executor used by the SDK for non-AsyncTask background work. Lower priority lanes returned by
+     * {@link #getExecutor(ExecutionPriority)} run their work on this Executor as well.
      *
      * @param executor
      *          the Executor to use; must not be null.
@@ -320,7 +394,7 @@ public final class Settings {
         final Request.Callback callback) {
         // grab the application context ahead of time, since we will return to the caller immediately.
         final Context applicationContext = context.getApplicationContext();
-        Settings.getExecutor().execute(new Runnable() {
+        Settings.getExecutor(ExecutionPriority.BACKGROUND).execute(new Runnable() {
             @Override
             public void run() {
                 final Response response = Settings.publishInstallAndWaitForResponse(applicationContext, applicationId, false);
@@ -554,6 +628,341 @@ public final class Settings {
         Settings.platformCompatibilityEnabled = platformCompatibilityEnabled;
     }
 
+    /**
+     * Gets whether Graph API responses are parsed directly from the network stream rather than first being read
+     * into a String. The default is false.
+     *
+     * @return the value
+     */
+    public static boolean isStreamingResponseParsingEnabled() {
+        return streamingResponseParsingEnabled;
+    }
+
+    /**
+     * Sets whether Graph API responses are parsed directly from the network stream rather than first being read
+     * into a String. This reduces peak memory use for large responses such as friend lists. It only takes effect
+     * on API level 11 and above, and is bypassed while LoggingBehavior.INCLUDE_RAW_RESPONSES is enabled, since
+     * that behavior needs the full response text.
+     *
+     * @param streamingResponseParsingEnabled whether to parse responses from the stream
+     */
+    public static void setStreamingResponseParsingEnabled(boolean streamingResponseParsingEnabled) {
+        Settings.streamingResponseParsingEnabled = streamingResponseParsingEnabled;
+    }
+
+    /**
+     * Gets the window, in milliseconds, during which single asynchronous requests are held so that they can be
+     * sent together in one batch. The default is 0, which disables coalescing.
+     *
+     * @return the coalescing window, in milliseconds
+     */
+    public static int getRequestCoalescingWindow() {
+        return requestCoalescingWindow;
+    }
+
+    /**
+     * Sets the window, in milliseconds, during which single requests started via {@link Request#executeAsync()}
+     * or {@link Request#executeBatchAsync(Request...)} are held so that they can be sent together in one batch.
+     * Each request still receives its own callback. Requests are only coalesced when started from the main
+     * thread, and {@link RequestCoalescer} reports how many round-trips were saved.
+     *
+     * @param windowInMilliseconds the coalescing window, in milliseconds; 0 disables coalescing
+     */
+    public static void setRequestCoalescingWindow(int windowInMilliseconds) {
+        if (windowInMilliseconds < 0) {
+            throw new IllegalArgumentException("Argument windowInMilliseconds must be >= 0.");
+        }
+        Settings.requestCoalescingWindow = windowInMilliseconds;
+    }
+
+    /**
+     * Gets the number of coalesced requests that causes a batch to be sent before its window has elapsed.
+     *
+     * @return the maximum number of requests in a coalesced batch
+     */
+    public static int getRequestCoalescingMaxBatchSize() {
+        return requestCoalescingMaxBatchSize;
+    }
+
+    /**
+     * Sets the number of coalesced requests that causes a batch to be sent before its window has elapsed.
+     *
+     * @param maxBatchSize the maximum number of requests in a coalesced batch; must be between 1 and
+     *                     {@link Request#MAXIMUM_BATCH_SIZE}
+     */
+    public static void setRequestCoalescingMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1 || maxBatchSize > Request.MAXIMUM_BATCH_SIZE) {
+            throw new IllegalArgumentException("Argument maxBatchSize must be between 1 and " +
+                    Request.MAXIMUM_BATCH_SIZE + ".");
+        }
+        Settings.requestCoalescingMaxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Gets whether identical GET requests that are started while an earlier one is still in flight share its
+     * response instead of going to the network again. The default is false.
+     *
+     * @return the value
+     */
+    public static boolean isRequestDeduplicationEnabled() {
+        return requestDeduplicationEnabled;
+    }
+
+    /**
+     * Sets whether identical GET requests that are started while an earlier one is still in flight share its
+     * response instead of going to the network again. Requests are identical if they have the same URL (graph
+     * path, parameters and version) and access token. This only applies to single requests started from the main
+     * thread via {@link Request#executeAsync()} or {@link Request#executeBatchAsync(Request...)}. Each later caller
+     * still receives a RequestAsyncTask of its own, which completes when the request already in flight does; its
+     * callback is called with a copy of that request's Response, and cancelling it affects only that caller.
+     *
+     * @param requestDeduplicationEnabled whether to de-duplicate in-flight GET requests
+     */
+    public static void setRequestDeduplicationEnabled(boolean requestDeduplicationEnabled) {
+        Settings.requestDeduplicationEnabled = requestDeduplicationEnabled;
+    }
+
+    /**
+     * Gets whether request bodies are sent with a Content-Length rather than with chunked transfer encoding. The
+     * default is false.
+     *
+     * @return the value
+     */
+    public static boolean isFixedLengthStreamingModeEnabled() {
+        return fixedLengthStreamingModeEnabled;
+    }
+
+    /**
+     * Sets whether request bodies are sent with a Content-Length rather than with chunked transfer encoding. The
+     * length is computed by a counting pass over the body that sizes files without reading them, and attached
+     * Bitmaps are compressed only once. Some proxies do not accept chunked uploads, and a known length lets the
+     * server reject an oversize body before it has been sent. If the length of an attachment can't be determined,
+     * as with a pipe, the request falls back to chunked transfer encoding.
+     *
+     * @param fixedLengthStreamingModeEnabled whether to send request bodies with a fixed length
+     */
+    public static void setFixedLengthStreamingModeEnabled(boolean fixedLengthStreamingModeEnabled) {
+        Settings.fixedLengthStreamingModeEnabled = fixedLengthStreamingModeEnabled;
+    }
+
+    /**
+     * Gets the maximum number of sub-batches that are sent at the same time when a {@link RequestBatch} is larger
+     * than {@link Request#MAXIMUM_BATCH_SIZE}. The default is 3.
+     *
+     * @return the maximum number of concurrent sub-batches
+     */
+    public static int getMaxConcurrentSubBatches() {
+        return maxConcurrentSubBatches;
+    }
+
+    /**
+     * Sets the maximum number of sub-batches that are sent at the same time when a {@link RequestBatch} is larger
+     * than {@link Request#MAXIMUM_BATCH_SIZE}. Such batches are split into sub-batches that keep requests that
+     * depend on each other together, and the responses are returned in the order of the original batch. A value of
+     * 1 sends the sub-batches one after another.
+     *
+     * @param maxConcurrentSubBatches the maximum number of concurrent sub-batches, at least 1
+     */
+    public static void setMaxConcurrentSubBatches(int maxConcurrentSubBatches) {
+        if (maxConcurrentSubBatches < 1) {
+            throw new IllegalArgumentException("Argument maxConcurrentSubBatches must be >= 1.");
+        }
+        Settings.maxConcurrentSubBatches = maxConcurrentSubBatches;
+    }
+
+    /**
+     * Gets whether large request bodies are gzip-compressed. The default is false.
+     *
+     * @return the value
+     */
+    public static boolean isRequestCompressionEnabled() {
+        return requestCompressionEnabled;
+    }
+
+    /**
+     * Sets whether large request bodies are gzip-compressed. When enabled, a POST body that is at least
+     * {@link #getRequestCompressionThreshold()} bytes long, such as a large batch or an upload of app events, is
+     * sent with Content-Encoding: gzip. This saves bytes on metered connections at the cost of some CPU time, and
+     * is most effective for JSON; images and videos are already compressed and gain little. Compressed bodies are
+     * always sent with chunked transfer encoding, and progress callbacks report uncompressed bytes.
+     *
+     * @param requestCompressionEnabled whether to compress large request bodies
+     */
+    public static void setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+        Settings.requestCompressionEnabled = requestCompressionEnabled;
+    }
+
+    /**
+     * Gets the size, in bytes, from which request bodies are compressed. The default is 8192.
+     *
+     * @return the threshold
+     */
+    public static int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    /**
+     * Sets the size, in bytes, from which request bodies are compressed when
+     * {@link #setRequestCompressionEnabled(boolean)} is set. Smaller bodies are sent as they are, since compressing
+     * them saves little and adds gzip framing.
+     *
+     * @param threshold the threshold in bytes, 0 to compress every body
+     */
+    public static void setRequestCompressionThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Argument threshold must be >= 0.");
+        }
+        Settings.requestCompressionThreshold = threshold;
+    }
+
+    /**
+     * Gets whether Graph API responses are requested with gzip or deflate content encoding. The default is false.
+     *
+     * @return the value
+     */
+    public static boolean isResponseCompressionEnabled() {
+        return responseCompressionEnabled;
+    }
+
+    /**
+     * Sets whether Graph API responses are requested with gzip or deflate content encoding. When enabled, requests
+     * send an Accept-Encoding header and the SDK decodes the response as it is parsed, so that
+     * {@link Response#getWireByteCount()} and {@link Response#getDecodedByteCount()} show how much was saved.
+     *
+     * @param responseCompressionEnabled whether to request compressed responses
+     */
+    public static void setResponseCompressionEnabled(boolean responseCompressionEnabled) {
+        Settings.responseCompressionEnabled = responseCompressionEnabled;
+    }
+
+    /**
+     * Gets whether cacheable responses that arrive compressed are stored in the cache compressed. The default is
+     * false.
+     *
+     * @return the value
+     */
+    public static boolean isCompressedResponseCachingEnabled() {
+        return compressedResponseCachingEnabled;
+    }
+
+    /**
+     * Sets whether cacheable responses that arrive compressed are stored in the cache compressed. Compressed entries
+     * take less space, so more of them fit within the cache limits, but they are decoded again each time they are
+     * read from the cache. Entries stored either way remain readable if this setting changes.
+     *
+     * @param compressedResponseCachingEnabled whether to cache compressed responses without decoding them
+     */
+    public static void setCompressedResponseCachingEnabled(boolean compressedResponseCachingEnabled) {
+        Settings.compressedResponseCachingEnabled = compressedResponseCachingEnabled;
+    }
+
+    /**
+     * Gets the HttpTransport that opens the SDK's HTTP connections.
+     *
+     * @return the transport
+     */
+    public static HttpTransport getHttpTransport() {
+        HttpTransport transport = httpTransport;
+        return (transport != null) ? transport : DEFAULT_HTTP_TRANSPORT;
+    }
+
+    /**
+     * Sets the HttpTransport that opens the SDK's HTTP connections, for Graph API requests, image downloads and the
+     * deprecated Facebook API. By default, connections are opened with {@link URL#openConnection()}.
+     *
+     * @param httpTransport the transport, or null to restore the default
+     */
+    public static void setHttpTransport(HttpTransport httpTransport) {
+        Settings.httpTransport = httpTransport;
+    }
+
+    /**
+     * Gets whether a connection to the Graph API is opened ahead of the first request. The default is false.
+     *
+     * @return the value
+     */
+    public static boolean isConnectionPrewarmEnabled() {
+        return connectionPrewarmEnabled;
+    }
+
+    /**
+     * Sets whether a connection to the Graph API is opened ahead of the first request. When enabled, the SDK opens a
+     * keep-alive connection on a background thread from {@link #sdkInitialize(Context)} and whenever a Session
+     * opens, so that the first request does not wait for DNS resolution and the TCP and TLS handshakes. This costs
+     * a small request that may turn out to be unnecessary, so it is best enabled by apps that make a request soon
+     * after starting. This must be set before calling {@link #sdkInitialize(Context)} to take effect there.
+     *
+     * @param connectionPrewarmEnabled whether to pre-warm connections
+     */
+    public static void setConnectionPrewarmEnabled(boolean connectionPrewarmEnabled) {
+        Settings.connectionPrewarmEnabled = connectionPrewarmEnabled;
+    }
+
+    /**
+     * Gets the BitmapEncodingPolicy used for Bitmap parameters of requests that do not set their own.
+     *
+     * @return the policy
+     */
+    public static BitmapEncodingPolicy getBitmapEncodingPolicy() {
+        return bitmapEncodingPolicy;
+    }
+
+    /**
+     * Sets the BitmapEncodingPolicy used for Bitmap parameters of requests that do not set their own, with
+     * {@link Request#setBitmapEncodingPolicy(BitmapEncodingPolicy)}. By default, bitmaps are uploaded as PNG at
+     * their full size.
+     *
+     * @param bitmapEncodingPolicy the policy
+     */
+    public static void setBitmapEncodingPolicy(BitmapEncodingPolicy bitmapEncodingPolicy) {
+        Validate.notNull(bitmapEncodingPolicy, "bitmapEncodingPolicy");
+        Settings.bitmapEncodingPolicy = bitmapEncodingPolicy;
+    }
+
+    /**
+     * Gets the RequestMetricsListener that receives the timings of each RequestBatch.
+     *
+     * @return the listener, or null
+     */
+    public static RequestMetricsListener getRequestMetricsListener() {
+        return requestMetricsListener;
+    }
+
+    /**
+     * Sets a RequestMetricsListener to receive the timings of each RequestBatch the SDK executes. Timings are only
+     * collected while a listener is set.
+     *
+     * @param requestMetricsListener the listener, or null to stop collecting timings
+     */
+    public static void setRequestMetricsListener(RequestMetricsListener requestMetricsListener) {
+        Settings.requestMetricsListener = requestMetricsListener;
+    }
+
+    /**
+     * Gets whether the graph objects in Graph API responses are held in a compact, read-only form. The default is
+     * false.
+     *
+     * @return the value
+     */
+    public static boolean isCompactResponseObjectsEnabled() {
+        return compactResponseObjectsEnabled;
+    }
+
+    /**
+     * Sets whether the graph objects in Graph API responses are held in a compact, read-only form, in which objects
+     * of the same shape share one set of keys. Objects are made compact as the response is parsed. This greatly
+     * reduces the memory retained by large lists such as friend lists. Reads through typed getters leave an object
+     * compact. It is converted to an ordinary JSONObject, along with the objects it contains, the first time it is
+     * changed, written out with toString, or handed out as a JSONObject or JSONArray, whether through
+     * GraphObject.getInnerJSONObject, getProperty, asMap, or a getter that returns one of those types. Getting the
+     * raw response of such a response converts its objects too.
+     *
+     * @param compactResponseObjectsEnabled whether to hold response objects in compact form
+     */
+    public static void setCompactResponseObjectsEnabled(boolean compactResponseObjectsEnabled) {
+        Settings.compactResponseObjectsEnabled = compactResponseObjectsEnabled;
+    }
+
     /**
      * Loads default values for certain settings from an application's AndroidManifest.xml metadata, if possible.
      * If values have been explicitly set for a particular setting, they will not be overwritten. The following
@@ -0,0 +1,358 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.internal;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.*;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for Android. Use of
+ * any of the classes in this package is unsupported, and they may be modified or removed without warning at
+ * any time.
+ *
+ * A read-only JSONObject that keeps its values in a flat array, against a schema of keys that is shared by every
+ * object of the same shape in a response. A friend list of thousands of entries then holds one array of keys rather
+ * than a hash map entry per key per friend. Responses are parsed through createTokener, or StreamingJsonParser, so
+ * that each object is made compact as soon as it has been read.
+ * <p/>
+ * The first change to the object, or the first time it is handed to code outside the GraphObject implementation,
+ * turns it into an ordinary JSONObject in place, along with any compact objects it contains. The latter is needed
+ * because JSONObject serializes nested objects through package-private methods that this class can't override, so
+ * a compact object must never end up inside a JSONObject that is written out.
+ */
+public final class CompactJSONObject extends JSONObject {
+    private final Schema schema;
+    // Null once the object has been materialized, after which the superclass holds the values.
+    private volatile Object[] values;
+
+    private CompactJSONObject(Schema schema, Object[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    /**
+     * Returns a copy of a parsed JSON value in which every JSONObject is a CompactJSONObject. Objects with the same
+     * keys in the same order share a schema.
+     *
+     * @param value a value as produced by JSONTokener: a JSONObject, JSONArray or scalar
+     * @return the compact copy, or the value itself if it is a scalar
+     */
+    public static Object compact(Object value) {
+        return compact(value, new Builder());
+    }
+
+    /**
+     * Creates a JSONTokener that reads every JSONObject as a CompactJSONObject, passing keys and string values
+     * through the given pool. Each object is made compact as soon as it has been read, so unlike parsing and then
+     * calling compact, the ordinary form of the whole tree never exists at once.
+     *
+     * @param json the JSON text to parse
+     * @param pool the pool for keys and string values
+     * @return the tokener
+     */
+    public static JSONTokener createTokener(String json, final StringPool pool) {
+        final Builder builder = new Builder();
+        return new JSONTokener(json) {
+            @Override
+            public String nextString(char quote) throws JSONException {
+                return pool.intern(super.nextString(quote));
+            }
+
+            // JSONTokener reads the members of objects and arrays through nextValue, so an object's values are
+            // already compact by the time the object itself is read.
+            @Override
+            public Object nextValue() throws JSONException {
+                Object value = super.nextValue();
+                return (value instanceof JSONObject) ? builder.build((JSONObject) value) : value;
+            }
+        };
+    }
+
+    /**
+     * Turns any compact objects in a value, including the value itself, into ordinary JSONObjects, so that the value
+     * can be handed out or serialized.
+     *
+     * @param value a JSON value
+     * @return the value
+     */
+    public static <T> T materialize(T value) {
+        if (value instanceof CompactJSONObject) {
+            ((CompactJSONObject) value).materialize();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                materialize(array.opt(i));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns whether this object still holds its values in compact form.
+     *
+     * @return true until the object has been materialized
+     */
+    public boolean isCompact() {
+        return values != null;
+    }
+
+    @Override
+    public Object opt(String name) {
+        Object[] values = this.values;
+        if (values == null) {
+            return super.opt(name);
+        }
+        int index = schema.indexOf(name);
+        return (index >= 0) ? values[index] : null;
+    }
+
+    @Override
+    public Object get(String name) throws JSONException {
+        if (values == null) {
+            return super.get(name);
+        }
+        Object value = opt(name);
+        if (value == null) {
+            throw new JSONException("No value for " + name);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean has(String name) {
+        if (values == null) {
+            return super.has(name);
+        }
+        return schema.indexOf(name) >= 0;
+    }
+
+    @Override
+    public int length() {
+        if (values == null) {
+            return super.length();
+        }
+        return schema.keys.length;
+    }
+
+    @Override
+    public Iterator keys() {
+        if (values == null) {
+            return super.keys();
+        }
+        return new KeyIterator();
+    }
+
+    @Override
+    public JSONArray names() {
+        if (values == null) {
+            return super.names();
+        }
+        return (schema.keys.length == 0) ? null : new JSONArray(Arrays.asList(schema.keys));
+    }
+
+    @Override
+    public JSONObject put(String name, boolean value) throws JSONException {
+        materialize();
+        return super.put(name, value);
+    }
+
+    @Override
+    public JSONObject put(String name, double value) throws JSONException {
+        materialize();
+        return super.put(name, value);
+    }
+
+    @Override
+    public JSONObject put(String name, int value) throws JSONException {
+        materialize();
+        return super.put(name, value);
+    }
+
+    @Override
+    public JSONObject put(String name, long value) throws JSONException {
+        materialize();
+        return super.put(name, value);
+    }
+
+    @Override
+    public JSONObject put(String name, Object value) throws JSONException {
+        materialize();
+        return super.put(name, value);
+    }
+
+    @Override
+    public JSONObject putOpt(String name, Object value) throws JSONException {
+        materialize();
+        return super.putOpt(name, value);
+    }
+
+    @Override
+    public JSONObject accumulate(String name, Object value) throws JSONException {
+        materialize();
+        return super.accumulate(name, value);
+    }
+
+    @Override
+    public Object remove(String name) {
+        materialize();
+        return super.remove(name);
+    }
+
+    @Override
+    public String toString() {
+        materialize();
+        return super.toString();
+    }
+
+    @Override
+    public String toString(int indentSpaces) throws JSONException {
+        materialize();
+        return super.toString(indentSpaces);
+    }
+
+    private synchronized void materialize() {
+        Object[] values = this.values;
+        if (values == null) {
+            return;
+        }
+
+        String[] keys = schema.keys;
+        try {
+            for (int i = 0; i < keys.length; i++) {
+                super.put(keys[i], materialize(values[i]));
+            }
+        } catch (JSONException e) {
+            // The values came from a parsed JSONObject, so they are all valid.
+            throw new IllegalStateException(e);
+        }
+        this.values = null;
+    }
+
+    private static Object compact(Object value, Builder builder) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            List<String> keys = getKeys(object);
+
+            Object[] values = new Object[keys.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = compact(object.opt(keys.get(i)), builder);
+            }
+            return builder.build(keys, values);
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            JSONArray result = new JSONArray();
+            for (int i = 0; i < array.length(); i++) {
+                result.put(compact(array.opt(i), builder));
+            }
+            return result;
+        }
+        return value;
+    }
+
+    private static List<String> getKeys(JSONObject object) {
+        List<String> keys = new ArrayList<String>(object.length());
+        @SuppressWarnings("unchecked")
+        Iterator<String> iterator = (Iterator<String>) object.keys();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        return keys;
+    }
+
+    /**
+     * Makes the CompactJSONObjects of a single parse, so that objects with the same keys in the same order share a
+     * schema.
+     */
+    public static final class Builder {
+        private final Map<List<String>, Schema> schemas = new HashMap<List<String>, Schema>();
+
+        /**
+         * Returns a CompactJSONObject with the keys and values of an ordinary JSONObject. The values are used as
+         * they are, so any objects among them should have been built already.
+         *
+         * @param object a JSONObject that has just been read
+         * @return the compact object
+         */
+        public JSONObject build(JSONObject object) {
+            List<String> keys = getKeys(object);
+
+            Object[] values = new Object[keys.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = object.opt(keys.get(i));
+            }
+            return build(keys, values);
+        }
+
+        private CompactJSONObject build(List<String> keys, Object[] values) {
+            Schema schema = schemas.get(keys);
+            if (schema == null) {
+                schema = new Schema(keys.toArray(new String[keys.size()]));
+                schemas.put(keys, schema);
+            }
+            return new CompactJSONObject(schema, values);
+        }
+    }
+
+    // Iterates over the schema, which materialization leaves unchanged, so that removing keys through the iterator
+    // works as it does for JSONObject.
+    private final class KeyIterator implements Iterator<String> {
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            return index < schema.keys.length;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return schema.keys[index++];
+        }
+
+        @Override
+        public void remove() {
+            if (index == 0) {
+                throw new IllegalStateException();
+            }
+            CompactJSONObject.this.remove(schema.keys[index - 1]);
+        }
+    }
+
+    private static final class Schema {
+        final String[] keys;
+        private final Map<String, Integer> indices;
+
+        Schema(String[] keys) {
+            this.keys = keys;
+            this.indices = new HashMap<String, Integer>(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                indices.put(keys[i], i);
+            }
+        }
+
+        int indexOf(String name) {
+            Integer index = indices.get(name);
+            return (index != null) ? index : -1;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.facebook.internal;
 
 import android.content.Context;
 import android.util.Log;
+import com.facebook.ExecutionPriority;
 import com.facebook.LoggingBehavior;
 import com.facebook.Settings;
 import org.json.JSONException;
@@ -225,7 +226,7 @@ public final class FileLruCache {
         final File[] filesToDelete = directory.listFiles(BufferFile.excludeBufferFiles());
         lastClearCacheTime.set(System.currentTimeMillis());
         if (filesToDelete != null) {
-            Settings.getExecutor().execute(new Runnable() {
+            Settings.getExecutor(ExecutionPriority.MAINTENANCE).execute(new Runnable() {
                 @Override
                 public void run() {
                     for (File file : filesToDelete) {
@@ -255,7 +256,11 @@ public final class FileLruCache {
     // the contents of input into the new output stream.  The effect is to store a
     // copy of input, and associate that data with key.
     public InputStream interceptAndPut(String key, InputStream input) throws IOException {
-        OutputStream output = openPutStream(key);
+        return interceptAndPut(key, null, input);
+    }
+
+    public InputStream interceptAndPut(String key, String contentTag, InputStream input) throws IOException {
+        OutputStream output = openPutStream(key, contentTag);
         return new CopyingInputStream(input, output);
     }
 
@@ -267,7 +272,7 @@ public final class FileLruCache {
         synchronized (lock) {
             if (!isTrimPending) {
                 isTrimPending = true;
-                Settings.getExecutor().execute(new Runnable() {
+                Settings.getExecutor(ExecutionPriority.MAINTENANCE).execute(new Runnable() {
                     @Override
                     public void run() {
                         trim();
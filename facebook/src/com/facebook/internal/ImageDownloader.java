@@ -22,6 +22,7 @@ import android.graphics.BitmapFactory;
 import android.os.Handler;
 import android.os.Looper;
 import com.facebook.FacebookException;
+import com.facebook.Settings;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -212,7 +213,7 @@ public class ImageDownloader {
 
         try {
             URL url = new URL(key.uri.toString());
-            connection = (HttpURLConnection) url.openConnection();
+            connection = Settings.getHttpTransport().openConnection(url);
             connection.setInstanceFollowRedirects(false);
 
             switch (connection.getResponseCode()) {
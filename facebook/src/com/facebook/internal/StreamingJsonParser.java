@@ -0,0 +1,148 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.internal;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.JsonReader;
+import android.util.MalformedJsonException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for Android. Use of
+ * any of the classes in this package is unsupported, and they may be modified or removed without warning at
+ * any time.
+ *
+ * Builds JSONObject/JSONArray trees directly from a stream using android.util.JsonReader, without first reading
+ * the whole payload into a String. The resulting values match what JSONTokener would have produced for the
+ * same input.
+ */
+@TargetApi(11)
+public final class StreamingJsonParser {
+    private static final int HONEYCOMB = 11;
+
+    private StreamingJsonParser() {
+    }
+
+    /**
+     * Returns true if the current platform provides android.util.JsonReader.
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= HONEYCOMB;
+    }
+
+    /**
+     * Reads a single JSON value from the stream. Objects and arrays are returned as JSONObject and JSONArray,
+     * null as JSONObject.NULL, and scalars as String, Boolean, Integer, Long or Double. Keys and short string values
+     * that repeat are returned as the same String, as with StringPool.createTokener. Input that is empty, truncated
+     * or malformed raises a JSONException, as it does when parsed with JSONTokener.
+     */
+    public static Object parse(InputStream stream) throws IOException, JSONException {
+        return parse(stream, false);
+    }
+
+    /**
+     * Reads a single JSON value from the stream, as parse(InputStream) does. If compact is true, each object is
+     * returned as a CompactJSONObject, made as soon as it has been read, as with CompactJSONObject.createTokener.
+     */
+    public static Object parse(InputStream stream, boolean compact) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new InputStreamReader(new BufferedInputStream(stream), "UTF-8"));
+        // The Graph API can return bare literals such as "true", which strict mode rejects.
+        reader.setLenient(true);
+        try {
+            return readValue(reader, new StringPool(), compact ? new CompactJSONObject.Builder() : null);
+        } catch (EOFException e) {
+            throw new JSONException("End of input: " + e.getMessage());
+        } catch (MalformedJsonException e) {
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    // builder is null unless objects are to be made compact.
+    private static Object readValue(JsonReader reader, StringPool pool, CompactJSONObject.Builder builder)
+            throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader, pool, builder);
+            case BEGIN_ARRAY:
+                return readArray(reader, pool, builder);
+            case STRING:
+                return pool.intern(reader.nextString());
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected token: " + reader.peek());
+        }
+    }
+
+    private static JSONObject readObject(JsonReader reader, StringPool pool, CompactJSONObject.Builder builder)
+            throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = pool.intern(reader.nextName());
+            object.put(name, readValue(reader, pool, builder));
+        }
+        reader.endObject();
+        return (builder != null) ? builder.build(object) : object;
+    }
+
+    private static JSONArray readArray(JsonReader reader, StringPool pool, CompactJSONObject.Builder builder)
+            throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader, pool, builder));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    // Mirrors the number handling in JSONTokener so both parse paths produce the same boxed types.
+    static Object parseNumber(String literal) {
+        if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1 && literal.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(literal);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException e) {
+                // Fall through to try it as a double.
+            }
+        }
+
+        try {
+            return Double.valueOf(literal);
+        } catch (NumberFormatException e) {
+            return literal;
+        }
+    }
+}
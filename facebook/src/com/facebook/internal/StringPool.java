@@ -0,0 +1,91 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.internal;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.util.HashMap;
+
+/**
+ * com.facebook.internal is solely for the use of other packages within the Facebook SDK for Android. Use of
+ * any of the classes in this package is unsupported, and they may be modified or removed without warning at
+ * any time.
+ *
+ * A bounded pool of strings for the parse of a single response. Graph API lists repeat the same keys, and often the
+ * same short values such as category names, once per entry; passing each through the pool leaves one String for
+ * all of them, whose hash code is computed once.
+ * <p/>
+ * Only strings that are seen more than once are pooled. A string seen for the first time goes into a small table of
+ * candidates, indexed by hash code, where it replaces whatever was in its slot; if it is seen again while still
+ * there, it moves to the pool. Strings that occur once, such as the ids and names of each friend in a list, then
+ * pass through the candidates without taking up room in the pool. Long strings are unlikely to repeat and are not
+ * pooled, and once the pool is full, strings are only shared while they remain candidates.
+ */
+public final class StringPool {
+    static final int MAX_POOLED_LENGTH = 32;
+    static final int MAX_POOL_SIZE = 1024;
+    // A power of two, so that a hash code can be masked into an index.
+    static final int CANDIDATE_TABLE_SIZE = 256;
+
+    private final HashMap<String, String> strings = new HashMap<String, String>();
+    private final String[] candidates = new String[CANDIDATE_TABLE_SIZE];
+
+    /**
+     * Returns the pooled string equal to the given one if there is one. Otherwise the given string is returned, and
+     * is remembered so that it can be pooled if it is seen again.
+     *
+     * @param string a string, or null
+     * @return an equal string
+     */
+    public String intern(String string) {
+        if (string == null || string.length() > MAX_POOLED_LENGTH) {
+            return string;
+        }
+        String pooled = strings.get(string);
+        if (pooled != null) {
+            return pooled;
+        }
+
+        int index = string.hashCode() & (CANDIDATE_TABLE_SIZE - 1);
+        String candidate = candidates[index];
+        if (string.equals(candidate)) {
+            if (strings.size() < MAX_POOL_SIZE) {
+                strings.put(candidate, candidate);
+                candidates[index] = null;
+            }
+            return candidate;
+        }
+        candidates[index] = string;
+        return string;
+    }
+
+    /**
+     * Creates a JSONTokener that passes every key and string value it reads through this pool.
+     *
+     * @param json the JSON text to parse
+     * @return the tokener
+     */
+    public JSONTokener createTokener(String json) {
+        return new JSONTokener(json) {
+            @Override
+            public String nextString(char quote) throws JSONException {
+                return intern(super.nextString(quote));
+            }
+        };
+    }
+}
@@ -364,7 +364,7 @@ public final class Utility {
         return hashWithAlgorithm(HASH_ALGORITHM_MD5, key);
     }
 
-    static String sha1hash(String key) {
+    public static String sha1hash(String key) {
         return hashWithAlgorithm(HASH_ALGORITHM_SHA1, key);
     }
 
@@ -494,9 +494,17 @@ public final class Utility {
     // Returns either a JSONObject or JSONArray representation of the 'key' property of 'jsonObject'.
     public static Object getStringPropertyAsJSON(JSONObject jsonObject, String key, String nonJSONPropertyKey)
             throws JSONException {
+        return getStringPropertyAsJSON(jsonObject, key, nonJSONPropertyKey, false);
+    }
+
+    // If compact is true, objects parsed from a string property are CompactJSONObjects.
+    public static Object getStringPropertyAsJSON(JSONObject jsonObject, String key, String nonJSONPropertyKey,
+            boolean compact) throws JSONException {
         Object value = jsonObject.opt(key);
         if (value != null && value instanceof String) {
-            JSONTokener tokener = new JSONTokener((String) value);
+            StringPool pool = new StringPool();
+            JSONTokener tokener = compact ? CompactJSONObject.createTokener((String) value, pool) :
+                    pool.createTokener((String) value);
             value = tokener.nextValue();
         }
 
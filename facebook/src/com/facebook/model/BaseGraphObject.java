@@ -0,0 +1,189 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.model;
+
+import com.facebook.internal.CompactJSONObject;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * The base class of GraphObject implementations that are generated at compile time, which GraphObject.Factory uses
+ * in place of a java.lang.reflect.Proxy when one is available for the requested interface. Property accessors in a
+ * generated class call straight into the underlying JSONObject, converting values the same way the proxy does.
+ * <p/>
+ * A generated implementation of an interface {@code com.example.MyGraphObject} is named
+ * {@code com.example.MyGraphObject$$Impl}, and exposes a public static {@link Creator} field named {@code CREATOR}.
+ * Such classes are produced by the GraphObject annotation processor and are not intended to be written by hand.
+ */
+public abstract class BaseGraphObject implements GraphObject {
+    private final JSONObject state;
+    private final Class<? extends GraphObject> graphObjectClass;
+
+    /**
+     * Creates instances of a generated GraphObject implementation.
+     *
+     * @param <T> the GraphObject-derived interface that is implemented
+     */
+    public interface Creator<T extends GraphObject> {
+        /**
+         * Creates an object that provides typed access to the data in an underlying JSONObject.
+         *
+         * @param state the JSONObject containing the data to be exposed
+         * @return an object that represents the underlying data
+         */
+        T createFromJSONObject(JSONObject state);
+    }
+
+    /**
+     * Constructor for generated subclasses.
+     *
+     * @param state the JSONObject containing the data to be exposed
+     * @param graphObjectClass the GraphObject-derived interface that the subclass implements
+     */
+    protected BaseGraphObject(JSONObject state, Class<? extends GraphObject> graphObjectClass) {
+        this.state = state;
+        this.graphObjectClass = graphObjectClass;
+    }
+
+    @Override
+    public <T extends GraphObject> T cast(Class<T> graphObjectClass) {
+        if (graphObjectClass != null && graphObjectClass.isAssignableFrom(this.graphObjectClass)) {
+            @SuppressWarnings("unchecked")
+            T result = (T) this;
+            return result;
+        }
+        return GraphObject.Factory.create(state, graphObjectClass);
+    }
+
+    @Override
+    public Map<String, Object> asMap() {
+        return GraphObject.Factory.createGraphObjectProxyForMap(state);
+    }
+
+    @Override
+    public JSONObject getInnerJSONObject() {
+        return CompactJSONObject.materialize(state);
+    }
+
+    @Override
+    public Object getProperty(String propertyName) {
+        return CompactJSONObject.materialize(state.opt(propertyName));
+    }
+
+    @Override
+    public <T extends GraphObject> T getPropertyAs(String propertyName, Class<T> graphObjectClass) {
+        return GraphObject.Factory.coerceValueToExpectedType(state.opt(propertyName), graphObjectClass, null);
+    }
+
+    @Override
+    public <T extends GraphObject> GraphObjectList<T> getPropertyAsList(String propertyName,
+            Class<T> graphObjectClass) {
+        @SuppressWarnings("unchecked")
+        GraphObjectList<T> result = (GraphObjectList<T>) getCollectionProperty(propertyName, GraphObjectList.class,
+                graphObjectClass);
+        return result;
+    }
+
+    @Override
+    public void setProperty(String propertyName, Object propertyValue) {
+        putProperty(propertyName, GraphObject.Factory.getUnderlyingJSONObject(propertyValue));
+    }
+
+    @Override
+    public void removeProperty(String propertyName) {
+        state.remove(propertyName);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return GraphObject.Factory.hasSameState(state, other);
+    }
+
+    @Override
+    public int hashCode() {
+        return state.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GraphObject{graphObjectClass=%s, state=%s}", graphObjectClass.getSimpleName(), state);
+    }
+
+    // Unlike getInnerJSONObject, leaves a compact state as it is. Static, so as not to clash with the getters of
+    // generated subclasses.
+    static JSONObject getState(BaseGraphObject graphObject) {
+        return graphObject.state;
+    }
+
+    /**
+     * Implements a getter whose return type is not a collection.
+     *
+     * @param key the name of the property
+     * @param expectedType the return type of the getter
+     * @return the value of the property, converted to expectedType
+     */
+    protected final <U> U getTypedProperty(String key, Class<U> expectedType) {
+        return GraphObject.Factory.coerceValueToExpectedType(state.opt(key), expectedType, null);
+    }
+
+    /**
+     * Implements a getter that returns a primitive number. Values are widened the way the runtime does when it
+     * unboxes the result of a proxied getter, and a missing property reads as zero.
+     *
+     * @param key the name of the property
+     * @return the value of the property
+     */
+    protected final Number getNumberProperty(String key) {
+        Object value = state.opt(key);
+        return (value != null) ? (Number) value : 0;
+    }
+
+    /**
+     * Implements a getter that returns an Iterable, Collection, List or GraphObjectList.
+     *
+     * @param key the name of the property
+     * @param collectionType the erased return type of the getter
+     * @param itemType the type of the items in the collection
+     * @return the value of the property, as a GraphObjectList of itemType
+     */
+    protected final Object getCollectionProperty(String key, Class<?> collectionType, Class<?> itemType) {
+        return GraphObject.Factory.coerceValueToExpectedType(state.opt(key), collectionType,
+                GraphObject.Factory.createCollectionType(collectionType, itemType));
+    }
+
+    /**
+     * Implements a setter.
+     *
+     * @param key the name of the property
+     * @param value the value passed to the setter
+     * @param createGraphObjectKey the value of the setter's CreateGraphObject annotation, or null if it has none
+     */
+    protected final void setTypedProperty(String key, Object value, String createGraphObjectKey) {
+        Object graphObjectValue = GraphObject.Factory.createGraphObjectsFromParameters(createGraphObjectKey, value);
+        putProperty(key, GraphObject.Factory.getUnderlyingJSONObject(graphObjectValue));
+    }
+
+    private void putProperty(String key, Object value) {
+        try {
+            state.putOpt(key, value);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
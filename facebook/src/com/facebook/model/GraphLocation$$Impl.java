@@ -0,0 +1,87 @@
+// Generated by com.facebook.model.processor.GraphObjectProcessor. Do not edit.
+package com.facebook.model;
+
+public final class GraphLocation$$Impl extends com.facebook.model.BaseGraphObject
+        implements com.facebook.model.GraphLocation {
+    public static final com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphLocation> CREATOR =
+            new com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphLocation>() {
+                @Override
+                public com.facebook.model.GraphLocation createFromJSONObject(org.json.JSONObject state) {
+                    return new GraphLocation$$Impl(state);
+                }
+            };
+
+    private GraphLocation$$Impl(org.json.JSONObject state) {
+        super(state, com.facebook.model.GraphLocation.class);
+    }
+
+    @Override
+    public java.lang.String getStreet() {
+        return getTypedProperty("street", java.lang.String.class);
+    }
+
+    @Override
+    public void setStreet(java.lang.String value) {
+        setTypedProperty("street", value, null);
+    }
+
+    @Override
+    public java.lang.String getCity() {
+        return getTypedProperty("city", java.lang.String.class);
+    }
+
+    @Override
+    public void setCity(java.lang.String value) {
+        setTypedProperty("city", value, null);
+    }
+
+    @Override
+    public java.lang.String getState() {
+        return getTypedProperty("state", java.lang.String.class);
+    }
+
+    @Override
+    public void setState(java.lang.String value) {
+        setTypedProperty("state", value, null);
+    }
+
+    @Override
+    public java.lang.String getCountry() {
+        return getTypedProperty("country", java.lang.String.class);
+    }
+
+    @Override
+    public void setCountry(java.lang.String value) {
+        setTypedProperty("country", value, null);
+    }
+
+    @Override
+    public java.lang.String getZip() {
+        return getTypedProperty("zip", java.lang.String.class);
+    }
+
+    @Override
+    public void setZip(java.lang.String value) {
+        setTypedProperty("zip", value, null);
+    }
+
+    @Override
+    public double getLatitude() {
+        return getNumberProperty("latitude").doubleValue();
+    }
+
+    @Override
+    public void setLatitude(double value) {
+        setTypedProperty("latitude", value, null);
+    }
+
+    @Override
+    public double getLongitude() {
+        return getNumberProperty("longitude").doubleValue();
+    }
+
+    @Override
+    public void setLongitude(double value) {
+        setTypedProperty("longitude", value, null);
+    }
+}
@@ -0,0 +1,24 @@
+// Generated by com.facebook.model.processor.GraphObjectProcessor. Do not edit.
+package com.facebook.model;
+
+public final class GraphMultiResult$$Impl extends com.facebook.model.BaseGraphObject
+        implements com.facebook.model.GraphMultiResult {
+    public static final com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphMultiResult> CREATOR =
+            new com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphMultiResult>() {
+                @Override
+                public com.facebook.model.GraphMultiResult createFromJSONObject(org.json.JSONObject state) {
+                    return new GraphMultiResult$$Impl(state);
+                }
+            };
+
+    private GraphMultiResult$$Impl(org.json.JSONObject state) {
+        super(state, com.facebook.model.GraphMultiResult.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public com.facebook.model.GraphObjectList<com.facebook.model.GraphObject> getData() {
+        return (com.facebook.model.GraphObjectList<com.facebook.model.GraphObject>) getCollectionProperty("data",
+                com.facebook.model.GraphObjectList.class, com.facebook.model.GraphObject.class);
+    }
+}
@@ -0,0 +1,17 @@
+// Generated by com.facebook.model.processor.GraphObjectProcessor. Do not edit.
+package com.facebook.model;
+
+public final class GraphObject$$Impl extends com.facebook.model.BaseGraphObject
+        implements com.facebook.model.GraphObject {
+    public static final com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphObject> CREATOR =
+            new com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphObject>() {
+                @Override
+                public com.facebook.model.GraphObject createFromJSONObject(org.json.JSONObject state) {
+                    return new GraphObject$$Impl(state);
+                }
+            };
+
+    private GraphObject$$Impl(org.json.JSONObject state) {
+        super(state, com.facebook.model.GraphObject.class);
+    }
+}
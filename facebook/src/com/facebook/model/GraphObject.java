@@ -17,16 +17,19 @@
 package com.facebook.model;
 
 import com.facebook.FacebookGraphObjectException;
+import com.facebook.internal.CompactJSONObject;
 import com.facebook.internal.Utility;
 import com.facebook.internal.Validate;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.*;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * GraphObject is the primary interface used by the Facebook SDK for Android to represent objects in the Facebook
@@ -107,9 +110,24 @@ public interface GraphObject {
      * <p/>
      * This supports get/set properties that use primitive types, JSON types, Date, other GraphObject types, Iterable,
      * Collection, List, and GraphObjectList.
+     * <p/>
+     * If an implementation of a GraphObject-derived interface was generated at compile time (see
+     * {@link BaseGraphObject}), it is used instead of a java.lang.reflect.Proxy.
      */
     final class Factory {
+        private static final String GENERATED_IMPLEMENTATION_SUFFIX = "$$Impl";
+        private static final String GENERATED_CREATOR_FIELD = "CREATOR";
+        // Marks interfaces that have no generated implementation, since a ConcurrentHashMap can't hold null.
+        private static final Object NO_GENERATED_IMPLEMENTATION = new Object();
+
         private static final HashSet<Class<?>> verifiedGraphObjectClasses = new HashSet<Class<?>>();
+        // The Creator of each interface's generated implementation, or NO_GENERATED_IMPLEMENTATION.
+        private static final ConcurrentHashMap<Class<?>, Object> generatedCreators =
+                new ConcurrentHashMap<Class<?>, Object>();
+        private static volatile boolean generatedImplementationsEnabled = true;
+        // How each proxied method is handled, worked out once per Method rather than on every call.
+        private static final ConcurrentHashMap<Method, MethodDescriptor> methodDescriptors =
+                new ConcurrentHashMap<Method, MethodDescriptor>();
         private static final SimpleDateFormat[] dateFormats = new SimpleDateFormat[] {
                 new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US),
                 new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US), new SimpleDateFormat("yyyy-MM-dd", Locale.US), };
@@ -212,9 +230,21 @@ public interface GraphObject {
             return createList(new JSONArray(), graphObjectClass);
         }
 
+        // Lets tests compare the generated implementations against the proxies they replace.
+        static void setGeneratedImplementationsEnabledForTest(boolean enabled) {
+            generatedImplementationsEnabled = enabled;
+        }
+
         private static <T extends GraphObject> T createGraphObjectProxy(Class<T> graphObjectClass, JSONObject state) {
             verifyCanProxyClass(graphObjectClass);
 
+            if (generatedImplementationsEnabled) {
+                BaseGraphObject.Creator<T> creator = getGeneratedCreator(graphObjectClass);
+                if (creator != null) {
+                    return creator.createFromJSONObject(state);
+                }
+            }
+
             Class<?>[] interfaces = new Class<?>[] { graphObjectClass };
             GraphObjectProxy graphObjectProxy = new GraphObjectProxy(state, graphObjectClass);
 
@@ -224,7 +254,46 @@ public interface GraphObject {
             return graphObject;
         }
 
-        private static Map<String, Object> createGraphObjectProxyForMap(JSONObject state) {
+        private static <T extends GraphObject> BaseGraphObject.Creator<T> getGeneratedCreator(
+                Class<T> graphObjectClass) {
+            Object creator = generatedCreators.get(graphObjectClass);
+            if (creator == null) {
+                // Racing threads find the same Creator, so it doesn't matter whose is kept.
+                creator = findGeneratedCreator(graphObjectClass);
+                generatedCreators.put(graphObjectClass, creator);
+            }
+            if (creator == NO_GENERATED_IMPLEMENTATION) {
+                return null;
+            }
+
+            @SuppressWarnings("unchecked")
+            BaseGraphObject.Creator<T> result = (BaseGraphObject.Creator<T>) creator;
+            return result;
+        }
+
+        private static Object findGeneratedCreator(Class<?> graphObjectClass) {
+            try {
+                Class<?> implementationClass = Class.forName(
+                        graphObjectClass.getName() + GENERATED_IMPLEMENTATION_SUFFIX, true,
+                        graphObjectClass.getClassLoader());
+                if (graphObjectClass.isAssignableFrom(implementationClass) &&
+                        BaseGraphObject.class.isAssignableFrom(implementationClass)) {
+                    Object creator = implementationClass.getField(GENERATED_CREATOR_FIELD).get(null);
+                    if (creator instanceof BaseGraphObject.Creator) {
+                        return creator;
+                    }
+                }
+            } catch (ClassNotFoundException e) {
+                // No implementation was generated for this interface.
+            } catch (NoSuchFieldException e) {
+                // Not a generated implementation; fall back to a proxy.
+            } catch (IllegalAccessException e) {
+                // Not a generated implementation; fall back to a proxy.
+            }
+            return NO_GENERATED_IMPLEMENTATION;
+        }
+
+        static Map<String, Object> createGraphObjectProxyForMap(JSONObject state) {
             Class<?>[] interfaces = new Class<?>[]{Map.class};
             GraphObjectProxy graphObjectProxy = new GraphObjectProxy(state, Map.class);
 
@@ -290,9 +359,26 @@ public interface GraphObject {
                 throw new FacebookGraphObjectException("Factory can't proxy method: " + method.toString());
             }
 
+            for (Method method : methods) {
+                getMethodDescriptor(method);
+            }
             recordClassHasBeenVerified(graphObjectClass);
         }
 
+        private static MethodDescriptor getMethodDescriptor(Method method) {
+            MethodDescriptor descriptor = methodDescriptors.get(method);
+            if (descriptor == null) {
+                // Racing threads compute equal descriptors, so it doesn't matter whose is kept.
+                descriptor = new MethodDescriptor(method);
+                methodDescriptors.put(method, descriptor);
+            }
+            return descriptor;
+        }
+
+        static boolean hasMethodDescriptor(Method method) {
+            return methodDescriptors.containsKey(method);
+        }
+
         // If expectedType is a generic type, expectedTypeAsParameterizedType must be provided in order to determine
         // generic parameter types.
         static <U> U coerceValueToExpectedType(Object value, Class<U> expectedType,
@@ -317,8 +403,9 @@ public interface GraphObject {
 
             Class<?> valueType = value.getClass();
             if (expectedType.isAssignableFrom(valueType)) {
+                // A raw JSON value is leaving the GraphObject, so it can't stay compact.
                 @SuppressWarnings("unchecked")
-                U result = (U) value;
+                U result = (U) CompactJSONObject.materialize(value);
                 return result;
             }
 
@@ -406,7 +493,65 @@ public interface GraphObject {
             return string.toLowerCase(Locale.US);
         }
 
-        private static Object getUnderlyingJSONObject(Object obj) {
+        // Describes an Iterable, Collection, List or GraphObjectList of itemType to coerceValueToExpectedType.
+        static ParameterizedType createCollectionType(final Class<?> collectionType, final Class<?> itemType) {
+            return new ParameterizedType() {
+                @Override
+                public Type[] getActualTypeArguments() {
+                    return new Type[]{ itemType };
+                }
+
+                @Override
+                public Type getOwnerType() {
+                    return null;
+                }
+
+                @Override
+                public Type getRawType() {
+                    return collectionType;
+                }
+            };
+        }
+
+        // Whether other is a GraphObject, proxied or generated, that wraps the given state.
+        static boolean hasSameState(Object state, Object other) {
+            if (other instanceof BaseGraphObject) {
+                return state.equals(BaseGraphObject.getState((BaseGraphObject) other));
+            }
+            if (other != null && Proxy.isProxyClass(other.getClass())) {
+                InvocationHandler handler = Proxy.getInvocationHandler(other);
+                if (handler instanceof GraphObjectProxy) {
+                    return state.equals(((GraphObjectProxy) handler).state);
+                }
+            }
+            return false;
+        }
+
+        static Object createGraphObjectsFromParameters(String createGraphObjectKey, Object value) {
+            if (!Utility.isNullOrEmpty(createGraphObjectKey)) {
+                if (List.class.isAssignableFrom(value.getClass())) {
+                    GraphObjectList<GraphObject> graphObjects = GraphObject.Factory.createList(GraphObject.class);
+                    @SuppressWarnings("unchecked")
+                    List<Object> values = (List<Object>)value;
+                    for (Object obj : values) {
+                        GraphObject graphObject = GraphObject.Factory.create();
+                        graphObject.setProperty(createGraphObjectKey, obj);
+                        graphObjects.add(graphObject);
+                    }
+
+                    value = graphObjects;
+                } else {
+                    GraphObject graphObject = GraphObject.Factory.create();
+                    graphObject.setProperty(createGraphObjectKey, value);
+
+                    value = graphObject;
+                }
+            }
+
+            return value;
+        }
+
+        static Object getUnderlyingJSONObject(Object obj) {
             if (obj == null) {
                 return null;
             }
@@ -453,18 +598,7 @@ public interface GraphObject {
             protected final Object proxyObjectMethods(Object proxy, Method method, Object[] args) throws Throwable {
                 String methodName = method.getName();
                 if (methodName.equals(EQUALS_METHOD)) {
-                    Object other = args[0];
-
-                    if (other == null) {
-                        return false;
-                    }
-
-                    InvocationHandler handler = Proxy.getInvocationHandler(other);
-                    if (!(handler instanceof GraphObjectProxy)) {
-                        return false;
-                    }
-                    GraphObjectProxy otherProxy = (GraphObjectProxy) handler;
-                    return this.state.equals(otherProxy.state);
+                    return hasSameState(this.state, args[0]);
                 } else if (methodName.equals(TOSTRING_METHOD)) {
                     return toString();
                 }
@@ -475,28 +609,113 @@ public interface GraphObject {
 
         }
 
-        private final static class GraphObjectProxy extends ProxyBase<JSONObject> {
-            private static final String CLEAR_METHOD = "clear";
-            private static final String CONTAINSKEY_METHOD = "containsKey";
-            private static final String CONTAINSVALUE_METHOD = "containsValue";
-            private static final String ENTRYSET_METHOD = "entrySet";
-            private static final String GET_METHOD = "get";
-            private static final String ISEMPTY_METHOD = "isEmpty";
-            private static final String KEYSET_METHOD = "keySet";
-            private static final String PUT_METHOD = "put";
-            private static final String PUTALL_METHOD = "putAll";
-            private static final String REMOVE_METHOD = "remove";
-            private static final String SIZE_METHOD = "size";
-            private static final String VALUES_METHOD = "values";
-            private static final String CAST_METHOD = "cast";
-            private static final String CASTTOMAP_METHOD = "asMap";
-            private static final String GETPROPERTY_METHOD = "getProperty";
-            private static final String GETPROPERTYAS_METHOD = "getPropertyAs";
-            private static final String GETPROPERTYASLIST_METHOD = "getPropertyAsList";
-            private static final String SETPROPERTY_METHOD = "setProperty";
-            private static final String REMOVEPROPERTY_METHOD = "removeProperty";
-            private static final String GETINNERJSONOBJECT_METHOD = "getInnerJSONObject";
+        private enum MethodKind {
+            OBJECT_METHOD,
+            MAP_CLEAR,
+            MAP_CONTAINS_KEY,
+            MAP_CONTAINS_VALUE,
+            MAP_ENTRY_SET,
+            MAP_GET,
+            MAP_IS_EMPTY,
+            MAP_KEY_SET,
+            MAP_PUT,
+            MAP_PUT_ALL,
+            MAP_REMOVE,
+            MAP_SIZE,
+            MAP_VALUES,
+            CAST,
+            AS_MAP,
+            GET_PROPERTY,
+            GET_PROPERTY_AS,
+            GET_PROPERTY_AS_LIST,
+            SET_PROPERTY,
+            REMOVE_PROPERTY,
+            GET_INNER_JSON_OBJECT,
+            GETTER,
+            SETTER,
+            UNEXPECTED
+        }
+
+        private static final class MethodDescriptor {
+            private static final Map<String, MethodKind> mapMethodKinds = new HashMap<String, MethodKind>();
+            private static final Map<String, MethodKind> graphObjectMethodKinds = new HashMap<String, MethodKind>();
+
+            static {
+                mapMethodKinds.put("clear", MethodKind.MAP_CLEAR);
+                mapMethodKinds.put("containsKey", MethodKind.MAP_CONTAINS_KEY);
+                mapMethodKinds.put("containsValue", MethodKind.MAP_CONTAINS_VALUE);
+                mapMethodKinds.put("entrySet", MethodKind.MAP_ENTRY_SET);
+                mapMethodKinds.put("get", MethodKind.MAP_GET);
+                mapMethodKinds.put("isEmpty", MethodKind.MAP_IS_EMPTY);
+                mapMethodKinds.put("keySet", MethodKind.MAP_KEY_SET);
+                mapMethodKinds.put("put", MethodKind.MAP_PUT);
+                mapMethodKinds.put("putAll", MethodKind.MAP_PUT_ALL);
+                mapMethodKinds.put("remove", MethodKind.MAP_REMOVE);
+                mapMethodKinds.put("size", MethodKind.MAP_SIZE);
+                mapMethodKinds.put("values", MethodKind.MAP_VALUES);
+
+                graphObjectMethodKinds.put("cast", MethodKind.CAST);
+                graphObjectMethodKinds.put("asMap", MethodKind.AS_MAP);
+                graphObjectMethodKinds.put("getProperty", MethodKind.GET_PROPERTY);
+                graphObjectMethodKinds.put("getPropertyAs", MethodKind.GET_PROPERTY_AS);
+                graphObjectMethodKinds.put("getPropertyAsList", MethodKind.GET_PROPERTY_AS_LIST);
+                graphObjectMethodKinds.put("setProperty", MethodKind.SET_PROPERTY);
+                graphObjectMethodKinds.put("removeProperty", MethodKind.REMOVE_PROPERTY);
+                graphObjectMethodKinds.put("getInnerJSONObject", MethodKind.GET_INNER_JSON_OBJECT);
+            }
+
+            final MethodKind kind;
+            // For getters and setters, the property they access and how values are converted.
+            final String key;
+            final Class<?> expectedType;
+            final ParameterizedType parameterizedType;
+            final String createGraphObjectKey;
+
+            MethodDescriptor(Method method) {
+                Class<?> declaringClass = method.getDeclaringClass();
+                int parameterCount = method.getParameterTypes().length;
+
+                MethodKind kind = null;
+                if (declaringClass == Object.class) {
+                    kind = MethodKind.OBJECT_METHOD;
+                } else if (declaringClass == Map.class) {
+                    kind = mapMethodKinds.get(method.getName());
+                } else if (declaringClass == GraphObject.class) {
+                    kind = graphObjectMethodKinds.get(method.getName());
+                } else if (GraphObject.class.isAssignableFrom(declaringClass)) {
+                    if (parameterCount == 0) {
+                        kind = MethodKind.GETTER;
+                    } else if (parameterCount == 1) {
+                        kind = MethodKind.SETTER;
+                    }
+                }
+                this.kind = (kind != null) ? kind : MethodKind.UNEXPECTED;
+
+                if (this.kind == MethodKind.GETTER || this.kind == MethodKind.SETTER) {
+                    PropertyName propertyNameOverride = method.getAnnotation(PropertyName.class);
+                    this.key = propertyNameOverride != null ? propertyNameOverride.value() :
+                            convertCamelCaseToLowercaseWithUnderscores(method.getName().substring(3));
+                } else {
+                    this.key = null;
+                }
+
+                if (this.kind == MethodKind.GETTER) {
+                    this.expectedType = method.getReturnType();
+                    Type genericReturnType = method.getGenericReturnType();
+                    this.parameterizedType = (genericReturnType instanceof ParameterizedType) ?
+                            (ParameterizedType) genericReturnType : null;
+                } else {
+                    this.expectedType = null;
+                    this.parameterizedType = null;
+                }
+
+                CreateGraphObject createGraphObject = (this.kind == MethodKind.SETTER) ?
+                        method.getAnnotation(CreateGraphObject.class) : null;
+                this.createGraphObjectKey = (createGraphObject != null) ? createGraphObject.value() : null;
+            }
+        }
 
+        private final static class GraphObjectProxy extends ProxyBase<JSONObject> {
             private final Class<?> graphObjectClass;
 
             public GraphObjectProxy(JSONObject state, Class<?> graphObjectClass) {
@@ -511,183 +730,99 @@ public interface GraphObject {
 
             @Override
             public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-                Class<?> declaringClass = method.getDeclaringClass();
-
-                if (declaringClass == Object.class) {
-                    return proxyObjectMethods(proxy, method, args);
-                } else if (declaringClass == Map.class) {
-                    return proxyMapMethods(method, args);
-                } else if (declaringClass == GraphObject.class) {
-                    return proxyGraphObjectMethods(proxy, method, args);
-                } else if (GraphObject.class.isAssignableFrom(declaringClass)) {
-                    return proxyGraphObjectGettersAndSetters(method, args);
-                }
-
-                return throwUnexpectedMethodSignature(method);
-            }
-
-            private final Object proxyMapMethods(Method method, Object[] args) {
-                String methodName = method.getName();
-                if (methodName.equals(CLEAR_METHOD)) {
-                    JsonUtil.jsonObjectClear(this.state);
-                    return null;
-                } else if (methodName.equals(CONTAINSKEY_METHOD)) {
-                    return this.state.has((String) args[0]);
-                } else if (methodName.equals(CONTAINSVALUE_METHOD)) {
-                    return JsonUtil.jsonObjectContainsValue(this.state, args[0]);
-                } else if (methodName.equals(ENTRYSET_METHOD)) {
-                    return JsonUtil.jsonObjectEntrySet(this.state);
-                } else if (methodName.equals(GET_METHOD)) {
-                    return this.state.opt((String) args[0]);
-                } else if (methodName.equals(ISEMPTY_METHOD)) {
-                    return this.state.length() == 0;
-                } else if (methodName.equals(KEYSET_METHOD)) {
-                    return JsonUtil.jsonObjectKeySet(this.state);
-                } else if (methodName.equals(PUT_METHOD)) {
-                    return setJSONProperty(args);
-                } else if (methodName.equals(PUTALL_METHOD)) {
-                    Map<String, Object> map = null;
-                    if (args[0] instanceof Map<?, ?>) {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> castMap = (Map<String, Object>) args[0];
-                        map = castMap;
-                    } else if (args[0] instanceof GraphObject) {
-                        map = ((GraphObject) args[0]).asMap();
-                    } else {
+                MethodDescriptor descriptor = getMethodDescriptor(method);
+                switch (descriptor.kind) {
+                    case OBJECT_METHOD:
+                        return proxyObjectMethods(proxy, method, args);
+                    case MAP_CLEAR:
+                        JsonUtil.jsonObjectClear(this.state);
                         return null;
-                    }
-                    JsonUtil.jsonObjectPutAll(this.state, map);
-                    return null;
-                } else if (methodName.equals(REMOVE_METHOD)) {
-                    this.state.remove((String) args[0]);
-                    return null;
-                } else if (methodName.equals(SIZE_METHOD)) {
-                    return this.state.length();
-                } else if (methodName.equals(VALUES_METHOD)) {
-                    return JsonUtil.jsonObjectValues(this.state);
+                    case MAP_CONTAINS_KEY:
+                        return this.state.has((String) args[0]);
+                    case MAP_CONTAINS_VALUE:
+                        return JsonUtil.jsonObjectContainsValue(this.state, args[0]);
+                    case MAP_ENTRY_SET:
+                        return JsonUtil.jsonObjectEntrySet(this.state);
+                    case MAP_GET:
+                    case GET_PROPERTY:
+                        return CompactJSONObject.materialize(this.state.opt((String) args[0]));
+                    case MAP_IS_EMPTY:
+                        return this.state.length() == 0;
+                    case MAP_KEY_SET:
+                        return JsonUtil.jsonObjectKeySet(this.state);
+                    case MAP_PUT:
+                    case SET_PROPERTY:
+                        return setJSONProperty(args);
+                    case MAP_PUT_ALL:
+                        return putAll(args[0]);
+                    case MAP_REMOVE:
+                    case REMOVE_PROPERTY:
+                        this.state.remove((String) args[0]);
+                        return null;
+                    case MAP_SIZE:
+                        return this.state.length();
+                    case MAP_VALUES:
+                        return JsonUtil.jsonObjectValues(this.state);
+                    case CAST:
+                        return cast(proxy, args[0]);
+                    case GET_INNER_JSON_OBJECT:
+                        InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+                        GraphObjectProxy otherProxy = (GraphObjectProxy) handler;
+                        return CompactJSONObject.materialize(otherProxy.state);
+                    case AS_MAP:
+                        return Factory.createGraphObjectProxyForMap(this.state);
+                    case GET_PROPERTY_AS:
+                        return coerceValueToExpectedType(state.opt((String) args[0]), (Class<?>) args[1], null);
+                    case GET_PROPERTY_AS_LIST:
+                        return getPropertyAsList((String) args[0], (Class<?>) args[1]);
+                    case GETTER:
+                        // ASSUMPTION: The GraphObject-derived class has been verified
+                        return coerceValueToExpectedType(this.state.opt(descriptor.key), descriptor.expectedType,
+                                descriptor.parameterizedType);
+                    case SETTER:
+                        // ASSUMPTION: The GraphObject-derived class has been verified
+                        Object value = createGraphObjectsFromParameters(descriptor.createGraphObjectKey, args[0]);
+
+                        // If this is a wrapped object, store the underlying JSONObject instead, in order to
+                        // serialize correctly.
+                        value = getUnderlyingJSONObject(value);
+                        this.state.putOpt(descriptor.key, value);
+                        return null;
+                    default:
+                        return throwUnexpectedMethodSignature(method);
                 }
-
-                return throwUnexpectedMethodSignature(method);
             }
 
-            private final Object proxyGraphObjectMethods(Object proxy, Method method, Object[] args) {
-                String methodName = method.getName();
-                if (methodName.equals(CAST_METHOD)) {
+            private Object putAll(Object source) {
+                Map<String, Object> map = null;
+                if (source instanceof Map<?, ?>) {
                     @SuppressWarnings("unchecked")
-                    Class<? extends GraphObject> graphObjectClass = (Class<? extends GraphObject>) args[0];
-
-                    if (graphObjectClass != null &&
-                            graphObjectClass.isAssignableFrom(this.graphObjectClass)) {
-                        return proxy;
-                    }
-                    return Factory.createGraphObjectProxy(graphObjectClass, this.state);
-                } else if (methodName.equals(GETINNERJSONOBJECT_METHOD)) {
-                    InvocationHandler handler = Proxy.getInvocationHandler(proxy);
-                    GraphObjectProxy otherProxy = (GraphObjectProxy) handler;
-                    return otherProxy.state;
-                } else if (methodName.equals(CASTTOMAP_METHOD)) {
-                    return Factory.createGraphObjectProxyForMap(this.state);
-                } else if (methodName.equals(GETPROPERTY_METHOD)) {
-                    return state.opt((String) args[0]);
-                } else if (methodName.equals(GETPROPERTYAS_METHOD)) {
-                    Object value = state.opt((String) args[0]);
-                    Class<?> expectedType = (Class<?>) args[1];
-
-                    return coerceValueToExpectedType(value, expectedType, null);
-                } else if (methodName.equals(GETPROPERTYASLIST_METHOD)) {
-                    Object value = state.opt((String) args[0]);
-                    final Class<?> expectedType = (Class<?>) args[1];
-
-                    ParameterizedType parameterizedType = new ParameterizedType() {
-                        @Override
-                        public Type[] getActualTypeArguments() {
-                            return new Type[]{ expectedType };
-                        }
-
-                        @Override
-                        public Type getOwnerType() {
-                            return null;
-                        }
-
-                        @Override
-                        public Type getRawType() {
-                            return GraphObjectList.class;
-                        }
-                    };
-                    return coerceValueToExpectedType(value, GraphObjectList.class, parameterizedType);
-                } else if (methodName.equals(SETPROPERTY_METHOD)) {
-                    return setJSONProperty(args);
-                } else if (methodName.equals(REMOVEPROPERTY_METHOD)) {
-                    this.state.remove((String) args[0]);
+                    Map<String, Object> castMap = (Map<String, Object>) source;
+                    map = castMap;
+                } else if (source instanceof GraphObject) {
+                    map = ((GraphObject) source).asMap();
+                } else {
                     return null;
                 }
-
-                return throwUnexpectedMethodSignature(method);
+                JsonUtil.jsonObjectPutAll(this.state, map);
+                return null;
             }
 
-            private Object createGraphObjectsFromParameters(CreateGraphObject createGraphObject, Object value) {
-                if (createGraphObject != null &&
-                        !Utility.isNullOrEmpty(createGraphObject.value())) {
-                    String propertyName = createGraphObject.value();
-                    if (List.class.isAssignableFrom(value.getClass())) {
-                        GraphObjectList<GraphObject> graphObjects = GraphObject.Factory.createList(GraphObject.class);
-                        @SuppressWarnings("unchecked")
-                        List<Object> values = (List<Object>)value;
-                        for (Object obj : values) {
-                            GraphObject graphObject = GraphObject.Factory.create();
-                            graphObject.setProperty(propertyName, obj);
-                            graphObjects.add(graphObject);
-                        }
-
-                        value = graphObjects;
-                    } else {
-                        GraphObject graphObject = GraphObject.Factory.create();
-                        graphObject.setProperty(propertyName, value);
+            private Object cast(Object proxy, Object argument) {
+                @SuppressWarnings("unchecked")
+                Class<? extends GraphObject> graphObjectClass = (Class<? extends GraphObject>) argument;
 
-                        value = graphObject;
-                    }
+                if (graphObjectClass != null &&
+                        graphObjectClass.isAssignableFrom(this.graphObjectClass)) {
+                    return proxy;
                 }
-
-                return value;
+                return Factory.createGraphObjectProxy(graphObjectClass, this.state);
             }
 
-            private final Object proxyGraphObjectGettersAndSetters(Method method, Object[] args) throws JSONException {
-                String methodName = method.getName();
-                int parameterCount = method.getParameterTypes().length;
-                PropertyName propertyNameOverride = method.getAnnotation(PropertyName.class);
-
-                String key = propertyNameOverride != null ? propertyNameOverride.value() :
-                        convertCamelCaseToLowercaseWithUnderscores(methodName.substring(3));
-
-                // If it's a get or a set on a GraphObject-derived class, we can handle it.
-                if (parameterCount == 0) {
-                    // Has to be a getter. ASSUMPTION: The GraphObject-derived class has been verified
-                    Object value = this.state.opt(key);
-
-                    Class<?> expectedType = method.getReturnType();
-
-                    Type genericReturnType = method.getGenericReturnType();
-                    ParameterizedType parameterizedReturnType = null;
-                    if (genericReturnType instanceof ParameterizedType) {
-                        parameterizedReturnType = (ParameterizedType) genericReturnType;
-                    }
-
-                    value = coerceValueToExpectedType(value, expectedType, parameterizedReturnType);
-
-                    return value;
-                } else if (parameterCount == 1) {
-                    // Has to be a setter. ASSUMPTION: The GraphObject-derived class has been verified
-                    CreateGraphObject createGraphObjectAnnotation = method.getAnnotation(CreateGraphObject.class);
-                    Object value = createGraphObjectsFromParameters(createGraphObjectAnnotation, args[0]);
-
-                    // If this is a wrapped object, store the underlying JSONObject instead, in order to serialize
-                    // correctly.
-                    value = getUnderlyingJSONObject(value);
-                    this.state.putOpt(key, value);
-                    return null;
-                }
-
-                return throwUnexpectedMethodSignature(method);
+            private Object getPropertyAsList(String propertyName, Class<?> expectedType) {
+                Object value = state.opt(propertyName);
+                return coerceValueToExpectedType(value, GraphObjectList.class,
+                        createCollectionType(GraphObjectList.class, expectedType));
             }
 
             private Object setJSONProperty(Object[] args) {
@@ -706,6 +841,12 @@ public interface GraphObject {
         private final static class GraphObjectListImpl<T> extends AbstractList<T> implements GraphObjectList<T> {
             private final JSONArray state;
             private final Class<?> itemType;
+            // The GraphObject last returned for each element, so that reading an element again, as adapters do on
+            // every pass, gives the same object rather than a new wrapper. They are held weakly, since a list of
+            // thousands of friends may only have a screenful in use. Threads racing to fill or grow this may each
+            // create a view, and it doesn't matter whose is kept.
+            private volatile ElementView[] views;
+            private volatile GraphObjectListImpl<?> lastCastList;
 
             public GraphObjectListImpl(JSONArray state, Class<?> itemType) {
                 Validate.notNull(state, "state");
@@ -717,7 +858,8 @@ public interface GraphObject {
 
             @Override
             public String toString() {
-                return String.format("GraphObjectList{itemType=%s, state=%s}", itemType.getSimpleName(), state);
+                return String.format("GraphObjectList{itemType=%s, state=%s}", itemType.getSimpleName(),
+                        CompactJSONObject.materialize(state));
             }
 
             @Override
@@ -766,12 +908,28 @@ public interface GraphObject {
                 checkIndex(location);
 
                 Object value = state.opt(location);
+                if (!(value instanceof JSONObject) || !GraphObject.class.isAssignableFrom(itemType)) {
+                    return (T) coerceValueToExpectedType(value, itemType, null);
+                }
 
-                // Class<?> expectedType = method.getReturnType();
-                // Type genericType = method.getGenericReturnType();
-                T result = (T) coerceValueToExpectedType(value, itemType, null);
+                ElementView[] views = this.views;
+                if (views == null || views.length <= location) {
+                    ElementView[] grown = new ElementView[state.length()];
+                    if (views != null) {
+                        System.arraycopy(views, 0, grown, 0, views.length);
+                    }
+                    views = grown;
+                    this.views = views;
+                }
 
-                return result;
+                // The element may have been replaced since its view was made.
+                ElementView view = views[location];
+                Object result = (view != null && view.state == value) ? view.get() : null;
+                if (result == null) {
+                    result = coerceValueToExpectedType(value, itemType, null);
+                    views[location] = new ElementView(result, value);
+                }
+                return (T) result;
             }
 
             @Override
@@ -788,7 +946,14 @@ public interface GraphObject {
                         return result;
                     }
 
-                    return createList(state, graphObjectClass);
+                    GraphObjectListImpl<?> castList = lastCastList;
+                    if (castList == null || castList.itemType != graphObjectClass) {
+                        castList = new GraphObjectListImpl<U>(state, graphObjectClass);
+                        lastCastList = castList;
+                    }
+                    @SuppressWarnings("unchecked")
+                    GraphObjectList<U> result = (GraphObjectList<U>) castList;
+                    return result;
                 } else {
                     throw new FacebookGraphObjectException("Can't cast GraphObjectCollection of non-GraphObject type "
                             + itemType);
@@ -797,7 +962,7 @@ public interface GraphObject {
 
             @Override
             public final JSONArray getInnerJSONArray() {
-                return state;
+                return CompactJSONObject.materialize(state);
             }
 
             @Override
@@ -834,6 +999,16 @@ public interface GraphObject {
                     throw new IllegalArgumentException(e);
                 }
             }
+
+            private static final class ElementView extends WeakReference<Object> {
+                // The element the view was made for, which the list's JSONArray holds anyway.
+                final Object state;
+
+                ElementView(Object view, Object state) {
+                    super(view);
+                    this.state = state;
+                }
+            }
         }
     }
 }
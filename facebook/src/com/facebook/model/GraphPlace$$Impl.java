@@ -0,0 +1,57 @@
+// Generated by com.facebook.model.processor.GraphObjectProcessor. Do not edit.
+package com.facebook.model;
+
+public final class GraphPlace$$Impl extends com.facebook.model.BaseGraphObject
+        implements com.facebook.model.GraphPlace {
+    public static final com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphPlace> CREATOR =
+            new com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphPlace>() {
+                @Override
+                public com.facebook.model.GraphPlace createFromJSONObject(org.json.JSONObject state) {
+                    return new GraphPlace$$Impl(state);
+                }
+            };
+
+    private GraphPlace$$Impl(org.json.JSONObject state) {
+        super(state, com.facebook.model.GraphPlace.class);
+    }
+
+    @Override
+    public java.lang.String getId() {
+        return getTypedProperty("id", java.lang.String.class);
+    }
+
+    @Override
+    public void setId(java.lang.String value) {
+        setTypedProperty("id", value, null);
+    }
+
+    @Override
+    public java.lang.String getName() {
+        return getTypedProperty("name", java.lang.String.class);
+    }
+
+    @Override
+    public void setName(java.lang.String value) {
+        setTypedProperty("name", value, null);
+    }
+
+    @Override
+    public java.lang.String getCategory() {
+        return getTypedProperty("category", java.lang.String.class);
+    }
+
+    @Override
+    public void setCategory(java.lang.String value) {
+        setTypedProperty("category", value, null);
+    }
+
+    @Override
+    public com.facebook.model.GraphLocation getLocation() {
+        return getTypedProperty("location", com.facebook.model.GraphLocation.class);
+    }
+
+    @Override
+    public void setLocation(com.facebook.model.GraphLocation value) {
+        setTypedProperty("location", value, null);
+    }
+}
@@ -0,0 +1,107 @@
+// Generated by com.facebook.model.processor.GraphObjectProcessor. Do not edit.
+package com.facebook.model;
+
+public final class GraphUser$$Impl extends com.facebook.model.BaseGraphObject
+        implements com.facebook.model.GraphUser {
+    public static final com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphUser> CREATOR =
+            new com.facebook.model.BaseGraphObject.Creator<com.facebook.model.GraphUser>() {
+                @Override
+                public com.facebook.model.GraphUser createFromJSONObject(org.json.JSONObject state) {
+                    return new GraphUser$$Impl(state);
+                }
+            };
+
+    private GraphUser$$Impl(org.json.JSONObject state) {
+        super(state, com.facebook.model.GraphUser.class);
+    }
+
+    @Override
+    public java.lang.String getId() {
+        return getTypedProperty("id", java.lang.String.class);
+    }
+
+    @Override
+    public void setId(java.lang.String value) {
+        setTypedProperty("id", value, null);
+    }
+
+    @Override
+    public java.lang.String getName() {
+        return getTypedProperty("name", java.lang.String.class);
+    }
+
+    @Override
+    public void setName(java.lang.String value) {
+        setTypedProperty("name", value, null);
+    }
+
+    @Override
+    public java.lang.String getFirstName() {
+        return getTypedProperty("first_name", java.lang.String.class);
+    }
+
+    @Override
+    public void setFirstName(java.lang.String value) {
+        setTypedProperty("first_name", value, null);
+    }
+
+    @Override
+    public java.lang.String getMiddleName() {
+        return getTypedProperty("middle_name", java.lang.String.class);
+    }
+
+    @Override
+    public void setMiddleName(java.lang.String value) {
+        setTypedProperty("middle_name", value, null);
+    }
+
+    @Override
+    public java.lang.String getLastName() {
+        return getTypedProperty("last_name", java.lang.String.class);
+    }
+
+    @Override
+    public void setLastName(java.lang.String value) {
+        setTypedProperty("last_name", value, null);
+    }
+
+    @Override
+    public java.lang.String getLink() {
+        return getTypedProperty("link", java.lang.String.class);
+    }
+
+    @Override
+    public void setLink(java.lang.String value) {
+        setTypedProperty("link", value, null);
+    }
+
+    @Override
+    public java.lang.String getUsername() {
+        return getTypedProperty("username", java.lang.String.class);
+    }
+
+    @Override
+    public void setUsername(java.lang.String value) {
+        setTypedProperty("username", value, null);
+    }
+
+    @Override
+    public java.lang.String getBirthday() {
+        return getTypedProperty("birthday", java.lang.String.class);
+    }
+
+    @Override
+    public void setBirthday(java.lang.String value) {
+        setTypedProperty("birthday", value, null);
+    }
+
+    @Override
+    public com.facebook.model.GraphPlace getLocation() {
+        return getTypedProperty("location", com.facebook.model.GraphPlace.class);
+    }
+
+    @Override
+    public void setLocation(com.facebook.model.GraphPlace value) {
+        setTypedProperty("location", value, null);
+    }
+}
@@ -17,6 +17,7 @@
 package com.facebook.model;
 
 import android.annotation.SuppressLint;
+import com.facebook.internal.CompactJSONObject;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -78,7 +79,7 @@ class JsonUtil {
         Iterator<String> keys = (Iterator<String>) jsonObject.keys();
         while (keys.hasNext()) {
             String key = keys.next();
-            Object value = jsonObject.opt(key);
+            Object value = CompactJSONObject.materialize(jsonObject.opt(key));
             result.add(new JSONObjectEntry(key, value));
         }
 
@@ -114,7 +115,7 @@ class JsonUtil {
         @SuppressWarnings("unchecked")
         Iterator<String> keys = (Iterator<String>) jsonObject.keys();
         while (keys.hasNext()) {
-            result.add(jsonObject.opt(keys.next()));
+            result.add(CompactJSONObject.materialize(jsonObject.opt(keys.next())));
         }
 
         return result;
@@ -0,0 +1,210 @@
+// Generated by com.facebook.model.processor.GraphObjectProcessor. Do not edit.
+package com.facebook.model;
+
+public final class OpenGraphObject$$Impl extends com.facebook.model.BaseGraphObject
+        implements com.facebook.model.OpenGraphObject {
+    public static final com.facebook.model.BaseGraphObject.Creator<com.facebook.model.OpenGraphObject> CREATOR =
+            new com.facebook.model.BaseGraphObject.Creator<com.facebook.model.OpenGraphObject>() {
+                @Override
+                public com.facebook.model.OpenGraphObject createFromJSONObject(org.json.JSONObject state) {
+                    return new OpenGraphObject$$Impl(state);
+                }
+            };
+
+    private OpenGraphObject$$Impl(org.json.JSONObject state) {
+        super(state, com.facebook.model.OpenGraphObject.class);
+    }
+
+    @Override
+    public java.lang.String getId() {
+        return getTypedProperty("id", java.lang.String.class);
+    }
+
+    @Override
+    public void setId(java.lang.String value) {
+        setTypedProperty("id", value, null);
+    }
+
+    @Override
+    public java.lang.String getType() {
+        return getTypedProperty("type", java.lang.String.class);
+    }
+
+    @Override
+    public void setType(java.lang.String value) {
+        setTypedProperty("type", value, null);
+    }
+
+    @Override
+    public java.lang.String getUrl() {
+        return getTypedProperty("url", java.lang.String.class);
+    }
+
+    @Override
+    public void setUrl(java.lang.String value) {
+        setTypedProperty("url", value, null);
+    }
+
+    @Override
+    public java.lang.String getTitle() {
+        return getTypedProperty("title", java.lang.String.class);
+    }
+
+    @Override
+    public void setTitle(java.lang.String value) {
+        setTypedProperty("title", value, null);
+    }
+
+    @Override
+    public java.lang.String getDescription() {
+        return getTypedProperty("description", java.lang.String.class);
+    }
+
+    @Override
+    public void setDescription(java.lang.String value) {
+        setTypedProperty("description", value, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public com.facebook.model.GraphObjectList<com.facebook.model.GraphObject> getImage() {
+        return (com.facebook.model.GraphObjectList<com.facebook.model.GraphObject>) getCollectionProperty("image",
+                com.facebook.model.GraphObjectList.class, com.facebook.model.GraphObject.class);
+    }
+
+    @Override
+    public void setImage(com.facebook.model.GraphObjectList<com.facebook.model.GraphObject> value) {
+        setTypedProperty("image", value, null);
+    }
+
+    @Override
+    public void setImageUrls(java.util.List<java.lang.String> value) {
+        setTypedProperty("image", value, "url");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public com.facebook.model.GraphObjectList<com.facebook.model.GraphObject> getVideo() {
+        return (com.facebook.model.GraphObjectList<com.facebook.model.GraphObject>) getCollectionProperty("video",
+                com.facebook.model.GraphObjectList.class, com.facebook.model.GraphObject.class);
+    }
+
+    @Override
+    public void setVideo(com.facebook.model.GraphObjectList<com.facebook.model.GraphObject> value) {
+        setTypedProperty("video", value, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public com.facebook.model.GraphObjectList<com.facebook.model.GraphObject> getAudio() {
+        return (com.facebook.model.GraphObjectList<com.facebook.model.GraphObject>) getCollectionProperty("audio",
+                com.facebook.model.GraphObjectList.class, com.facebook.model.GraphObject.class);
+    }
+
+    @Override
+    public void setAudio(com.facebook.model.GraphObjectList<com.facebook.model.GraphObject> value) {
+        setTypedProperty("audio", value, null);
+    }
+
+    @Override
+    public java.lang.String getDeterminer() {
+        return getTypedProperty("determiner", java.lang.String.class);
+    }
+
+    @Override
+    public void setDeterminer(java.lang.String value) {
+        setTypedProperty("determiner", value, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public java.util.List<java.lang.String> getSeeAlso() {
+        return (java.util.List<java.lang.String>) getCollectionProperty("see_also",
+                java.util.List.class, java.lang.String.class);
+    }
+
+    @Override
+    public void setSeeAlso(java.util.List<java.lang.String> value) {
+        setTypedProperty("see_also", value, null);
+    }
+
+    @Override
+    public java.lang.String getSiteName() {
+        return getTypedProperty("site_name", java.lang.String.class);
+    }
+
+    @Override
+    public void setSiteName(java.lang.String value) {
+        setTypedProperty("site_name", value, null);
+    }
+
+    @Override
+    public java.util.Date getCreatedTime() {
+        return getTypedProperty("created_time", java.util.Date.class);
+    }
+
+    @Override
+    public void setCreatedTime(java.util.Date value) {
+        setTypedProperty("created_time", value, null);
+    }
+
+    @Override
+    public java.util.Date getUpdatedTime() {
+        return getTypedProperty("updated_time", java.util.Date.class);
+    }
+
+    @Override
+    public void setUpdatedTime(java.util.Date value) {
+        setTypedProperty("updated_time", value, null);
+    }
+
+    @Override
+    public com.facebook.model.GraphObject getApplication() {
+        return getTypedProperty("application", com.facebook.model.GraphObject.class);
+    }
+
+    @Override
+    public void setApplication(com.facebook.model.GraphObject value) {
+        setTypedProperty("application", value, null);
+    }
+
+    @Override
+    public boolean getIsScraped() {
+        return getTypedProperty("is_scraped", boolean.class);
+    }
+
+    @Override
+    public void setIsScraped(boolean value) {
+        setTypedProperty("is_scraped", value, null);
+    }
+
+    @Override
+    public java.lang.String getPostActionId() {
+        return getTypedProperty("post_action_id", java.lang.String.class);
+    }
+
+    @Override
+    public void setPostActionId(java.lang.String value) {
+        setTypedProperty("post_action_id", value, null);
+    }
+
+    @Override
+    public com.facebook.model.GraphObject getData() {
+        return getTypedProperty("data", com.facebook.model.GraphObject.class);
+    }
+
+    @Override
+    public void setData(com.facebook.model.GraphObject value) {
+        setTypedProperty("data", value, null);
+    }
+
+    @Override
+    public boolean getCreateObject() {
+        return getTypedProperty("fbsdk:create_object", boolean.class);
+    }
+
+    @Override
+    public void setCreateObject(boolean value) {
+        setTypedProperty("fbsdk:create_object", value, null);
+    }
+}
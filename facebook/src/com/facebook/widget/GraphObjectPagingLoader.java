@@ -30,6 +30,8 @@ class GraphObjectPagingLoader<T extends GraphObject> extends Loader<SimpleGraphO
     private Request originalRequest;
     private Request currentRequest;
     private Request nextRequest;
+    private RequestBatch currentBatch;
+    private boolean resumeCurrentRequest;
     private OnErrorListener onErrorListener;
     private SimpleGraphObjectCursor<T> cursor;
     private boolean appendResults = false;
@@ -58,9 +60,11 @@ class GraphObjectPagingLoader<T extends GraphObject> extends Loader<SimpleGraphO
     }
 
     public void clearResults() {
+        cancelCurrentBatch();
         nextRequest = null;
         originalRequest = null;
         currentRequest = null;
+        resumeCurrentRequest = false;
 
         deliverResult(null);
     }
@@ -121,6 +125,33 @@ class GraphObjectPagingLoader<T extends GraphObject> extends Loader<SimpleGraphO
         if (cursor != null) {
             deliverResult(cursor);
         }
+
+        if (resumeCurrentRequest && currentRequest != null) {
+            // The request was cancelled when loading stopped; send it again.
+            resumeCurrentRequest = false;
+            loading = true;
+            Request.executeBatchAsync(putRequestIntoBatch(currentRequest, skipRoundtripIfCached));
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        super.onStopLoading();
+
+        // Nobody will see the results until loading starts again, so stop transferring them.
+        if (loading && currentRequest != null && cancelCurrentBatch()) {
+            resumeCurrentRequest = true;
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        cancelCurrentBatch();
+        loading = false;
+        currentRequest = null;
+        resumeCurrentRequest = false;
     }
 
     private void startLoading(Request request, boolean skipRoundtripIfCached, long afterDelay) {
@@ -138,6 +169,8 @@ class GraphObjectPagingLoader<T extends GraphObject> extends Loader<SimpleGraphO
         // We are considered loading even if we have a delay.
         loading = true;
 
+        cancelCurrentBatch();
+        resumeCurrentRequest = false;
         final RequestBatch batch = putRequestIntoBatch(request, skipRoundtripIfCached);
         Runnable r = new Runnable() {
             @Override
@@ -158,9 +191,20 @@ class GraphObjectPagingLoader<T extends GraphObject> extends Loader<SimpleGraphO
         CacheableRequestBatch batch = new CacheableRequestBatch(request);
         // We use the default cache key (request URL).
         batch.setForceRoundTrip(!skipRoundtripIfCached);
+        currentBatch = batch;
         return batch;
     }
 
+    private boolean cancelCurrentBatch() {
+        RequestBatch batch = currentBatch;
+        currentBatch = null;
+        if (batch == null || batch.isCancelled()) {
+            return false;
+        }
+        batch.cancel();
+        return true;
+    }
+
     private void requestCompleted(Response response) {
         Request request = response.getRequest();
         if (request != currentRequest) {
@@ -169,6 +213,7 @@ class GraphObjectPagingLoader<T extends GraphObject> extends Loader<SimpleGraphO
 
         loading = false;
         currentRequest = null;
+        currentBatch = null;
 
         FacebookRequestError requestError = response.getError();
         FacebookException exception = (requestError == null) ? null : requestError.getException();
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public class BatchSplitterTests extends AndroidTestCase {
+    @SmallTest
+    public void testIndependentRequestsAreSplitInOrder() {
+        RequestBatch batch = new RequestBatch();
+        for (int i = 0; i < 5; i++) {
+            batch.add(new Request(null, "me"));
+        }
+
+        List<List<Integer>> subBatches = BatchSplitter.split(batch, 2);
+
+        assertEquals(3, subBatches.size());
+        assertEquals(Arrays.asList(0, 1), subBatches.get(0));
+        assertEquals(Arrays.asList(2, 3), subBatches.get(1));
+        assertEquals(Arrays.asList(4), subBatches.get(2));
+    }
+
+    @SmallTest
+    public void testDependentRequestsStayTogether() {
+        Request me = new Request(null, "me");
+        me.setBatchEntryName("me");
+        Request other = new Request(null, "zuck");
+        Request dependent = new Request(null, "me/likes");
+        dependent.setBatchEntryDependsOn("me");
+
+        Request friends = new Request(null, "me/friends");
+        friends.setBatchEntryName("friends");
+        Request unrelated = new Request(null, "4");
+        Bundle parameters = new Bundle();
+        parameters.putString("ids", "{result=friends:$.data.*.id}");
+        Request referencing = new Request(null, "", parameters, null);
+
+        RequestBatch batch = new RequestBatch(me, other, dependent, friends, unrelated, referencing);
+        List<List<Integer>> subBatches = BatchSplitter.split(batch, 2);
+
+        assertEquals(4, subBatches.size());
+        assertEquals(Arrays.asList(0, 2), subBatches.get(0));
+        assertEquals(Arrays.asList(1), subBatches.get(1));
+        assertEquals(Arrays.asList(3, 5), subBatches.get(2));
+        assertEquals(Arrays.asList(4), subBatches.get(3));
+    }
+
+    @SmallTest
+    public void testSaturatedExecutorStillSendsEverySubBatch() {
+        InMemoryHttpTransport transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request)
+                    throws IOException {
+                // Answer each entry of the sub-batch that was sent.
+                String body = new String(request.getBody(), "UTF-8");
+                StringBuilder responses = new StringBuilder("[");
+                for (int i = body.indexOf("relative_url"); i >= 0; i = body.indexOf("relative_url", i + 1)) {
+                    responses.append(responses.length() > 1 ? "," : "").append("{\"code\":200,\"body\":\"{}\"}");
+                }
+                return new InMemoryHttpTransport.CannedResponse(200, responses.append("]").toString());
+            }
+        });
+        Executor original = Settings.getExecutor();
+        int originalMaxConcurrentSubBatches = Settings.getMaxConcurrentSubBatches();
+        try {
+            Settings.setHttpTransport(transport);
+            Settings.setMaxConcurrentSubBatches(3);
+            Settings.setExecutor(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    throw new RejectedExecutionException();
+                }
+            });
+
+            RequestBatch batch = new RequestBatch();
+            batch.setBatchApplicationId("1234");
+            for (int i = 0; i < Request.MAXIMUM_BATCH_SIZE + 5; i++) {
+                batch.add(new Request(null, "me"));
+            }
+            List<Response> responses = Request.executeBatchAndWait(batch);
+
+            assertEquals(2, transport.getRequests().size());
+            assertEquals(batch.size(), responses.size());
+            for (Response response : responses) {
+                assertNull(response.getError());
+            }
+        } finally {
+            Settings.setExecutor(original);
+            Settings.setMaxConcurrentSubBatches(originalMaxConcurrentSubBatches);
+            Settings.setHttpTransport(null);
+        }
+    }
+
+    @SmallTest
+    public void testCancellingABatchCancelsItsLinkedBatches() {
+        RequestBatch batch = new RequestBatch(new Request(null, "me"));
+        RequestBatch linked = new RequestBatch(new Request(null, "me"));
+        RequestBatch unlinked = new RequestBatch(new Request(null, "me"));
+        batch.addLinkedBatch(linked);
+        batch.addLinkedBatch(unlinked);
+        batch.removeLinkedBatch(unlinked);
+
+        batch.cancel();
+        assertTrue(linked.isCancelled());
+        assertFalse(unlinked.isCancelled());
+
+        // A batch linked after the cancellation is cancelled right away.
+        RequestBatch late = new RequestBatch(new Request(null, "me"));
+        batch.addLinkedBatch(late);
+        assertTrue(late.isCancelled());
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.Random;
+
+public class BitmapEncodingPolicyTests extends AndroidTestCase {
+    private InMemoryHttpTransport transport;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"1\"}");
+            }
+        });
+        Settings.setHttpTransport(transport);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setHttpTransport(null);
+        Settings.setBitmapEncodingPolicy(new BitmapEncodingPolicy());
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testInvalidArgumentsAreRejected() {
+        BitmapEncodingPolicy policy = new BitmapEncodingPolicy();
+        try {
+            policy.setQuality(101);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            policy.setMaxDimension(-1);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @SmallTest
+    public void testLargeBitmapIsScaledDownKeepingAspectRatio() {
+        BitmapEncodingPolicy policy = new BitmapEncodingPolicy();
+        policy.setFormat(Bitmap.CompressFormat.JPEG);
+        policy.setQuality(80);
+        policy.setMaxDimension(100);
+        Bitmap bitmap = createPhoto(400, 300);
+
+        byte[] encoded = policy.encode(bitmap);
+        Bitmap decoded = BitmapFactory.decodeByteArray(encoded, 0, encoded.length);
+
+        assertEquals(100, decoded.getWidth());
+        assertEquals(75, decoded.getHeight());
+        assertFalse(bitmap.isRecycled());
+        assertEquals("image/jpeg", policy.getMimeType());
+    }
+
+    @SmallTest
+    public void testRequestPolicyOverridesGlobalPolicyForStagingResources() {
+        BitmapEncodingPolicy policy = new BitmapEncodingPolicy();
+        policy.setFormat(Bitmap.CompressFormat.JPEG);
+        Request request = Request.newUploadStagingResourceWithImageRequest(null, createPhoto(64, 48), null);
+        request.setBitmapEncodingPolicy(policy);
+        request.executeAndWait();
+
+        String body = new String(transport.getRequests().get(0).getBody());
+        assertTrue(body.contains("Content-Type: image/jpeg"));
+
+        Request.newUploadPhotoRequest(null, createPhoto(64, 48), null).executeAndWait();
+        body = new String(transport.getRequests().get(1).getBody());
+        assertTrue(body.contains("Content-Type: image/png"));
+    }
+
+    @SmallTest
+    public void testSharedBitmapIsEncodedWithEachRequestsPolicy() {
+        Bitmap photo = createPhoto(64, 48);
+        BitmapEncodingPolicy policy = new BitmapEncodingPolicy();
+        policy.setFormat(Bitmap.CompressFormat.JPEG);
+        Request jpeg = Request.newUploadPhotoRequest(null, photo, null);
+        jpeg.setBitmapEncodingPolicy(policy);
+        Request png = Request.newUploadPhotoRequest(null, photo, null);
+
+        RequestBatch batch = new RequestBatch(jpeg, png);
+        batch.setBatchApplicationId("1234");
+        Request.executeBatchAndWait(batch);
+
+        String body = new String(transport.getRequests().get(0).getBody());
+        assertTrue(body.contains("Content-Type: image/jpeg"));
+        assertTrue(body.contains("Content-Type: image/png"));
+    }
+
+    // A gradient with some noise, which compresses about as well as a camera photo.
+    private static Bitmap createPhoto(int width, int height) {
+        int[] pixels = new int[width * height];
+        Random random = new Random(0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(32);
+                pixels[y * width + x] = Color.rgb((x * 255 / width + noise) & 0xff, (y * 255 / height + noise) & 0xff,
+                        (noise * 4) & 0xff);
+            }
+        }
+        return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import com.facebook.internal.CompactJSONObject;
+import com.facebook.model.GraphUser;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompactResponseTests extends AndroidTestCase {
+    private static final String FRIENDS = "{\"data\":[{\"id\":\"4\",\"first_name\":\"Mark\"}," +
+            "{\"id\":\"5\",\"first_name\":\"Chris\"}]}";
+
+    private boolean wasStreamingEnabled;
+    private boolean wasRawLoggingEnabled;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        wasStreamingEnabled = Settings.isStreamingResponseParsingEnabled();
+        wasRawLoggingEnabled = Settings.getLoggingBehaviors().contains(LoggingBehavior.INCLUDE_RAW_RESPONSES);
+        Settings.removeLoggingBehavior(LoggingBehavior.INCLUDE_RAW_RESPONSES);
+        Settings.setCompactResponseObjectsEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setCompactResponseObjectsEnabled(false);
+        Settings.setStreamingResponseParsingEnabled(wasStreamingEnabled);
+        if (wasRawLoggingEnabled) {
+            Settings.addLoggingBehavior(LoggingBehavior.INCLUDE_RAW_RESPONSES);
+        }
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testStringParseReadsCompactObjects() throws Exception {
+        assertFriendsAreCompact(parse(FRIENDS, false).get(0));
+    }
+
+    @SmallTest
+    public void testStreamingParseReadsCompactObjects() throws Exception {
+        assertFriendsAreCompact(parse(FRIENDS, true).get(0));
+    }
+
+    @SmallTest
+    public void testBatchBodyIsReadCompact() throws Exception {
+        String json = "[{\"code\":200,\"body\":\"{\\\"id\\\":\\\"4\\\"}\"},{\"code\":200,\"body\":\"{\\\"id\\\":\\\"5\\\"}\"}]";
+        List<Request> requests = Arrays.asList(new Request(null, "4"), new Request(null, "5"));
+
+        List<Response> responses = Response.createResponsesFromString(json, null, new RequestBatch(requests), true);
+
+        JSONObject second = responses.get(1).getGraphObject().getInnerJSONObject();
+        assertTrue(second instanceof CompactJSONObject);
+        assertEquals("5", second.getString("id"));
+    }
+
+    @SmallTest
+    public void testErrorResultCanBeWrittenOut() throws Exception {
+        String json = "{\"error\":{\"message\":\"bad\",\"type\":\"OAuthException\",\"code\":100}}";
+
+        FacebookRequestError error = parse(json, false).get(0).getError();
+
+        assertNotNull(error);
+        JSONObject written = new JSONObject(error.getRequestResult().toString());
+        assertEquals("bad", written.getJSONObject("body").getJSONObject("error").getString("message"));
+    }
+
+    private static void assertFriendsAreCompact(Response response) throws Exception {
+        assertNull(response.getError());
+        GraphUser friend = response.getGraphObject().getPropertyAsList("data", GraphUser.class).get(1);
+        assertEquals("Chris", friend.getFirstName());
+
+        // Getting the JSONObject turns it back into an ordinary one, but leaves it the object that was parsed.
+        JSONObject state = response.getGraphObject().getInnerJSONObject();
+        assertTrue(state instanceof CompactJSONObject);
+        assertTrue(state.getJSONArray("data").get(0) instanceof CompactJSONObject);
+        assertEquals(new JSONObject(FRIENDS).toString(), response.getRawResponse());
+    }
+
+    private List<Response> parse(String json, boolean streaming) throws Exception {
+        Settings.setStreamingResponseParsingEnabled(streaming);
+        RequestBatch batch = new RequestBatch(new Request(null, "me/friends"));
+        ByteArrayInputStream stream = new ByteArrayInputStream(json.getBytes("UTF-8"));
+        return Response.createResponsesFromStream(stream, null, batch, true);
+    }
+}
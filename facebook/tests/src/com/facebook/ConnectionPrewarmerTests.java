@@ -0,0 +1,127 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionPrewarmerTests extends AndroidTestCase {
+    // How long the simulated transport takes to set up its connection, which stands in for DNS and handshakes.
+    private static final long CONNECTION_SETUP_MILLISECONDS = 1000;
+
+    private Executor originalExecutor;
+    private final AtomicInteger executeCount = new AtomicInteger();
+    private volatile CountDownLatch taskFinished = new CountDownLatch(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        ConnectionPrewarmer.resetForTest();
+
+        // Count the tasks that reach the executor, and signal as each one finishes.
+        originalExecutor = Settings.getExecutor();
+        Settings.setExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                executeCount.incrementAndGet();
+                originalExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            command.run();
+                        } finally {
+                            taskFinished.countDown();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setExecutor(originalExecutor);
+        Settings.setHttpTransport(null);
+        ConnectionPrewarmer.resetForTest();
+        super.tearDown();
+    }
+
+    @MediumTest
+    public void testPrewarmSendsOneHeadRequestToGraph() throws Exception {
+        InMemoryHttpTransport transport = createTransport();
+        Settings.setHttpTransport(transport);
+
+        ConnectionPrewarmer.prewarmAsync();
+        assertTrue(taskFinished.await(5, TimeUnit.SECONDS));
+        // A second pre-warm within the interval returns before it reaches the executor.
+        ConnectionPrewarmer.prewarmAsync();
+
+        assertEquals(1, executeCount.get());
+        List<InMemoryHttpTransport.RecordedRequest> requests = transport.getRequests();
+        assertEquals(1, requests.size());
+        assertEquals("HEAD", requests.get(0).getMethod());
+        assertEquals("graph." + Settings.getFacebookDomain(), requests.get(0).getUrl().getHost());
+        assertTrue(ConnectionPrewarmer.getLastPrewarmDuration() >= 0);
+    }
+
+    @MediumTest
+    public void testPrewarmTakesConnectionSetupOutOfTimeToFirstByte() throws Exception {
+        Settings.setHttpTransport(createTransport());
+        Response cold = Request.executeBatchAndWait(new Request(null, "4")).get(0);
+
+        Settings.setHttpTransport(createTransport());
+        taskFinished = new CountDownLatch(1);
+        ConnectionPrewarmer.prewarmAsync();
+        assertTrue(taskFinished.await(5, TimeUnit.SECONDS));
+        Response warm = Request.executeBatchAndWait(new Request(null, "4")).get(0);
+
+        assertNull(cold.getError());
+        assertNull(warm.getError());
+        assertTrue(cold.getTimeToFirstByte() >= CONNECTION_SETUP_MILLISECONDS);
+        assertTrue(warm.getTimeToFirstByte() >= 0);
+        assertTrue(warm.getTimeToFirstByte() < CONNECTION_SETUP_MILLISECONDS);
+    }
+
+    // A transport whose first exchange also sets up its connection, like the platform's keep-alive pool.
+    private static InMemoryHttpTransport createTransport() {
+        final AtomicInteger exchangeCount = new AtomicInteger();
+        return new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request)
+                    throws IOException {
+                if (exchangeCount.getAndIncrement() == 0) {
+                    try {
+                        Thread.sleep(CONNECTION_SETUP_MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException("interrupted");
+                    }
+                }
+                if ("HEAD".equals(request.getMethod())) {
+                    return new InMemoryHttpTransport.CannedResponse(400, new byte[0]);
+                }
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"4\"}");
+            }
+        });
+    }
+}
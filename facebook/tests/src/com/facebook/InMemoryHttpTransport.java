@@ -0,0 +1,315 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * An {@link HttpTransport} that answers every request in memory, without using the network. Each request is passed
+ * to a {@link Responder} that decides the response, and is recorded so that it can be inspected afterwards.
+ */
+public class InMemoryHttpTransport implements HttpTransport {
+    private final Responder responder;
+    private final List<RecordedRequest> requests = new ArrayList<RecordedRequest>();
+
+    /**
+     * Decides the response to a request made through an InMemoryHttpTransport.
+     */
+    public interface Responder {
+        /**
+         * Called once the request has been sent, on the thread that sent it.
+         *
+         * @param request the request that was sent
+         * @return the response to return for it
+         * @throws IOException to make the request fail as if the network had failed
+         */
+        CannedResponse respond(RecordedRequest request) throws IOException;
+    }
+
+    /**
+     * Constructs an InMemoryHttpTransport.
+     *
+     * @param responder decides the response to each request
+     */
+    public InMemoryHttpTransport(Responder responder) {
+        this.responder = responder;
+    }
+
+    @Override
+    public HttpURLConnection openConnection(URL url) throws IOException {
+        return new InMemoryConnection(url);
+    }
+
+    /**
+     * Gets the requests that have been sent through this transport, in the order they were sent.
+     *
+     * @return the requests
+     */
+    public List<RecordedRequest> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<RecordedRequest>(requests);
+        }
+    }
+
+    /**
+     * A request that was sent through an InMemoryHttpTransport.
+     */
+    public static final class RecordedRequest {
+        private final String method;
+        private final URL url;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+        private final long fixedLength;
+
+        RecordedRequest(String method, URL url, Map<String, List<String>> headers, byte[] body, long fixedLength) {
+            this.method = method;
+            this.url = url;
+            this.headers = headers;
+            this.body = body;
+            this.fixedLength = fixedLength;
+        }
+
+        /**
+         * Gets the HTTP method of the request.
+         *
+         * @return the method
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * Gets the URL of the request.
+         *
+         * @return the URL
+         */
+        public URL getUrl() {
+            return url;
+        }
+
+        /**
+         * Gets the value of a request header.
+         *
+         * @param name the name of the header, which is not case-sensitive
+         * @return the value, or null if the header was not set
+         */
+        public String getHeader(String name) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                    return entry.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets the body of the request, exactly as it was written.
+         *
+         * @return the body, which is empty if none was written
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Gets the length that the body was declared to have through setFixedLengthStreamingMode.
+         *
+         * @return the length, or -1 if the body was sent without a fixed length
+         */
+        public long getFixedLength() {
+            return fixedLength;
+        }
+    }
+
+    /**
+     * A response returned by a {@link Responder}.
+     */
+    public static final class CannedResponse {
+        private final int code;
+        private final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        private final byte[] body;
+
+        /**
+         * Constructs a CannedResponse.
+         *
+         * @param code the HTTP status code
+         * @param body the body
+         */
+        public CannedResponse(int code, byte[] body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        /**
+         * Constructs a CannedResponse with a UTF-8 body, such as the JSON returned by the Graph API.
+         *
+         * @param code the HTTP status code
+         * @param body the body
+         */
+        public CannedResponse(int code, String body) {
+            this(code, getUtf8Bytes(body));
+        }
+
+        /**
+         * Sets a response header.
+         *
+         * @param name  the name of the header
+         * @param value the value of the header
+         * @return this CannedResponse
+         */
+        public CannedResponse setHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        private static byte[] getUtf8Bytes(String string) {
+            try {
+                return string.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new FacebookException(e);
+            }
+        }
+    }
+
+    private final class InMemoryConnection extends HttpURLConnection {
+        private ByteArrayOutputStream outputStream;
+        private CannedResponse response;
+        private Map<String, List<String>> requestHeaders;
+        private long fixedLength = -1;
+
+        InMemoryConnection(URL url) {
+            super(url);
+        }
+
+        @Override
+        public void setFixedLengthStreamingMode(int contentLength) {
+            super.setFixedLengthStreamingMode(contentLength);
+            fixedLength = contentLength;
+        }
+
+        // Overrides the long variant from API 19 on, which does not call the int one.
+        public void setFixedLengthStreamingMode(long contentLength) {
+            super.setFixedLengthStreamingMode(contentLength);
+            fixedLength = contentLength;
+        }
+
+        @Override
+        public void setChunkedStreamingMode(int chunkLength) {
+            super.setChunkedStreamingMode(chunkLength);
+            fixedLength = -1;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (!connected) {
+                // Request headers can't be read once connected, so keep a copy for the exchange.
+                requestHeaders = new HashMap<String, List<String>>(getRequestProperties());
+                connected = true;
+            }
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            if (response != null) {
+                throw new ProtocolException("Cannot write output after reading input.");
+            }
+            connect();
+            if (outputStream == null) {
+                outputStream = new ByteArrayOutputStream();
+            }
+            return outputStream;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            CannedResponse response = exchange();
+            if (response.code >= HTTP_BAD_REQUEST) {
+                throw new FileNotFoundException(url.toString());
+            }
+            return new ByteArrayInputStream(response.body);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            if (response == null || response.code < HTTP_BAD_REQUEST) {
+                return null;
+            }
+            return new ByteArrayInputStream(response.body);
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return exchange().code;
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            exchange();
+            return null;
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            try {
+                return exchange().headers.get(name);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            Map<String, List<String>> fields = new HashMap<String, List<String>>();
+            try {
+                for (Map.Entry<String, String> entry : exchange().headers.entrySet()) {
+                    fields.put(entry.getKey(), Collections.singletonList(entry.getValue()));
+                }
+            } catch (IOException e) {
+                // Like HttpURLConnection, report no headers if the request failed.
+            }
+            return fields;
+        }
+
+        private CannedResponse exchange() throws IOException {
+            if (response == null) {
+                connect();
+                byte[] body = (outputStream != null) ? outputStream.toByteArray() : new byte[0];
+                RecordedRequest request = new RecordedRequest(getRequestMethod(), url, requestHeaders, body,
+                        fixedLength);
+                synchronized (requests) {
+                    requests.add(request);
+                }
+                response = responder.respond(request);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.io.IOException;
+import java.util.List;
+
+public class InMemoryHttpTransportTests extends AndroidTestCase {
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setHttpTransport(null);
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testRequestIsAnsweredInMemory() {
+        InMemoryHttpTransport transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"4\",\"name\":\"Mark\"}");
+            }
+        });
+        Settings.setHttpTransport(transport);
+
+        Response response = new Request(null, "4").executeAndWait();
+
+        assertNull(response.getError());
+        assertEquals("Mark", response.getGraphObject().getProperty("name"));
+
+        List<InMemoryHttpTransport.RecordedRequest> requests = transport.getRequests();
+        assertEquals(1, requests.size());
+        assertEquals("GET", requests.get(0).getMethod());
+        assertTrue(requests.get(0).getUrl().getPath().endsWith("/4"));
+        assertNotNull(requests.get(0).getHeader("user-agent"));
+    }
+
+    @SmallTest
+    public void testPostBodyIsRecorded() {
+        InMemoryHttpTransport transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"1_2\"}");
+            }
+        });
+        Settings.setHttpTransport(transport);
+
+        Request request = new Request(null, "me/feed", null, HttpMethod.POST);
+        request.getParameters().putString("message", "hello");
+        request.executeAndWait();
+
+        String body = new String(transport.getRequests().get(0).getBody());
+        assertTrue(body.contains("name=\"message\""));
+        assertTrue(body.contains("hello"));
+    }
+
+    @SmallTest
+    public void testErrorsAndNetworkFailures() {
+        Settings.setHttpTransport(new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request)
+                    throws IOException {
+                if (request.getUrl().getPath().endsWith("/fail")) {
+                    throw new IOException("no network");
+                }
+                return new InMemoryHttpTransport.CannedResponse(400,
+                        "{\"error\":{\"message\":\"Invalid parameter\",\"type\":\"OAuthException\",\"code\":100}}");
+            }
+        }));
+
+        Response error = new Request(null, "me").executeAndWait();
+        assertEquals(100, error.getError().getErrorCode());
+
+        Response failure = new Request(null, "fail").executeAndWait();
+        assertEquals(FacebookRequestError.Category.CLIENT, failure.getError().getCategory());
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LazyBatchResponseTests extends AndroidTestCase {
+    @SmallTest
+    public void testBodiesAreParsedOnFirstAccess() throws Exception {
+        String json = "[{\"code\":200,\"body\":\"{\\\"id\\\":\\\"4\\\"}\"}," +
+                "{\"code\":200,\"body\":\"[{\\\"id\\\":\\\"1\\\"},{\\\"id\\\":\\\"2\\\"}]\"}," +
+                "{\"code\":200,\"body\":\"true\"}," +
+                "null]";
+
+        List<Response> responses = parse(json, 4);
+
+        assertNull(responses.get(0).getError());
+        assertEquals("{\"id\":\"4\"}", responses.get(0).getRawResponse());
+        assertEquals("4", responses.get(0).getGraphObject().getProperty("id"));
+        assertSame(responses.get(0).getGraphObject(), responses.get(0).getGraphObject());
+        assertEquals(2, responses.get(1).getGraphObjectList().size());
+        assertNull(responses.get(1).getGraphObject());
+        assertEquals(Boolean.TRUE, responses.get(2).getGraphObject().getProperty(Response.NON_JSON_RESPONSE_PROPERTY));
+        assertNull(responses.get(3).getGraphObject());
+    }
+
+    @SmallTest
+    public void testErrorsAreStillDetectedEagerly() throws Exception {
+        String json = "[{\"code\":400,\"body\":\"{\\\"error\\\":{\\\"message\\\":\\\"bad\\\",\\\"code\\\":100}}\"}," +
+                "{\"code\":200,\"body\":\"{\\\"error_code\\\":4,\\\"error_msg\\\":\\\"limit\\\"}\"}]";
+
+        List<Response> responses = parse(json, 2);
+
+        assertEquals(100, responses.get(0).getError().getErrorCode());
+        assertEquals(4, responses.get(1).getError().getErrorCode());
+    }
+
+    private static List<Response> parse(String json, int count) throws Exception {
+        List<Request> requests = new ArrayList<Request>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(new Request(null, "me/friends"));
+        }
+        return Response.createResponsesFromString(json, null, new RequestBatch(requests), true);
+    }
+}
@@ -62,4 +62,11 @@ public class ProgressNoopOutputStreamTests extends AndroidTestCase {
         stream.addProgress(16);
         assertEquals(27, stream.getMaxProgress());
     }
-}
\ No newline at end of file
+
+    @SmallTest
+    public void testLengthOver2GB() {
+        stream.addProgress(Integer.MAX_VALUE);
+        stream.addProgress(Integer.MAX_VALUE);
+        assertEquals(2L * Integer.MAX_VALUE, stream.getMaxProgress());
+    }
+}
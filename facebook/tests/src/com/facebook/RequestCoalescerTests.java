@@ -0,0 +1,209 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RequestCoalescerTests extends AndroidTestCase {
+    private String originalDefaultBatchApplicationId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        originalDefaultBatchApplicationId = Request.getDefaultBatchApplicationId();
+        Request.setDefaultBatchApplicationId("1234");
+        RequestCoalescer.resetCounters();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Request.setDefaultBatchApplicationId(originalDefaultBatchApplicationId);
+        Settings.setRequestCoalescingWindow(0);
+        Settings.setHttpTransport(null);
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testDisabledByDefault() {
+        assertEquals(0, Settings.getRequestCoalescingWindow());
+        assertFalse(RequestCoalescer.canCoalesce(new RequestBatch(new Request(null, "me"))));
+    }
+
+    @SmallTest
+    public void testNeverCoalescesOffMainThread() {
+        Settings.setRequestCoalescingWindow(10);
+        // Tests run on the instrumentation thread, not the main thread.
+        assertFalse(RequestCoalescer.canCoalesce(new RequestBatch(new Request(null, "me"))));
+    }
+
+    @SmallTest
+    public void testSimpleRequestCanCoalesce() {
+        assertTrue(RequestCoalescer.canCoalesce(new Request(null, "me")));
+    }
+
+    @SmallTest
+    public void testBatchEntryNamesPreventCoalescing() {
+        Request request = new Request(null, "me");
+        request.setBatchEntryName("me");
+        assertFalse(RequestCoalescer.canCoalesce(request));
+    }
+
+    @SmallTest
+    public void testOverriddenUrlPreventsCoalescing() throws Exception {
+        Request request = new Request(null, new URL("https://graph.facebook.com/me/friends?after=abc"));
+        assertFalse(RequestCoalescer.canCoalesce(request));
+    }
+
+    @SmallTest
+    public void testRequestWithoutAppIdCannotCoalesce() {
+        Request.setDefaultBatchApplicationId(null);
+        assertFalse(RequestCoalescer.canCoalesce(new Request(null, "me")));
+    }
+
+    @SmallTest
+    public void testInvalidSettingsThrow() {
+        try {
+            Settings.setRequestCoalescingWindow(-1);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            Settings.setRequestCoalescingMaxBatchSize(Request.MAXIMUM_BATCH_SIZE + 1);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @SmallTest
+    public void testCountersStartAtZero() {
+        assertEquals(0, RequestCoalescer.getCoalescedRequestCount());
+        assertEquals(0, RequestCoalescer.getBatchCount());
+        assertEquals(0, RequestCoalescer.getRoundTripsSaved());
+    }
+
+    @LargeTest
+    public void testRequestsInOneWindowShareOneBatch() throws Exception {
+        InMemoryHttpTransport transport = createBatchTransport();
+        Settings.setHttpTransport(transport);
+        Settings.setRequestCoalescingWindow(100);
+
+        final Response[] responses = new Response[2];
+        final CountDownLatch callbacksCalled = new CountDownLatch(2);
+        final Request first = new Request(null, "1", null, null, createCallback(responses, 0, callbacksCalled));
+        final Request second = new Request(null, "2", null, null, createCallback(responses, 1, callbacksCalled));
+        final RequestAsyncTask[] tasks = new RequestAsyncTask[2];
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                tasks[0] = first.executeAsync();
+                tasks[1] = second.executeAsync();
+            }
+        });
+
+        assertTrue(callbacksCalled.await(10, TimeUnit.SECONDS));
+        assertEquals(1, transport.getRequests().size());
+        assertTrue(new String(transport.getRequests().get(0).getBody(), "UTF-8").contains("name=\"batch\""));
+        assertEquals(1, RequestCoalescer.getBatchCount());
+        assertEquals(2, RequestCoalescer.getCoalescedRequestCount());
+
+        assertSame(first, responses[0].getRequest());
+        assertEquals("1", responses[0].getGraphObject().getProperty("id"));
+        assertSame(second, responses[1].getRequest());
+        assertEquals("2", responses[1].getGraphObject().getProperty("id"));
+
+        // Each caller gets its own task, which completes with that caller's response.
+        assertNotSame(tasks[0], tasks[1]);
+        assertSame(responses[0], tasks[0].get(10, TimeUnit.SECONDS).get(0));
+        assertSame(responses[1], tasks[1].get(10, TimeUnit.SECONDS).get(0));
+    }
+
+    @LargeTest
+    public void testCancellingOneCoalescedRequestLeavesTheOthers() throws Exception {
+        InMemoryHttpTransport transport = createBatchTransport();
+        Settings.setHttpTransport(transport);
+        Settings.setRequestCoalescingWindow(100);
+
+        final Response[] responses = new Response[2];
+        final CountDownLatch callbacksCalled = new CountDownLatch(1);
+        final Request first = new Request(null, "1", null, null, createCallback(responses, 0, callbacksCalled));
+        final Request second = new Request(null, "2", null, null, createCallback(responses, 1, callbacksCalled));
+        final RequestAsyncTask[] tasks = new RequestAsyncTask[2];
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                tasks[0] = first.executeAsync();
+                tasks[1] = second.executeAsync();
+                tasks[0].cancelRequests();
+            }
+        });
+
+        assertTrue(callbacksCalled.await(10, TimeUnit.SECONDS));
+        assertEquals(1, transport.getRequests().size());
+        assertEquals("2", responses[1].getGraphObject().getProperty("id"));
+        assertNull(tasks[1].getException());
+        // Both callbacks are delivered in one pass, so the cancelled one would have been called by now.
+        assertNull(responses[0]);
+        assertTrue(tasks[0].isCancelled());
+        assertFalse(tasks[1].isCancelled());
+    }
+
+    private static InMemoryHttpTransport createBatchTransport() {
+        return new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                return new InMemoryHttpTransport.CannedResponse(200,
+                        "[{\"code\":200,\"body\":\"{\\\"id\\\":\\\"1\\\"}\"}," +
+                        "{\"code\":200,\"body\":\"{\\\"id\\\":\\\"2\\\"}\"}]");
+            }
+        });
+    }
+
+    private static Request.Callback createCallback(final Response[] responses, final int index,
+            final CountDownLatch latch) {
+        return new Request.Callback() {
+            @Override
+            public void onCompleted(Response response) {
+                responses[index] = response;
+                latch.countDown();
+            }
+        };
+    }
+
+    private static void runOnMainThread(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+}
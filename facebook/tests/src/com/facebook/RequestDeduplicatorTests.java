@@ -0,0 +1,143 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import com.facebook.model.GraphObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RequestDeduplicatorTests extends AndroidTestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setRequestDeduplicationEnabled(false);
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testDisabledByDefault() {
+        assertFalse(Settings.isRequestDeduplicationEnabled());
+        assertNull(RequestDeduplicator.getKey(new RequestBatch(new Request(null, "me"))));
+    }
+
+    @SmallTest
+    public void testPostRequestsAreNotDeduplicated() {
+        Settings.setRequestDeduplicationEnabled(true);
+        Request request = new Request(null, "me/feed", null, HttpMethod.POST);
+        assertNull(RequestDeduplicator.getKey(new RequestBatch(request)));
+    }
+
+    @SmallTest
+    public void testFollowersReceiveLeaderResponse() {
+        Request leader = new Request(null, "me");
+        final List<Response> followerResponses = new ArrayList<Response>();
+        Request follower = new Request(null, "me", null, null, new Request.Callback() {
+            @Override
+            public void onCompleted(Response response) {
+                followerResponses.add(response);
+            }
+        });
+
+        RequestAsyncTask task = new RequestAsyncTask(leader);
+        String key = "https://graph.facebook.com/me|null";
+        RequestDeduplicator.register(key, leader, task);
+        RequestAsyncTask followerTask = RequestDeduplicator.attach(key, new RequestBatch(follower));
+        assertNotNull(followerTask);
+        assertNotSame(task, followerTask);
+
+        GraphObject graphObject = GraphObject.Factory.create();
+        graphObject.setProperty("id", "4");
+        Response leaderResponse = new Response(leader, null, null, graphObject, false);
+        RequestDeduplicator.complete(new RequestBatch(leader), Arrays.asList(leaderResponse), null);
+
+        assertEquals(1, followerResponses.size());
+        Response followerResponse = followerResponses.get(0);
+        assertSame(follower, followerResponse.getRequest());
+        assertEquals("4", followerResponse.getGraphObject().getProperty("id"));
+
+        // The follower has its own copy, so changes made through one response don't show up in the other.
+        followerResponse.getGraphObject().setProperty("id", "5");
+        assertEquals("4", graphObject.getProperty("id"));
+
+        // Once completed, the key is no longer in flight.
+        assertNull(RequestDeduplicator.attach(key, new RequestBatch(follower)));
+    }
+
+    @SmallTest
+    public void testCancellingFollowerLeavesLeader() {
+        Request leader = new Request(null, "me");
+        RequestBatch leaderBatch = new RequestBatch(leader);
+        RequestAsyncTask task = new RequestAsyncTask(leaderBatch);
+        final List<Response> followerResponses = new ArrayList<Response>();
+        Request follower = new Request(null, "me", null, null, new Request.Callback() {
+            @Override
+            public void onCompleted(Response response) {
+                followerResponses.add(response);
+            }
+        });
+
+        String key = "https://graph.facebook.com/me|null";
+        RequestDeduplicator.register(key, leader, task);
+        RequestAsyncTask followerTask = RequestDeduplicator.attach(key, new RequestBatch(follower));
+        followerTask.cancelRequests();
+
+        assertFalse(leaderBatch.isCancelled());
+        assertFalse(task.isCancelled());
+
+        Response leaderResponse = new Response(leader, null, null, GraphObject.Factory.create(), false);
+        RequestDeduplicator.complete(leaderBatch, Arrays.asList(leaderResponse), null);
+        assertTrue(followerResponses.isEmpty());
+    }
+
+    @SmallTest
+    public void testCancelledLeaderIsNotJoined() {
+        Request leader = new Request(null, "me");
+        RequestBatch leaderBatch = new RequestBatch(leader);
+        RequestAsyncTask task = new RequestAsyncTask(leaderBatch);
+        String key = "https://graph.facebook.com/me|null";
+        RequestDeduplicator.register(key, leader, task);
+
+        task.cancelRequests();
+
+        assertNull(RequestDeduplicator.attach(key, new RequestBatch(new Request(null, "me"))));
+        RequestDeduplicator.complete(leaderBatch, null, new FacebookOperationCanceledException());
+    }
+
+    @SmallTest
+    public void testFollowersReceiveErrorWhenLeaderFails() {
+        Request leader = new Request(null, "me");
+        final List<Response> followerResponses = new ArrayList<Response>();
+        Request follower = new Request(null, "me", null, null, new Request.Callback() {
+            @Override
+            public void onCompleted(Response response) {
+                followerResponses.add(response);
+            }
+        });
+
+        String key = "https://graph.facebook.com/me|null";
+        RequestDeduplicator.register(key, leader, new RequestAsyncTask(leader));
+        RequestDeduplicator.attach(key, new RequestBatch(follower));
+        RequestDeduplicator.complete(new RequestBatch(leader), null, new FacebookException("failed"));
+
+        assertEquals(1, followerResponses.size());
+        assertNotNull(followerResponses.get(0).getError());
+    }
+}
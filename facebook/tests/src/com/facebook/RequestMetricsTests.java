@@ -0,0 +1,126 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RequestMetricsTests extends AndroidTestCase {
+    private final List<RequestMetrics> reported = new ArrayList<RequestMetrics>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Settings.setHttpTransport(new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"4\",\"name\":\"Mark\"}");
+            }
+        }));
+        Settings.setRequestMetricsListener(new RequestMetricsListener() {
+            @Override
+            public void onRequestMetrics(RequestMetrics metrics) {
+                reported.add(metrics);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setRequestMetricsListener(null);
+        Settings.setHttpTransport(null);
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testGetRequestIsTimedWithoutABody() {
+        RequestBatch batch = new RequestBatch(new Request(null, "4", null, null, new Request.Callback() {
+            @Override
+            public void onCompleted(Response response) {
+            }
+        }));
+        Response response = batch.executeAndWait().get(0);
+
+        assertEquals(1, reported.size());
+        RequestMetrics metrics = reported.get(0);
+        assertEquals(batch.getId(), metrics.getBatchId());
+        assertEquals(1, metrics.getRequestCount());
+        assertEquals(-1, metrics.getQueueWaitTime());
+        assertEquals(-1, metrics.getConnectTime());
+        assertEquals(-1, metrics.getSerializedByteCount());
+        assertEquals(response.getTimeToFirstByte(), metrics.getTimeToFirstByte());
+        assertEquals(response.getWireByteCount(), metrics.getWireByteCount());
+        assertTrue(metrics.getWireByteCount() > 0);
+        assertTrue(metrics.getDownloadTime() >= 0);
+        assertTrue(metrics.getParseTime() >= 0);
+        assertTrue(metrics.getCallbackTime() >= 0);
+        assertEquals(RequestMetrics.CacheResult.NOT_CACHEABLE, metrics.getCacheResult());
+    }
+
+    @SmallTest
+    public void testPostRequestReportsSerializedBytes() {
+        Request request = new Request(null, "me/feed", null, HttpMethod.POST);
+        request.getParameters().putString("message", "hello");
+        request.executeAndWait();
+
+        assertEquals(1, reported.size());
+        assertTrue(reported.get(0).getSerializedByteCount() > 0);
+        assertTrue(reported.get(0).getSerializeTime() >= 0);
+        assertEquals(-1, reported.get(0).getCallbackTime());
+    }
+
+    @SmallTest
+    public void testRetriedBatchReportsTheLastAttempt() {
+        final int[] attempts = new int[1];
+        Settings.setHttpTransport(new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                if (attempts[0]++ == 0) {
+                    return new InMemoryHttpTransport.CannedResponse(500,
+                            "{\"error\":{\"message\":\"A much longer message from the failed attempt\",\"code\":1}}");
+                }
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"4\"}");
+            }
+        }));
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialDelay(1);
+        RequestBatch batch = new RequestBatch(new Request(null, "4"));
+        batch.setRetryPolicy(policy);
+
+        Response response = batch.executeAndWait().get(0);
+
+        assertNull(response.getError());
+        assertEquals(2, attempts[0]);
+        assertEquals(1, reported.size());
+        assertEquals(batch.getId(), reported.get(0).getBatchId());
+        assertEquals(response.getWireByteCount(), reported.get(0).getWireByteCount());
+        assertEquals(response.getTimeToFirstByte(), reported.get(0).getTimeToFirstByte());
+    }
+
+    @SmallTest
+    public void testNothingIsCollectedWithoutAListener() {
+        Settings.setRequestMetricsListener(null);
+        RequestBatch batch = new RequestBatch(new Request(null, "4"));
+        batch.executeAndWait();
+
+        assertNull(batch.getMetrics());
+        assertTrue(reported.isEmpty());
+    }
+}
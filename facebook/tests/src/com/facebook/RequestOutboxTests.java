@@ -0,0 +1,215 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.io.File;
+import java.io.IOException;
+
+public class RequestOutboxTests extends AndroidTestCase {
+    private InMemoryHttpTransport transport;
+    private volatile boolean isOffline;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Session.setActiveSession(null);
+        deleteRecursively(new File(getContext().getFilesDir(), "com.facebook.RequestOutbox"));
+
+        transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request)
+                    throws IOException {
+                if (isOffline) {
+                    throw new IOException("offline");
+                }
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"1_2\"}");
+            }
+        });
+        Settings.setHttpTransport(transport);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setHttpTransport(null);
+        Session.setActiveSession(null);
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testOnlyWritesCanBeEnqueued() {
+        RequestOutbox outbox = new RequestOutbox(getContext());
+        try {
+            outbox.enqueue(new Request(null, "me"));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @MediumTest
+    public void testEnqueuedRequestIsSentAndDuplicatesAreSuppressed() throws Exception {
+        RequestOutbox outbox = new RequestOutbox(getContext());
+
+        outbox.enqueue(createStatusUpdate("hello"), "post-1");
+        outbox.enqueue(createStatusUpdate("hello"), "post-1");
+        waitUntilEmpty(outbox);
+        outbox.enqueue(createStatusUpdate("hello"), "post-1");
+
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(1, transport.getRequests().size());
+        assertTrue(new String(transport.getRequests().get(0).getBody()).contains("hello"));
+    }
+
+    @MediumTest
+    public void testRequestsSurviveARestartWhileOffline() throws Exception {
+        isOffline = true;
+        RequestOutbox outbox = new RequestOutbox(getContext());
+        outbox.enqueue(createStatusUpdate("first"), "post-1");
+        outbox.enqueue(createStatusUpdate("second"), "post-2");
+        waitUntilWritten(outbox);
+
+        // A new instance stands in for the next process, which reads the store written by the first.
+        RequestOutbox restarted = new RequestOutbox(getContext());
+        assertEquals(2, restarted.getPendingCount());
+
+        isOffline = false;
+        restarted.flush();
+        waitUntilEmpty(restarted);
+
+        int count = transport.getRequests().size();
+        assertTrue(new String(transport.getRequests().get(count - 1).getBody()).contains("second"));
+    }
+
+    @MediumTest
+    public void testRequestWaitingForSessionHoldsTheOnesAfterIt() throws Exception {
+        RequestOutbox outbox = new RequestOutbox(getContext());
+        outbox.enqueue(new Request(null, "me/feed", createMessage("first"), HttpMethod.POST), "post-1");
+        outbox.enqueue(createStatusUpdate("second"), "post-2");
+        waitUntilWritten(outbox);
+
+        outbox.flush();
+        Thread.sleep(200);
+
+        assertEquals(0, transport.getRequests().size());
+        assertEquals(2, outbox.getPendingCount());
+    }
+
+    @MediumTest
+    public void testRequestQueuedForAnotherAccessTokenIsDropped() throws Exception {
+        RequestOutbox outbox = new RequestOutbox(getContext());
+        Session first = createOpenSession("token-1");
+        outbox.enqueue(new Request(first, "me/feed", createMessage("first"), HttpMethod.POST), "post-1");
+        waitUntilWritten(outbox);
+
+        Session.setActiveSession(createOpenSession("token-2"));
+        outbox.enqueue(new Request(null, "me/feed", createMessage("second"), HttpMethod.POST), "post-2");
+        waitUntilEmpty(outbox);
+
+        assertEquals(1, transport.getRequests().size());
+        String body = new String(transport.getRequests().get(0).getBody());
+        assertTrue(body.contains("second"));
+        assertTrue(body.contains("token-2"));
+    }
+
+    @MediumTest
+    public void testRequestQueuedBeforeATokenRefreshIsSentWithTheNewToken() throws Exception {
+        RequestOutbox outbox = new RequestOutbox(getContext());
+        Session session = createOpenSession("token-1");
+        outbox.enqueue(new Request(session, "me/feed", createMessage("first"), HttpMethod.POST), "post-1");
+        waitUntilWritten(outbox);
+
+        session.finishAuthOrReauth(AccessToken.createFromString("token-1-refreshed", null,
+                AccessTokenSource.TEST_USER), null);
+        Session.setActiveSession(session);
+        flushUntilEmpty(outbox);
+
+        assertEquals(1, transport.getRequests().size());
+        String body = new String(transport.getRequests().get(0).getBody());
+        assertTrue(body.contains("first"));
+        assertTrue(body.contains("token-1-refreshed"));
+    }
+
+    @MediumTest
+    public void testClosingAndClearingTokenInformationDiscardsQueuedRequests() throws Exception {
+        isOffline = true;
+        Session session = createOpenSession("token-1");
+        RequestOutbox outbox = new RequestOutbox(getContext());
+        outbox.enqueue(new Request(session, "me/feed", createMessage("first"), HttpMethod.POST), "post-1");
+        waitUntilWritten(outbox);
+
+        session.closeAndClearTokenInformation();
+
+        assertEquals(0, new RequestOutbox(getContext()).getPendingCount());
+    }
+
+    private Session createOpenSession(String accessToken) {
+        Session session = new Session.Builder(getContext())
+                .setApplicationId("1234")
+                .setTokenCachingStrategy(new SessionTestsBase.MockTokenCachingStrategy(accessToken,
+                        SessionTestsBase.DEFAULT_TIMEOUT_MILLISECONDS))
+                .build();
+        session.openForRead(null);
+        return session;
+    }
+
+    private static Bundle createMessage(String message) {
+        Bundle parameters = new Bundle();
+        parameters.putString("message", message);
+        return parameters;
+    }
+
+    private static Request createStatusUpdate(String message) {
+        Bundle parameters = new Bundle();
+        parameters.putString("message", message);
+        parameters.putString("access_token", "token");
+        return new Request(null, "me/feed", parameters, HttpMethod.POST);
+    }
+
+    private static void waitUntilWritten(RequestOutbox outbox) throws InterruptedException {
+        for (int i = 0; i < 100 && outbox.isWriting(); i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static void waitUntilEmpty(RequestOutbox outbox) throws InterruptedException {
+        for (int i = 0; i < 100 && outbox.getPendingCount() > 0; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static void flushUntilEmpty(RequestOutbox outbox) throws InterruptedException {
+        // A flush that is still holding requests for a Session makes flush() do nothing, so keep asking.
+        for (int i = 0; i < 100 && outbox.getPendingCount() > 0; i++) {
+            outbox.flush();
+            Thread.sleep(50);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
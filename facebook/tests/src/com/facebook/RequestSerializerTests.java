@@ -0,0 +1,221 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import org.json.JSONArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+public class RequestSerializerTests extends AndroidTestCase {
+    @SmallTest
+    public void testStringParametersMatchReferenceEncoding() throws Exception {
+        String[][] parameters = {
+                { "access_token", "abc123" },
+                { "message", "caf\u00e9 \u4f60\u597d \ud83d\ude00" },
+                { "unpaired", "a\ud83db\ude00c" },
+                { "empty", "" },
+                { "long", createLongValue(10000) },
+        };
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        Request.Serializer serializer = new Request.Serializer(actual, null);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ReferenceSerializer reference = new ReferenceSerializer(expected);
+        for (String[] parameter : parameters) {
+            serializer.writeString(parameter[0], parameter[1]);
+            reference.writeString(parameter[0], parameter[1]);
+        }
+
+        assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    }
+
+    @SmallTest
+    public void testContentDispositionMatchesReferenceEncoding() throws Exception {
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new Request.Serializer(actual, null).writeContentDisposition("source", "photo.png", "image/png");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new ReferenceSerializer(expected).writeContentDisposition("source", "photo.png", "image/png");
+
+        assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    }
+
+    @SmallTest
+    public void testStreamedBatchIsFramedTheSameWithAndWithoutProgress() throws Exception {
+        String withoutProgress = captureBatchBody(false);
+        String withProgress = captureBatchBody(true);
+        assertEquals(withoutProgress, withProgress);
+
+        // The batch array is followed directly by the record boundary and then the attachment.
+        int start = withProgress.indexOf("[{");
+        int end = withProgress.indexOf("\r\n--" + Request.MIME_BOUNDARY, start);
+        JSONArray batch = new JSONArray(withProgress.substring(start, end));
+        assertEquals(2, batch.length());
+        assertEquals("me/feed", batch.getJSONObject(0).getString("relative_url"));
+        assertTrue(withProgress.indexOf("filename=\"file0\"", end) > end);
+    }
+
+    @SmallTest
+    public void testBodyUnderCompressionThresholdIsSentWithFixedLength() throws Exception {
+        InMemoryHttpTransport.RecordedRequest sent = postWithCompression(1000);
+
+        assertNull(sent.getHeader("Content-Encoding"));
+        assertEquals(sent.getBody().length, sent.getFixedLength());
+        assertTrue(new String(sent.getBody(), "UTF-8").contains("Content-Disposition"));
+    }
+
+    @SmallTest
+    public void testBodyOverCompressionThresholdIsSentCompressed() throws Exception {
+        InMemoryHttpTransport.RecordedRequest plain = postWithCompression(Integer.MAX_VALUE);
+        InMemoryHttpTransport.RecordedRequest compressed = postWithCompression(1000);
+
+        assertEquals("gzip", compressed.getHeader("Content-Encoding"));
+        assertEquals(-1, compressed.getFixedLength());
+        assertTrue(compressed.getBody().length < plain.getBody().length);
+
+        GZIPInputStream inflater = new GZIPInputStream(new ByteArrayInputStream(compressed.getBody()));
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inflater.read(buffer)) != -1) {
+            inflated.write(buffer, 0, read);
+        }
+        assertTrue(Arrays.equals(plain.getBody(), inflated.toByteArray()));
+    }
+
+    // Posts a message of a few kilobytes with request compression and fixed-length streaming enabled.
+    private InMemoryHttpTransport.RecordedRequest postWithCompression(int threshold) {
+        InMemoryHttpTransport transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"1\"}");
+            }
+        });
+        int originalThreshold = Settings.getRequestCompressionThreshold();
+        Settings.setHttpTransport(transport);
+        Settings.setRequestCompressionEnabled(true);
+        Settings.setRequestCompressionThreshold(threshold);
+        Settings.setFixedLengthStreamingModeEnabled(true);
+        try {
+            Request request = new Request(null, "me/feed", null, HttpMethod.POST);
+            request.getParameters().putString("message", createLongValue(4000));
+            Response response = request.executeAndWait();
+            assertNull(response.getError());
+            return transport.getRequests().get(0);
+        } finally {
+            Settings.setHttpTransport(null);
+            Settings.setRequestCompressionEnabled(false);
+            Settings.setRequestCompressionThreshold(originalThreshold);
+            Settings.setFixedLengthStreamingModeEnabled(false);
+        }
+    }
+
+    private String captureBatchBody(boolean withProgress) throws Exception {
+        InMemoryHttpTransport transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                return new InMemoryHttpTransport.CannedResponse(200, "[{\"code\":200,\"body\":\"{}\"}," +
+                        "{\"code\":200,\"body\":\"{}\"}]");
+            }
+        });
+        Settings.setHttpTransport(transport);
+        try {
+            Request status = new Request(null, "me/feed", null, HttpMethod.POST);
+            status.getParameters().putString("message", "caf\u00e9");
+            Request photo = new Request(null, "me/photos", null, HttpMethod.POST);
+            photo.getParameters().putByteArray("source", new byte[] { 1, 2, 3 });
+            if (withProgress) {
+                photo.setCallback(new Request.OnProgressCallback() {
+                    @Override
+                    public void onProgress(long current, long max) {
+                    }
+
+                    @Override
+                    public void onCompleted(Response response) {
+                    }
+                });
+            }
+
+            RequestBatch batch = new RequestBatch(status, photo);
+            batch.setBatchApplicationId("1234");
+            Request.executeBatchAndWait(batch);
+            return new String(transport.getRequests().get(0).getBody(), "UTF-8");
+        } finally {
+            Settings.setHttpTransport(null);
+        }
+    }
+
+    private static String createLongValue(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + (i % 26)));
+            if (i % 100 == 0) {
+                builder.append('\u00fc');
+            }
+        }
+        return builder.toString();
+    }
+
+    // The format-based encoding the multipart serializer used originally; output must stay byte-identical to it.
+    private static class ReferenceSerializer {
+        private final OutputStream outputStream;
+        private boolean firstWrite = true;
+
+        ReferenceSerializer(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        void writeString(String key, String value) throws IOException {
+            writeContentDisposition(key, null, null);
+            writeLine("%s", value);
+            writeLine("--%s", Request.MIME_BOUNDARY);
+        }
+
+        void writeContentDisposition(String name, String filename, String contentType) throws IOException {
+            write("Content-Disposition: form-data; name=\"%s\"", name);
+            if (filename != null) {
+                write("; filename=\"%s\"", filename);
+            }
+            writeLine("");
+            if (contentType != null) {
+                writeLine("%s: %s", "Content-Type", contentType);
+            }
+            writeLine("");
+        }
+
+        void write(String format, Object... args) throws IOException {
+            if (firstWrite) {
+                outputStream.write("--".getBytes());
+                outputStream.write(Request.MIME_BOUNDARY.getBytes());
+                outputStream.write("\r\n".getBytes());
+                firstWrite = false;
+            }
+            outputStream.write(String.format(format, args).getBytes());
+        }
+
+        void writeLine(String format, Object... args) throws IOException {
+            write(format, args);
+            write("\r\n");
+        }
+    }
+}
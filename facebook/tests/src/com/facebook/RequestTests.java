@@ -20,6 +20,7 @@ import android.graphics.Bitmap;
 import android.location.Location;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.test.suitebuilder.annotation.LargeTest;
 import android.test.suitebuilder.annotation.MediumTest;
 import android.test.suitebuilder.annotation.SmallTest;
@@ -782,6 +783,66 @@ public class RequestTests extends FacebookTestCase {
         assertEquals(1, calledBack.size());
     }
 
+    @MediumTest
+    @LargeTest
+    public void testOnProgressCallbackReportsFileUpload() throws IOException {
+        File file = File.createTempFile("upload", ".bin", getActivity().getCacheDir());
+        try {
+            // Several times the progress threshold, so the file is reported in more than one step.
+            byte[] contents = new byte[300 * 1024];
+            for (int i = 0; i < contents.length; i++) {
+                contents[i] = (byte) i;
+            }
+            FileOutputStream outStream = new FileOutputStream(file);
+            try {
+                outStream.write(contents);
+            } finally {
+                outStream.close();
+            }
+
+            InMemoryHttpTransport transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+                @Override
+                public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                    return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"1\"}");
+                }
+            });
+            Settings.setHttpTransport(transport);
+
+            Request request = new Request(null, "me/photos", null, HttpMethod.POST);
+            request.getParameters().putParcelable("source",
+                    ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY));
+            final List<long[]> progress = new ArrayList<long[]>();
+            request.setCallback(new Request.OnProgressCallback() {
+                @Override
+                public void onCompleted(Response response) {
+                }
+
+                @Override
+                public void onProgress(long current, long max) {
+                    progress.add(new long[] { current, max });
+                }
+            });
+
+            Response response = request.executeAndWait();
+            assertNull(response.getError());
+
+            assertTrue(progress.size() > 1);
+            long max = progress.get(0)[1];
+            assertTrue(max > contents.length);
+            assertTrue(max <= transport.getRequests().get(0).getBody().length);
+            long previous = 0;
+            for (long[] step : progress) {
+                assertEquals(max, step[1]);
+                assertTrue(step[0] > previous);
+                previous = step[0];
+            }
+            assertEquals(max, previous);
+        } finally {
+            Settings.setHttpTransport(null);
+            file.delete();
+        }
+    }
+
     @MediumTest
     @LargeTest
     public void testBatchTimeoutIsApplied() {
@@ -902,4 +963,27 @@ public class RequestTests extends FacebookTestCase {
 
         assertNotNull(response.getError());
     }
+
+    @SmallTest
+    @MediumTest
+    @LargeTest
+    public void testCancelledBatchSkipsNetworkAndCallbacks() {
+        final boolean[] callbackCalled = new boolean[1];
+        Request request = new Request(null, "me", null, null, new Request.Callback() {
+            @Override
+            public void onCompleted(Response response) {
+                callbackCalled[0] = true;
+            }
+        });
+        RequestBatch batch = new RequestBatch(request);
+        batch.cancel();
+
+        List<Response> responses = batch.executeAndWait();
+
+        assertTrue(batch.isCancelled());
+        assertEquals(1, responses.size());
+        assertNotNull(responses.get(0).getError());
+        assertTrue(responses.get(0).getError().getException() instanceof FacebookOperationCanceledException);
+        assertFalse(callbackCalled[0]);
+    }
 }
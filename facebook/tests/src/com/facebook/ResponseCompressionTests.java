@@ -0,0 +1,146 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import com.facebook.internal.CacheableRequestBatch;
+import com.facebook.internal.FileLruCache;
+import com.facebook.internal.Utility;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class ResponseCompressionTests extends AndroidTestCase {
+    private static final String BODY = "{\"id\":\"4\",\"name\":\"Mark Zuckerberg\",\"about\":\"" +
+            "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa\"}";
+
+    private InMemoryHttpTransport transport;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Session.initializeStaticContext(getContext());
+        transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request)
+                    throws IOException {
+                return new InMemoryHttpTransport.CannedResponse(200, gzip(BODY)).setHeader("Content-Encoding",
+                        "gzip");
+            }
+        });
+        Settings.setHttpTransport(transport);
+        Settings.setResponseCompressionEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setHttpTransport(null);
+        Settings.setResponseCompressionEnabled(false);
+        Settings.setCompressedResponseCachingEnabled(false);
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testGzipResponseIsDecoded() throws Exception {
+        Response response = new Request(null, "4").executeAndWait();
+
+        assertNull(response.getError());
+        assertEquals("Mark Zuckerberg", response.getGraphObject().getProperty("name"));
+        assertEquals("gzip, deflate", transport.getRequests().get(0).getHeader("Accept-Encoding"));
+        assertEquals(gzip(BODY).length, response.getWireByteCount());
+        assertEquals(BODY.getBytes("UTF-8").length, response.getDecodedByteCount());
+    }
+
+    @SmallTest
+    public void testCompressedResponseIsCachedAndReadBackDecoded() throws Exception {
+        Settings.setCompressedResponseCachingEnabled(true);
+        String cacheKey = createCacheKey();
+
+        Response response = executeCacheable(cacheKey);
+        assertFalse(response.getIsFromCache());
+
+        // The entry holds the body as it came off the wire.
+        InputStream cached = Response.getResponseCache().get(cacheKey, "gzip");
+        assertNotNull(cached);
+        try {
+            assertTrue(Arrays.equals(gzip(BODY), readAll(cached)));
+        } finally {
+            Utility.closeQuietly(cached);
+        }
+
+        response = executeCacheable(cacheKey);
+        assertTrue(response.getIsFromCache());
+        assertNull(response.getError());
+        assertEquals("Mark Zuckerberg", response.getGraphObject().getProperty("name"));
+        assertEquals(1, transport.getRequests().size());
+    }
+
+    @SmallTest
+    public void testUntaggedCacheEntryIsRead() throws Exception {
+        Settings.setCompressedResponseCachingEnabled(true);
+        String cacheKey = createCacheKey();
+
+        // An entry written before responses were cached compressed carries no content tag.
+        FileLruCache cache = Response.getResponseCache();
+        InputStream stream = cache.interceptAndPut(cacheKey, new ByteArrayInputStream(BODY.getBytes("UTF-8")));
+        readAll(stream);
+        stream.close();
+
+        Response response = executeCacheable(cacheKey);
+        assertTrue(response.getIsFromCache());
+        assertNull(response.getError());
+        assertEquals("Mark Zuckerberg", response.getGraphObject().getProperty("name"));
+        assertEquals(0, transport.getRequests().size());
+    }
+
+    private static Response executeCacheable(String cacheKey) {
+        CacheableRequestBatch batch = new CacheableRequestBatch(new Request(null, "4"));
+        batch.setCacheKeyOverride(cacheKey);
+        List<Response> responses = Request.executeBatchAndWait(batch);
+        assertEquals(1, responses.size());
+        return responses.get(0);
+    }
+
+    // Unique per run, so that entries left by earlier runs are not read back.
+    private String createCacheKey() {
+        return getName() + System.currentTimeMillis();
+    }
+
+    private static byte[] gzip(String string) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(string.getBytes("UTF-8"));
+        gzip.close();
+        return compressed.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
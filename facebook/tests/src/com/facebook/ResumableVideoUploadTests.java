@@ -0,0 +1,262 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import com.facebook.model.GraphObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResumableVideoUploadTests extends AndroidTestCase {
+    private static final int FILE_SIZE = 10;
+    private static final int CHUNK_SIZE = 4;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(getContext().getCacheDir(), "ResumableVideoUploadTests.mp4");
+        FileOutputStream outputStream = new FileOutputStream(file);
+        for (int i = 0; i < FILE_SIZE; i++) {
+            outputStream.write('a' + i);
+        }
+        outputStream.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        new ResumableVideoUpload(getContext(), null, file, null).clearSavedState();
+        file.delete();
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testUploadsAllChunks() {
+        StubServer server = new StubServer();
+        final List<Long> progress = new ArrayList<Long>();
+        ResumableVideoUpload upload = new ResumableVideoUpload(getContext(), null, file,
+                new Request.OnProgressCallback() {
+                    @Override
+                    public void onProgress(long current, long max) {
+                        assertEquals(FILE_SIZE, max);
+                        progress.add(current);
+                    }
+
+                    @Override
+                    public void onCompleted(Response response) {
+                    }
+                });
+        upload.setRequestRunner(server);
+
+        Response response = upload.executeAndWait();
+
+        assertNull(response.getError());
+        assertEquals("42", upload.getVideoId());
+        assertEquals("abcdefghij", server.received.toString());
+        assertEquals(Long.valueOf(FILE_SIZE), progress.get(progress.size() - 1));
+        assertEquals(1, server.startCount);
+        assertEquals(1, server.finishCount);
+    }
+
+    @MediumTest
+    public void testFailedChunkIsRetried() {
+        StubServer server = new StubServer();
+        server.failuresRemaining = 1;
+        ResumableVideoUpload upload = new ResumableVideoUpload(getContext(), null, file, null);
+        upload.setRequestRunner(server);
+
+        Response response = upload.executeAndWait();
+
+        assertNull(response.getError());
+        assertEquals("abcdefghij", server.received.toString());
+    }
+
+    @SmallTest
+    public void testInterruptedUploadResumesFromLastChunk() {
+        StubServer server = new StubServer();
+        server.failAtOffset = CHUNK_SIZE;
+        ResumableVideoUpload upload = new ResumableVideoUpload(getContext(), null, file, null);
+        upload.setChunkRetryCount(0);
+        upload.setRequestRunner(server);
+
+        Response response = upload.executeAndWait();
+        assertNotNull(response.getError());
+        assertEquals("abcd", server.received.toString());
+
+        // A new instance, as after process death, picks up from the persisted offsets.
+        StubServer resumedServer = new StubServer();
+        resumedServer.received.append(server.received);
+        ResumableVideoUpload resumedUpload = new ResumableVideoUpload(getContext(), null, file, null);
+        resumedUpload.setRequestRunner(resumedServer);
+
+        response = resumedUpload.executeAndWait();
+
+        assertNull(response.getError());
+        assertEquals(0, resumedServer.startCount);
+        assertEquals("42", resumedUpload.getVideoId());
+        assertEquals("abcdefghij", resumedServer.received.toString());
+    }
+
+    @SmallTest
+    public void testUploadIsResumedAfterTheTokenIsExtended() {
+        Session firstSession = createSession("1234", "FirstToken");
+        Session extendedSession = createSession("1234", "ExtendedToken");
+        try {
+            StubServer server = new StubServer();
+            server.failAtOffset = CHUNK_SIZE;
+            ResumableVideoUpload upload = new ResumableVideoUpload(getContext(), firstSession, file, null);
+            upload.setChunkRetryCount(0);
+            upload.setRequestRunner(server);
+            assertNotNull(upload.executeAndWait().getError());
+
+            StubServer resumedServer = new StubServer();
+            resumedServer.received.append(server.received);
+            ResumableVideoUpload resumedUpload = new ResumableVideoUpload(getContext(), extendedSession, file, null);
+            resumedUpload.setRequestRunner(resumedServer);
+
+            assertNull(resumedUpload.executeAndWait().getError());
+            assertEquals(0, resumedServer.startCount);
+            assertEquals("abcdefghij", resumedServer.received.toString());
+        } finally {
+            new ResumableVideoUpload(getContext(), firstSession, file, null).clearSavedState();
+        }
+    }
+
+    @SmallTest
+    public void testUploadIsNotResumedByAnotherApp() {
+        Session firstSession = createSession("1234", "FirstToken");
+        Session otherAppSession = createSession("5678", "SecondToken");
+        try {
+            StubServer server = new StubServer();
+            server.failAtOffset = CHUNK_SIZE;
+            ResumableVideoUpload upload = new ResumableVideoUpload(getContext(), firstSession, file, null);
+            upload.setChunkRetryCount(0);
+            upload.setRequestRunner(server);
+            assertNotNull(upload.executeAndWait().getError());
+
+            StubServer otherServer = new StubServer();
+            ResumableVideoUpload otherUpload = new ResumableVideoUpload(getContext(), otherAppSession, file, null);
+            otherUpload.setRequestRunner(otherServer);
+
+            assertNull(otherUpload.executeAndWait().getError());
+            assertEquals(1, otherServer.startCount);
+            assertEquals("abcdefghij", otherServer.received.toString());
+        } finally {
+            new ResumableVideoUpload(getContext(), firstSession, file, null).clearSavedState();
+            new ResumableVideoUpload(getContext(), otherAppSession, file, null).clearSavedState();
+        }
+    }
+
+    @SmallTest
+    public void testLocalFailureIsNotRetried() {
+        StubServer server = new StubServer();
+        server.failuresRemaining = 1;
+        server.failLocally = true;
+        ResumableVideoUpload upload = new ResumableVideoUpload(getContext(), null, file, null);
+        upload.setRequestRunner(server);
+
+        Response response = upload.executeAndWait();
+
+        assertEquals(FacebookRequestError.Category.CLIENT, response.getError().getCategory());
+        assertEquals("", server.received.toString());
+    }
+
+    @SmallTest
+    public void testUnclassifiedErrorIsNotRetried() {
+        StubServer server = new StubServer();
+        server.failuresRemaining = 1;
+        // An error code without a documented category.
+        server.failureCode = 12345;
+        ResumableVideoUpload upload = new ResumableVideoUpload(getContext(), null, file, null);
+        upload.setRequestRunner(server);
+
+        Response response = upload.executeAndWait();
+
+        assertEquals(FacebookRequestError.Category.OTHER, response.getError().getCategory());
+        assertEquals("", server.received.toString());
+    }
+
+    private Session createSession(String applicationId, String accessToken) {
+        return new Session.Builder(getContext())
+                .setApplicationId(applicationId)
+                .setTokenCachingStrategy(new SessionTestsBase.MockTokenCachingStrategy(accessToken,
+                        SessionTestsBase.DEFAULT_TIMEOUT_MILLISECONDS))
+                .build();
+    }
+
+    private static class StubServer implements ResumableVideoUpload.RequestRunner {
+        final StringBuilder received = new StringBuilder();
+        int startCount;
+        int finishCount;
+        int failuresRemaining;
+        int failureCode = -1;
+        boolean failLocally;
+        long failAtOffset = -1;
+
+        @Override
+        public Response run(Request request) {
+            Bundle parameters = request.getParameters();
+            String phase = parameters.getString("upload_phase");
+            GraphObject result = GraphObject.Factory.create();
+
+            if ("start".equals(phase)) {
+                startCount++;
+                assertEquals(Integer.toString(FILE_SIZE), parameters.getString("file_size"));
+                result.setProperty("upload_session_id", "session");
+                result.setProperty("video_id", "42");
+                setOffsets(result, 0);
+            } else if ("transfer".equals(phase)) {
+                long offset = Long.parseLong(parameters.getString("start_offset"));
+                if (failuresRemaining > 0 || offset == failAtOffset) {
+                    failuresRemaining--;
+                    if (failureCode != -1) {
+                        return new Response(request, null, new FacebookRequestError(failureCode, null,
+                                "unexpected error"));
+                    }
+                    if (failLocally) {
+                        return new Response(request, null, new FacebookRequestError(null,
+                                new FacebookException("could not read file")));
+                    }
+                    return new Response(request, null, new FacebookRequestError(null,
+                            new FacebookException(new IOException("connection reset"))));
+                }
+                assertEquals(received.length(), offset);
+                received.append(new String(parameters.getByteArray("video_file_chunk")));
+                setOffsets(result, received.length());
+            } else {
+                finishCount++;
+                assertEquals("finish", phase);
+                result.setProperty("success", true);
+            }
+
+            return new Response(request, null, null, result, false);
+        }
+
+        private static void setOffsets(GraphObject result, int startOffset) {
+            result.setProperty("start_offset", Integer.toString(startOffset));
+            result.setProperty("end_offset", Integer.toString(Math.min(startOffset + CHUNK_SIZE, FILE_SIZE)));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import com.facebook.model.GraphObject;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class RetryPolicyTests extends AndroidTestCase {
+    // Graph API error codes for "service unavailable", "application request limit reached" and "invalid parameter".
+    private static final int SERVICE_UNAVAILABLE = 2;
+    private static final int APP_TOO_MANY_CALLS = 4;
+    private static final int INVALID_PARAMETER = 100;
+
+    @SmallTest
+    public void testTransientCategoriesAreRetried() {
+        RetryPolicy policy = new RetryPolicy();
+        Request request = new Request(null, "me");
+
+        assertTrue(policy.shouldRetry(request, createResponse(request, SERVICE_UNAVAILABLE)));
+        assertTrue(policy.shouldRetry(request, createResponse(request, APP_TOO_MANY_CALLS)));
+        assertFalse(policy.shouldRetry(request, createResponse(request, INVALID_PARAMETER)));
+        assertFalse(policy.shouldRetry(request, new Response(request, null, null, (GraphObject) null, false)));
+    }
+
+    @SmallTest
+    public void testOnlyNetworkClientErrorsAreRetried() {
+        RetryPolicy policy = new RetryPolicy();
+        Request request = new Request(null, "me");
+
+        Response networkFailure = new Response(request, null,
+                new FacebookRequestError(null, new FacebookException(new IOException("timeout"))));
+        Response localFailure = new Response(request, null,
+                new FacebookRequestError(null, new FacebookException("could not construct request body")));
+
+        assertTrue(policy.shouldRetry(request, networkFailure));
+        assertFalse(policy.shouldRetry(request, localFailure));
+    }
+
+    @SmallTest
+    public void testPostsRequireOptIn() {
+        RetryPolicy policy = new RetryPolicy();
+        Request request = new Request(null, "me/feed", null, HttpMethod.POST);
+        Response response = createResponse(request, SERVICE_UNAVAILABLE);
+
+        assertFalse(policy.shouldRetry(request, response));
+        policy.setRetryPostRequests(true);
+        assertTrue(policy.shouldRetry(request, response));
+    }
+
+    @SmallTest
+    public void testCategoriesCanBeDisabled() {
+        RetryPolicy policy = new RetryPolicy();
+        Request request = new Request(null, "me");
+
+        policy.setRetryCategory(FacebookRequestError.Category.THROTTLING, false);
+
+        assertFalse(policy.shouldRetryCategory(FacebookRequestError.Category.THROTTLING));
+        assertFalse(policy.shouldRetry(request, createResponse(request, APP_TOO_MANY_CALLS)));
+    }
+
+    @SmallTest
+    public void testNamedBatchEntriesAreNotRetried() {
+        RetryPolicy policy = new RetryPolicy();
+        Request request = new Request(null, "me");
+        request.setBatchEntryName("me");
+
+        assertFalse(policy.shouldRetry(request, createResponse(request, SERVICE_UNAVAILABLE)));
+    }
+
+    @SmallTest
+    public void testDelayBackoffAndJitter() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialDelay(100);
+        policy.setMaxDelay(1000);
+
+        for (int i = 0; i < 20; i++) {
+            long first = policy.getDelay(0, false);
+            assertTrue(first >= 50 && first <= 100);
+
+            long third = policy.getDelay(2, false);
+            assertTrue(third >= 200 && third <= 400);
+
+            long throttled = policy.getDelay(2, true);
+            assertTrue(throttled >= 400 && throttled <= 800);
+
+            long capped = policy.getDelay(10, false);
+            assertTrue(capped >= 500 && capped <= 1000);
+        }
+    }
+
+    @SmallTest
+    public void testBatchCopyKeepsRetryPolicy() {
+        RetryPolicy policy = new RetryPolicy();
+        RequestBatch batch = new RequestBatch(new Request(null, "me"));
+        batch.setRetryPolicy(policy);
+
+        assertSame(policy, new RequestBatch(batch).getRetryPolicy());
+    }
+
+    @MediumTest
+    public void testCancellingEndsTheBackoffWithoutRetrying() throws Exception {
+        InMemoryHttpTransport transport = new InMemoryHttpTransport(new InMemoryHttpTransport.Responder() {
+            @Override
+            public InMemoryHttpTransport.CannedResponse respond(InMemoryHttpTransport.RecordedRequest request) {
+                return new InMemoryHttpTransport.CannedResponse(200, "{\"id\":\"4\"}");
+            }
+        });
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialDelay(30000);
+        policy.setMaxDelay(30000);
+        Request request = new Request(null, "4");
+        final RequestBatch batch = new RequestBatch(request);
+        List<Response> responses = Arrays.asList(createResponse(request, SERVICE_UNAVAILABLE));
+
+        try {
+            Settings.setHttpTransport(transport);
+            new Thread() {
+                @Override
+                public void run() {
+                    SystemClock.sleep(100);
+                    batch.cancel();
+                }
+            }.start();
+
+            long start = SystemClock.elapsedRealtime();
+            List<Response> result = policy.executeRetries(batch, responses);
+
+            assertTrue(SystemClock.elapsedRealtime() - start < 5000);
+            assertSame(responses.get(0), result.get(0));
+            assertEquals(0, transport.getRequests().size());
+        } finally {
+            Settings.setHttpTransport(null);
+        }
+    }
+
+    private static Response createResponse(Request request, int errorCode) {
+        return new Response(request, null, new FacebookRequestError(errorCode, "Exception", "error"));
+    }
+}
@@ -24,7 +24,10 @@ import com.facebook.internal.ServerProtocol;
 import com.facebook.internal.Utility;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public final class SettingsTests extends FacebookTestCase {
 
@@ -74,6 +77,137 @@ public final class SettingsTests extends FacebookTestCase {
         }
     }
 
+    @SmallTest @MediumTest @LargeTest
+    public void testPriorityLanesUseSetExecutor() {
+        final ConditionVariable condition = new ConditionVariable();
+        final int[] executeCount = new int[1];
+
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executeCount[0]++;
+                command.run();
+            }
+        };
+
+        Executor original = Settings.getExecutor();
+        try {
+            Settings.setExecutor(executor);
+            assertSame(executor, Settings.getExecutor(ExecutionPriority.INTERACTIVE));
+
+            Settings.getExecutor(ExecutionPriority.MAINTENANCE).execute(new Runnable() {
+                @Override
+                public void run() {
+                    condition.open();
+                }
+            });
+
+            boolean success = condition.block(5000);
+            assertTrue(success);
+            assertEquals(1, executeCount[0]);
+        } finally {
+            Settings.setExecutor(original);
+        }
+    }
+
+    @SmallTest @MediumTest @LargeTest
+    public void testPriorityLaneLimitsConcurrency() {
+        final List<Runnable> started = new ArrayList<Runnable>();
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                started.add(command);
+            }
+        };
+
+        Executor original = Settings.getExecutor();
+        try {
+            Settings.setExecutor(executor);
+            PriorityLaneExecutor lane = new PriorityLaneExecutor(1, android.os.Process.THREAD_PRIORITY_BACKGROUND);
+            final int[] runCount = new int[1];
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    runCount[0]++;
+                }
+            };
+
+            lane.execute(task);
+            lane.execute(task);
+            assertEquals(1, started.size());
+            assertEquals(1, lane.getPendingCount());
+
+            // Finishing the running task starts the next one.
+            started.get(0).run();
+            assertEquals(2, started.size());
+            assertEquals(0, lane.getPendingCount());
+            started.get(1).run();
+            assertEquals(2, runCount[0]);
+        } finally {
+            Settings.setExecutor(original);
+        }
+    }
+
+    @SmallTest @MediumTest @LargeTest
+    public void testPriorityLaneKeepsTasksRejectedByExecutor() {
+        final List<Runnable> started = new ArrayList<Runnable>();
+        final boolean[] rejecting = new boolean[1];
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (rejecting[0]) {
+                    throw new RejectedExecutionException();
+                }
+                started.add(command);
+            }
+        };
+
+        Executor original = Settings.getExecutor();
+        try {
+            Settings.setExecutor(executor);
+            PriorityLaneExecutor lane = new PriorityLaneExecutor(2, android.os.Process.THREAD_PRIORITY_BACKGROUND);
+            final int[] runCount = new int[1];
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    runCount[0]++;
+                }
+            };
+
+            // With another task from the lane running, a rejected task waits for it to finish.
+            lane.execute(task);
+            rejecting[0] = true;
+            lane.execute(task);
+            assertEquals(1, started.size());
+            assertEquals(1, lane.getPendingCount());
+
+            rejecting[0] = false;
+            started.get(0).run();
+            assertEquals(2, started.size());
+            assertEquals(0, lane.getPendingCount());
+            started.get(1).run();
+            assertEquals(2, runCount[0]);
+
+            // With nothing else running, it runs on a thread of the lane's own rather than the calling thread.
+            final Thread caller = Thread.currentThread();
+            final ConditionVariable condition = new ConditionVariable();
+            final boolean[] ranOnCaller = new boolean[1];
+            rejecting[0] = true;
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ranOnCaller[0] = Thread.currentThread() == caller;
+                    condition.open();
+                }
+            });
+            assertTrue(condition.block(5000));
+            assertFalse(ranOnCaller[0]);
+            assertEquals(0, lane.getPendingCount());
+        } finally {
+            Settings.setExecutor(original);
+        }
+    }
+
     @SmallTest @MediumTest @LargeTest
     public void testLogdException() {
         try {
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import com.facebook.model.GraphObject;
+import com.facebook.model.GraphObjectList;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+public class StreamingResponseParsingTests extends AndroidTestCase {
+    private boolean wasStreamingEnabled;
+    private boolean wasRawLoggingEnabled;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        wasStreamingEnabled = Settings.isStreamingResponseParsingEnabled();
+        wasRawLoggingEnabled = Settings.getLoggingBehaviors().contains(LoggingBehavior.INCLUDE_RAW_RESPONSES);
+        Settings.removeLoggingBehavior(LoggingBehavior.INCLUDE_RAW_RESPONSES);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Settings.setStreamingResponseParsingEnabled(wasStreamingEnabled);
+        if (wasRawLoggingEnabled) {
+            Settings.addLoggingBehavior(LoggingBehavior.INCLUDE_RAW_RESPONSES);
+        }
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testStreamingObjectMatchesStringParse() throws Exception {
+        String json = createFriendsResponse(20);
+
+        Response expected = parse(json, false).get(0);
+        Response actual = parse(json, true).get(0);
+
+        assertNull(actual.getError());
+        JSONObject expectedJson = expected.getGraphObject().getInnerJSONObject();
+        JSONObject actualJson = actual.getGraphObject().getInnerJSONObject();
+        assertEquals(expectedJson.toString(), actualJson.toString());
+        assertEquals(expected.getRawResponse(), actual.getRawResponse());
+
+        JSONObject first = actualJson.getJSONArray("data").getJSONObject(0);
+        assertTrue(first.get("id") instanceof String);
+        assertTrue(first.get("age") instanceof Integer);
+        assertTrue(first.get("score") instanceof Double);
+        assertTrue(first.get("big") instanceof Long);
+        assertEquals(JSONObject.NULL, first.get("middle_name"));
+    }
+
+    @SmallTest
+    public void testStreamingArrayMatchesStringParse() throws Exception {
+        String json = "[{\"id\":\"1\"},{\"id\":\"2\"}]";
+
+        GraphObjectList<GraphObject> expected = parse(json, false).get(0).getGraphObjectList();
+        GraphObjectList<GraphObject> actual = parse(json, true).get(0).getGraphObjectList();
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getInnerJSONArray().toString(), actual.getInnerJSONArray().toString());
+    }
+
+    @SmallTest
+    public void testStreamingNonJSONLiteral() throws Exception {
+        Response response = parse("true", true).get(0);
+
+        assertNull(response.getError());
+        assertEquals(Boolean.TRUE, response.getGraphObject().getProperty(Response.NON_JSON_RESPONSE_PROPERTY));
+    }
+
+    @SmallTest
+    public void testStreamingErrorResponse() throws Exception {
+        String json = "{\"error\":{\"message\":\"bad\",\"type\":\"OAuthException\",\"code\":100}}";
+
+        Response response = parse(json, true).get(0);
+
+        assertNotNull(response.getError());
+        assertEquals(100, response.getError().getErrorCode());
+        assertEquals("bad", response.getError().getErrorMessage());
+    }
+
+    @SmallTest
+    public void testStreamingDecodesUTF8() throws Exception {
+        String json = "{\"name\":\"Caf\u00e9 \u65e5\u672c\"}";
+
+        Response response = parse(json, true).get(0);
+
+        assertEquals("Caf\u00e9 \u65e5\u672c", response.getGraphObject().getProperty("name"));
+    }
+
+    @SmallTest
+    public void testStreamingEmptyBodyFailsLikeStringParse() throws Exception {
+        assertParseFailsWithJSONException("", false);
+        assertParseFailsWithJSONException("", true);
+        assertParseFailsWithJSONException("{\"data\":[", false);
+        assertParseFailsWithJSONException("{\"data\":[", true);
+    }
+
+    private void assertParseFailsWithJSONException(String json, boolean streaming) throws Exception {
+        try {
+            parse(json, streaming);
+            fail("expected JSONException");
+        } catch (JSONException exception) {
+            // Success
+        }
+    }
+
+    private List<Response> parse(String json, boolean streaming) throws Exception {
+        Settings.setStreamingResponseParsingEnabled(streaming);
+        RequestBatch batch = new RequestBatch(new Request(null, "me/friends"));
+        ByteArrayInputStream stream = new ByteArrayInputStream(json.getBytes("UTF-8"));
+        return Response.createResponsesFromStream(stream, null, batch, true);
+    }
+
+    private static String createFriendsResponse(int count) throws Exception {
+        JSONArray data = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject friend = new JSONObject();
+            friend.put("id", Integer.toString(100000 + i));
+            friend.put("name", "Friend Number " + i);
+            friend.put("age", 20 + (i % 50));
+            friend.put("score", i + 0.5);
+            friend.put("big", 10000000000L + i);
+            friend.put("middle_name", JSONObject.NULL);
+            data.put(friend);
+        }
+        JSONObject result = new JSONObject();
+        result.put("data", data);
+        return result.toString();
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.internal;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import com.facebook.model.GraphObject;
+import com.facebook.model.GraphObjectList;
+import com.facebook.model.GraphUser;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+public class CompactJSONObjectTests extends AndroidTestCase {
+    private static final String FRIEND = "{\"id\":\"4\",\"first_name\":\"Mark\",\"installed\":true," +
+            "\"location\":{\"id\":\"5\",\"name\":\"Palo Alto\"},\"devices\":[{\"os\":\"Android\"}]}";
+
+    @SmallTest
+    public void testReadsMatchTheParsedObject() throws JSONException {
+        JSONObject source = new JSONObject(FRIEND);
+        CompactJSONObject compact = (CompactJSONObject) CompactJSONObject.compact(source);
+
+        assertEquals(source.length(), compact.length());
+        assertEquals("Mark", compact.getString("first_name"));
+        assertTrue(compact.optBoolean("installed"));
+        assertTrue(compact.has("location"));
+        assertFalse(compact.has("last_name"));
+        assertNull(compact.opt("last_name"));
+        assertEquals("Palo Alto", compact.getJSONObject("location").getString("name"));
+        assertEquals("Android", compact.getJSONArray("devices").getJSONObject(0).getString("os"));
+
+        Iterator<?> keys = compact.keys();
+        assertEquals("id", keys.next());
+        assertEquals("first_name", keys.next());
+        assertEquals(5, compact.names().length());
+        assertTrue(compact.isCompact());
+    }
+
+    @SmallTest
+    public void testTokenerReadsCompactObjects() throws JSONException {
+        JSONArray friends = (JSONArray) CompactJSONObject.createTokener("[" + FRIEND + "," + FRIEND + "]",
+                new StringPool()).nextValue();
+        CompactJSONObject first = (CompactJSONObject) friends.get(0);
+        CompactJSONObject second = (CompactJSONObject) friends.get(1);
+
+        assertTrue(first.opt("location") instanceof CompactJSONObject);
+        assertTrue(first.getJSONArray("devices").get(0) instanceof CompactJSONObject);
+        assertSame(first.keys().next(), second.keys().next());
+        assertEquals("Palo Alto", second.getJSONObject("location").getString("name"));
+        assertEquals(new JSONObject(FRIEND).toString(), second.toString());
+    }
+
+    @SmallTest
+    public void testChangesMaterializeInPlace() throws JSONException {
+        CompactJSONObject compact = (CompactJSONObject) CompactJSONObject.compact(new JSONObject(FRIEND));
+        CompactJSONObject location = (CompactJSONObject) compact.opt("location");
+
+        compact.put("last_name", "Zuckerberg");
+        compact.remove("installed");
+
+        assertFalse(compact.isCompact());
+        assertFalse(location.isCompact());
+        assertSame(location, compact.getJSONObject("location"));
+        assertEquals("Zuckerberg", compact.getString("last_name"));
+        assertFalse(compact.has("installed"));
+        assertEquals("Palo Alto", new JSONObject(compact.toString()).getJSONObject("location").getString("name"));
+    }
+
+    @SmallTest
+    public void testGraphObjectStaysCompactUntilItsJSONObjectIsUsed() throws JSONException {
+        JSONArray friends = new JSONArray("[" + FRIEND + "," + FRIEND + "]");
+        JSONArray compactFriends = (JSONArray) CompactJSONObject.compact(friends);
+        CompactJSONObject first = (CompactJSONObject) compactFriends.get(0);
+
+        GraphObjectList<GraphUser> users = GraphObject.Factory.createList(compactFriends, GraphUser.class);
+        assertEquals("Mark", users.get(0).getFirstName());
+        assertEquals("Palo Alto", users.get(0).getLocation().getName());
+        assertEquals(users.get(0), users.get(0));
+        assertTrue(first.isCompact());
+
+        assertSame(first, users.get(0).getInnerJSONObject());
+        assertFalse(first.isCompact());
+        assertEquals(friends.toString(), users.getInnerJSONArray().toString());
+    }
+
+    @SmallTest
+    public void testSetPropertyMaterializes() throws JSONException {
+        CompactJSONObject compact = (CompactJSONObject) CompactJSONObject.compact(new JSONObject(FRIEND));
+        GraphUser user = GraphObject.Factory.create(compact, GraphUser.class);
+
+        user.setLastName("Zuckerberg");
+
+        assertFalse(compact.isCompact());
+        assertEquals("Zuckerberg", compact.getString("last_name"));
+        assertEquals("Mark", user.getFirstName());
+    }
+}
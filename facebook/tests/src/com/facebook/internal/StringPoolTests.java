@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.internal;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+public class StringPoolTests extends AndroidTestCase {
+    @SmallTest
+    public void testShortStringsArePooled() {
+        StringPool pool = new StringPool();
+        String first = pool.intern(new String("Restaurant/cafe"));
+        String second = pool.intern(new String("Restaurant/cafe"));
+
+        assertSame(first, second);
+        assertNull(pool.intern(null));
+    }
+
+    @SmallTest
+    public void testLongStringsAreNotPooled() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i <= StringPool.MAX_POOLED_LENGTH; i++) {
+            builder.append('x');
+        }
+        StringPool pool = new StringPool();
+        String first = pool.intern(builder.toString());
+        String second = pool.intern(builder.toString());
+
+        assertEquals(first, second);
+        assertNotSame(first, second);
+    }
+
+    @SmallTest
+    public void testStringsSeenOnceDoNotFillThePool() {
+        StringPool pool = new StringPool();
+        for (int i = 0; i < StringPool.MAX_POOL_SIZE * 4; i++) {
+            pool.intern("Friend " + i);
+        }
+        String first = pool.intern(new String("Local business"));
+        assertSame(first, pool.intern(new String("Local business")));
+
+        // Once pooled, a string stays shared however many strings pass through the candidates.
+        for (int i = 0; i < StringPool.MAX_POOL_SIZE * 4; i++) {
+            pool.intern("Other friend " + i);
+        }
+        assertSame(first, pool.intern(new String("Local business")));
+    }
+
+    @SmallTest
+    public void testPoolIsBounded() {
+        StringPool pool = new StringPool();
+        for (int i = 0; i < StringPool.MAX_POOL_SIZE; i++) {
+            pool.intern("pooled " + i);
+            pool.intern("pooled " + i);
+        }
+        pool.intern("extra");
+        pool.intern("extra");
+        for (int i = 0; i < StringPool.CANDIDATE_TABLE_SIZE * 16; i++) {
+            pool.intern("Friend " + i);
+        }
+        String copy = new String("extra");
+
+        assertSame(copy, pool.intern(copy));
+    }
+
+    @SmallTest
+    public void testTokenerSharesRepeatedKeysAndValues() throws JSONException {
+        String json = "[{\"id\":\"1\",\"category\":\"Local business\"},{\"id\":\"2\",\"category\":\"Local business\"}]";
+        JSONArray array = (JSONArray) new StringPool().createTokener(json).nextValue();
+        JSONObject first = array.getJSONObject(0);
+        JSONObject second = array.getJSONObject(1);
+
+        assertSame(first.getString("category"), second.getString("category"));
+        Iterator<?> firstKeys = first.keys();
+        Iterator<?> secondKeys = second.keys();
+        while (firstKeys.hasNext()) {
+            assertSame(firstKeys.next(), secondKeys.next());
+        }
+        assertEquals("2", second.getString("id"));
+    }
+}
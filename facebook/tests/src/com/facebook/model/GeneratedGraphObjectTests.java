@@ -0,0 +1,105 @@
+/**
+ * Copyright 2010-present Facebook.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.facebook.model;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+public final class GeneratedGraphObjectTests extends AndroidTestCase {
+    @Override
+    protected void tearDown() throws Exception {
+        GraphObject.Factory.setGeneratedImplementationsEnabledForTest(true);
+        super.tearDown();
+    }
+
+    @SmallTest
+    public void testFactoryPrefersGeneratedImplementation() {
+        GraphUser generated = GraphObject.Factory.create(GraphUser.class);
+        assertTrue(generated instanceof BaseGraphObject);
+
+        GraphObject.Factory.setGeneratedImplementationsEnabledForTest(false);
+        GraphUser proxied = GraphObject.Factory.create(GraphUser.class);
+        assertTrue(Proxy.isProxyClass(proxied.getClass()));
+    }
+
+    @SmallTest
+    public void testInterfacesWithoutGeneratedImplementationUseProxy() {
+        assertTrue(Proxy.isProxyClass(GraphObject.Factory.create(UngeneratedGraphObject.class).getClass()));
+    }
+
+    @SmallTest
+    public void testGeneratedAndProxiedObjectsAgree() throws JSONException {
+        JSONObject state = new JSONObject("{\"id\":\"4\",\"first_name\":\"Mark\",\"location\":{\"id\":\"5\"," +
+                "\"location\":{\"latitude\":37,\"longitude\":-122.5}}}");
+        GraphUser generated = GraphObject.Factory.create(state, GraphUser.class);
+        GraphObject.Factory.setGeneratedImplementationsEnabledForTest(false);
+        GraphUser proxied = GraphObject.Factory.create(state, GraphUser.class);
+
+        assertEquals(proxied.getId(), generated.getId());
+        assertEquals(proxied.getFirstName(), generated.getFirstName());
+        assertNull(generated.getLastName());
+        assertEquals(proxied.getLocation().getId(), generated.getLocation().getId());
+        assertEquals(37.0, generated.getLocation().getLocation().getLatitude());
+        assertEquals(-122.5, generated.getLocation().getLocation().getLongitude());
+        assertEquals(0.0, GraphObject.Factory.create(GraphLocation.class).getLatitude());
+
+        assertTrue(generated.equals(proxied));
+        assertTrue(proxied.equals(generated));
+        assertEquals(proxied.hashCode(), generated.hashCode());
+        assertEquals(proxied.toString(), generated.toString());
+        assertEquals(proxied.asMap(), generated.asMap());
+    }
+
+    @SmallTest
+    public void testSettersHonorPropertyNameAndCreateGraphObject() throws JSONException {
+        OpenGraphAction action = GraphObject.Factory.create(OpenGraphAction.class);
+        action.setExplicitlyShared(true);
+        action.setImageUrls(Arrays.asList("http://example.com/1.png", "http://example.com/2.png"));
+        action.setFrom(GraphObject.Factory.create(new JSONObject("{\"id\":\"4\"}"), GraphUser.class));
+
+        JSONObject state = action.getInnerJSONObject();
+        assertTrue(state.getBoolean("fb:explicitly_shared"));
+        JSONArray image = state.getJSONArray("image");
+        assertEquals("http://example.com/2.png", image.getJSONObject(1).getString("url"));
+        assertEquals("4", state.getJSONObject("from").getString("id"));
+        assertEquals("http://example.com/1.png", action.getImage().get(0).getString("url"));
+        assertTrue(action.getExplicitlyShared());
+    }
+
+    @SmallTest
+    public void testCastKeepsState() {
+        GraphPlace place = GraphObject.Factory.create(GraphPlace.class);
+        place.setName("Menlo Park");
+
+        assertSame(place, place.cast(GraphObject.class));
+        GraphUser user = place.cast(GraphUser.class);
+        assertSame(place.getInnerJSONObject(), user.getInnerJSONObject());
+        assertEquals("Menlo Park", user.getName());
+        assertEquals("Menlo Park", place.asMap().get("name"));
+    }
+
+    // The tests aren't run through the annotation processor, so nothing is generated for this.
+    private interface UngeneratedGraphObject extends GraphObject {
+        String getName();
+    }
+}
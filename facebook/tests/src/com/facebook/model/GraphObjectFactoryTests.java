@@ -26,6 +26,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -397,6 +400,93 @@ public final class GraphObjectFactoryTests extends AndroidTestCase {
         }
     }
 
+    private interface RenamedGetterGraphObject extends GraphObject {
+        @PropertyName("screen_name")
+        String getHandle();
+    }
+
+    @SmallTest
+    @MediumTest
+    @LargeTest
+    public void testPropertyNameGetterReadsAnnotatedKey() throws Exception {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("screen_name", "zuck");
+        jsonObject.put("handle", "not this one");
+        RenamedGetterGraphObject graphObject = GraphObject.Factory.create(jsonObject, RenamedGetterGraphObject.class);
+
+        assertEquals("zuck", graphObject.getHandle());
+        // The second call goes through the descriptor cached by the first.
+        assertEquals("zuck", graphObject.getHandle());
+        assertTrue(GraphObject.Factory.hasMethodDescriptor(RenamedGetterGraphObject.class.getMethod("getHandle")));
+    }
+
+    @SmallTest
+    @MediumTest
+    @LargeTest
+    public void testCreateGraphObjectSetterStoresCreatedObject() throws JSONException {
+        ObjectWithNestedObject graphObject = GraphObject.Factory.create(ObjectWithNestedObject.class);
+
+        graphObject.setNestedObjectByUrl("http://www.example.com");
+
+        JSONObject nestedObject = graphObject.getInnerJSONObject().getJSONObject("nested_object");
+        assertEquals("http://www.example.com", nestedObject.getString("url"));
+        assertFalse(nestedObject.has("id"));
+        assertEquals("http://www.example.com", graphObject.getNestedObject().getUrl());
+
+        graphObject.setNestedObjectsById(Arrays.asList("1", "2"));
+
+        JSONArray nestedObjects = graphObject.getInnerJSONObject().getJSONArray("nested_objects");
+        assertEquals(2, nestedObjects.length());
+        assertEquals("2", nestedObjects.getJSONObject(1).getString("id"));
+        assertEquals("1", graphObject.getNestedObjects().get(0).getId());
+    }
+
+    @SmallTest
+    @MediumTest
+    @LargeTest
+    public void testMapMethodsGetDescriptorsOnFirstUse() throws Exception {
+        Map<String, Object> map = GraphObject.Factory.create().asMap();
+
+        assertNull(map.put("hello", "world"));
+        assertEquals("world", map.get("hello"));
+        assertTrue(map.containsKey("hello"));
+        assertEquals(1, map.size());
+        map.remove("hello");
+        assertTrue(map.isEmpty());
+
+        assertTrue(GraphObject.Factory.hasMethodDescriptor(Map.class.getMethod("put", Object.class, Object.class)));
+        assertTrue(GraphObject.Factory.hasMethodDescriptor(Map.class.getMethod("get", Object.class)));
+        assertTrue(GraphObject.Factory.hasMethodDescriptor(Map.class.getMethod("containsKey", Object.class)));
+        assertTrue(GraphObject.Factory.hasMethodDescriptor(Map.class.getMethod("size")));
+        assertTrue(GraphObject.Factory.hasMethodDescriptor(Map.class.getMethod("remove", Object.class)));
+        assertTrue(GraphObject.Factory.hasMethodDescriptor(Map.class.getMethod("isEmpty")));
+    }
+
+    private interface TwoParameterSetterGraphObject extends GraphObject {
+        void setFoo(Object first, Object second);
+    }
+
+    @SmallTest
+    @MediumTest
+    @LargeTest
+    public void testUnexpectedMethodSignatureThrows() throws Throwable {
+        GraphObject graphObject = GraphObject.Factory.create(RenamedGetterGraphObject.class);
+        InvocationHandler handler = Proxy.getInvocationHandler(graphObject);
+
+        // Neither method can reach the handler through the proxy, so call it directly.
+        Method[] methods = new Method[] {
+                TwoParameterSetterGraphObject.class.getMethod("setFoo", Object.class, Object.class),
+                String.class.getMethod("length")
+        };
+        for (Method method : methods) {
+            try {
+                handler.invoke(graphObject, method, new Object[method.getParameterTypes().length]);
+                fail("Expected exception");
+            } catch (FacebookGraphObjectException exception) {
+            }
+        }
+    }
+
     @SmallTest
     @MediumTest
     @LargeTest
@@ -1144,6 +1234,29 @@ public final class GraphObjectFactoryTests extends AndroidTestCase {
         assertEquals("Ann Arbor", collection.get(1));
     }
 
+    @SmallTest
+    @MediumTest
+    @LargeTest
+    public void testListElementsAreReusedAcrossReads() throws JSONException {
+        JSONArray data = new JSONArray("[{\"id\":\"1\"},{\"id\":\"2\"}]");
+        GraphObjectList<GraphUser> users = GraphObject.Factory.createList(data, GraphUser.class);
+
+        List<GraphUser> firstPass = new ArrayList<GraphUser>(users);
+        int index = 0;
+        for (GraphUser user : users) {
+            assertSame(firstPass.get(index++), user);
+        }
+        assertSame(users.get(1), users.get(1));
+        assertSame(users.castToListOf(GraphPlace.class), users.castToListOf(GraphPlace.class));
+
+        GraphUser replacement = GraphObject.Factory.create(GraphUser.class);
+        replacement.setId("3");
+        users.set(0, replacement);
+        assertNotSame(firstPass.get(0), users.get(0));
+        assertEquals("3", users.get(0).getId());
+        assertEquals(replacement, users.get(0));
+    }
+
     @SmallTest
     @MediumTest
     @LargeTest
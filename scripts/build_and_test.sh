@@ -47,5 +47,7 @@ ant clean ||
   die "Error running 'ant clean' on facebook sdk"
 ant debug install ||
   die "Error running 'ant debug install' on facebook sdk"
+$SDK/scripts/check_generated_graph_objects.sh ||
+  die "Error checking the generated GraphObject implementations"
 ant run-tests ||
   die "Error running 'ant run-tests' on facebook sdk"
@@ -0,0 +1,88 @@
+#!/bin/sh
+#
+# Copyright 2010-present Facebook.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#    http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+# this script runs the GraphObject annotation processor over the SDK's model interfaces and checks that the
+# generated *$$Impl.java files in facebook/src/com/facebook/model match its output. Run it after changing a
+# model interface or the processor; with --update, the checked-in files are replaced with the regenerated ones.
+#
+# android.jar is taken from ANDROID_JAR if it is set, or else from the platform in ANDROID_HOME that the SDK
+# builds against. The SDK must have been built once with Ant or Gradle, so that R and BuildConfig exist.
+
+function die() {
+  echo "$@"
+  exit 1
+}
+
+if [ "$#" -gt 1 ] || { [ "$#" -eq 1 ] && [ "$1" != "--update" ]; }; then
+  die "Usage: $0 [--update]"
+fi
+
+# Find enlistment root
+cd $(dirname $0) >/dev/null
+SDK=$(git rev-parse --show-toplevel) ||
+  die "Could not access git"
+
+MODEL=com/facebook/model
+if [ -z "$ANDROID_JAR" ]; then
+  [ -n "$ANDROID_HOME" ] ||
+    die "Set ANDROID_HOME or ANDROID_JAR"
+  SDK_VERSION=$(sed -n 's/^ANDROID_BUILD_SDK_VERSION=//p' $SDK/gradle.properties)
+  ANDROID_JAR=$ANDROID_HOME/platforms/android-$SDK_VERSION/android.jar
+fi
+[ -f "$ANDROID_JAR" ] ||
+  die "Could not find $ANDROID_JAR"
+CLASSPATH=$ANDROID_JAR:$SDK/facebook/libs/android-support-v4.jar:$SDK/facebook/libs/bolts-android-1.1.2.jar
+
+WORK=$(mktemp -d -t graphobjects.XXXXXX) ||
+  die "Could not create a temporary directory"
+trap 'rm -rf "$WORK"' EXIT
+mkdir -p $WORK/processor $WORK/src $WORK/generated $WORK/classes $WORK/checked-in
+
+# R and BuildConfig come from the Android build: gen for Ant, build/generated/source for Gradle
+SOURCEPATH=$WORK/src
+for GENERATED in $SDK/facebook/gen $SDK/facebook/build/generated/source/*/debug; do
+  if [ -d "$GENERATED" ]; then
+    SOURCEPATH=$SOURCEPATH:$GENERATED
+  fi
+done
+[ "$SOURCEPATH" != "$WORK/src" ] ||
+  die "Could not find R and BuildConfig; build the SDK first"
+
+# Build the processor
+javac -nowarn -d $WORK/processor $(find $SDK/facebook/processor/src -name '*.java') ||
+  die "Error compiling the GraphObject processor"
+
+# Regenerate from a copy of the sources without the checked-in implementations, so that they can't collide
+# with the processor's output
+cp -R $SDK/facebook/src/. $WORK/src
+rm -f $WORK/src/$MODEL/*\$\$Impl.java
+javac -nowarn -proc:only -implicit:none \
+    -processorpath $WORK/processor -processor com.facebook.model.processor.GraphObjectProcessor \
+    -classpath $CLASSPATH -sourcepath $SOURCEPATH -s $WORK/generated -d $WORK/classes \
+    $WORK/src/$MODEL/*.java ||
+  die "Error running the GraphObject processor"
+
+if [ "$1" = "--update" ]; then
+  rm -f $SDK/facebook/src/$MODEL/*\$\$Impl.java
+  cp $WORK/generated/$MODEL/*\$\$Impl.java $SDK/facebook/src/$MODEL/ ||
+    die "Error copying the generated implementations"
+  exit 0
+fi
+
+cp $SDK/facebook/src/$MODEL/*\$\$Impl.java $WORK/checked-in/
+diff -ru $WORK/checked-in $WORK/generated/$MODEL ||
+  die "The checked-in GraphObject implementations are out of date; run $0 --update"